@@ -0,0 +1,71 @@
+package skybet.test.benchmark;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import skybet.test.pojo.DecimalEvent;
+import skybet.test.pojo.FractionalEvent;
+import skybet.test.utils.AvailableTransformer;
+import skybet.test.utils.OddsConversionUtils;
+
+/**
+ *
+ * Benchmarks the full /available transform on synthetic payloads, comparing
+ * the streaming AvailableTransformer against the original decode, convert and
+ * encodePrettily chain.
+ *
+ * @author chrishovey
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AvailableBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int events;
+
+    private Buffer payload;
+
+    @Setup
+    public void setUp() {
+        payload = AvailablePayloads.fractionalEvents(events);
+    }
+
+    @Benchmark
+    public Buffer streamingTransform() {
+        return AvailableTransformer.toDecimal(payload, true);
+    }
+
+    @Benchmark
+    public String legacyTransform() {
+        JsonArray t = new JsonArray(payload.toString("UTF-8"));
+        List<DecimalEvent> result = t.stream()
+                .map(f -> Json.decodeValue(((JsonObject) f).encode(), FractionalEvent.class))
+                .map(f -> DecimalEvent.builder()
+                        .betId(f.getBetId())
+                        .event(f.getEvent())
+                        .name(f.getName())
+                        .odds(OddsConversionUtils.convertFractionToDecimalBet(f.getOdds()))
+                        .build())
+                .collect(Collectors.toList());
+        return Json.encodePrettily(result);
+    }
+}
@@ -0,0 +1,36 @@
+package skybet.test.benchmark;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import skybet.test.utils.OddsLadder;
+
+/**
+ *
+ * This class builds synthetic sky /available payloads for the benchmarks.
+ *
+ * @author chrishovey
+ */
+public class AvailablePayloads {
+
+    /**
+     *
+     * @param events number of events in the payload
+     * @return buffer holding a json array of events with fractional odds taken
+     * from the odds ladder
+     */
+    public static Buffer fractionalEvents(int events) {
+        JsonArray array = new JsonArray();
+        for (int i = 0; i < events; i++) {
+            int ladder = i % OddsLadder.size();
+            array.add(new JsonObject()
+                    .put("bet_id", (long) i)
+                    .put("event", "Event " + (i / 20))
+                    .put("name", "Selection " + i)
+                    .put("odds", new JsonObject()
+                            .put("numerator", OddsLadder.numerator(ladder))
+                            .put("denominator", OddsLadder.denominator(ladder))));
+        }
+        return Buffer.buffer(array.encode());
+    }
+}
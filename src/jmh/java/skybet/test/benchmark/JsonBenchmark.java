@@ -0,0 +1,263 @@
+package skybet.test.benchmark;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import skybet.test.pojo.Bet;
+import skybet.test.pojo.DecimalBet;
+import skybet.test.pojo.DecimalEvent;
+import skybet.test.pojo.DecimalPlacedBet;
+import skybet.test.pojo.FractionalBet;
+import skybet.test.pojo.FractionalEvent;
+import skybet.test.pojo.FractionalOdds;
+import skybet.test.pojo.FractionalPlacedBet;
+import skybet.test.pojo.JsonError;
+import skybet.test.pojo.PlacedBet;
+import skybet.test.pojo.WireFormat;
+import skybet.test.utils.OddsConversionUtils;
+
+/**
+ *
+ * Benchmarks encoding each of the json POJO's to a Buffer and decoding it
+ * back. The jackson* benchmarks are the ObjectMapper path through a String
+ * the service used to take, the codec* benchmarks are the streaming
+ * toJsonBuffer and fromJson methods of the POJO's. The *Bet benchmarks
+ * at the end compare the whole of a bet's trip through the service, decimal
+ * json in to fractional json out and the receipt back, on the boxed POJO's
+ * and on the primitive Bet and PlacedBet.
+ *
+ * @author chrishovey
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+
+    private DecimalBet decimalBet;
+    private DecimalEvent decimalEvent;
+    private DecimalPlacedBet decimalPlacedBet;
+    private FractionalBet fractionalBet;
+    private FractionalEvent fractionalEvent;
+    private FractionalPlacedBet fractionalPlacedBet;
+    private JsonError jsonError;
+    private Bet bet;
+
+    private Buffer decimalBetJson;
+    private Buffer decimalEventJson;
+    private Buffer decimalPlacedBetJson;
+    private Buffer fractionalBetJson;
+    private Buffer fractionalEventJson;
+    private Buffer fractionalPlacedBetJson;
+    private Buffer jsonErrorJson;
+
+    @Setup
+    public void setUp() {
+        FractionalOdds odds = FractionalOdds.builder().numerator(10).denominator(1).build();
+        decimalBet = DecimalBet.builder().betId(1l).odds(11.0).stake(10).build();
+        decimalEvent = DecimalEvent.builder().betId(1l).event("World Cup 2018").name("England").odds(11.0).build();
+        decimalPlacedBet = DecimalPlacedBet.builder().betId(1l).event("World Cup 2018").name("England")
+                .odds(11.0).stake(10).transactionId(123456l).build();
+        fractionalBet = FractionalBet.builder().betId(1l).odds(odds).stake(10).build();
+        fractionalEvent = FractionalEvent.builder().betId(1l).event("World Cup 2018").name("England").odds(odds).build();
+        fractionalPlacedBet = FractionalPlacedBet.builder().betId(1l).event("World Cup 2018").name("England")
+                .odds(odds).stake(10).transactionId(123456l).build();
+        jsonError = JsonError.builder().errorCode(400).errorMessage("Bad Request").build();
+        bet = Bet.of(1, 10, 1, 10);
+
+        decimalBetJson = decimalBet.toJsonBuffer();
+        decimalEventJson = decimalEvent.toJsonBuffer();
+        decimalPlacedBetJson = decimalPlacedBet.toJsonBuffer();
+        fractionalBetJson = fractionalBet.toJsonBuffer();
+        fractionalEventJson = fractionalEvent.toJsonBuffer();
+        fractionalPlacedBetJson = fractionalPlacedBet.toJsonBuffer();
+        jsonErrorJson = jsonError.toJsonBuffer();
+    }
+
+    @Benchmark
+    public Buffer jacksonEncodeDecimalBet() {
+        return Buffer.buffer(Json.encode(decimalBet));
+    }
+
+    @Benchmark
+    public Buffer codecEncodeDecimalBet() {
+        return decimalBet.toJsonBuffer();
+    }
+
+    @Benchmark
+    public DecimalBet jacksonDecodeDecimalBet() {
+        return Json.decodeValue(decimalBetJson.toString("UTF-8"), DecimalBet.class);
+    }
+
+    @Benchmark
+    public DecimalBet codecDecodeDecimalBet() {
+        return DecimalBet.fromJson(decimalBetJson);
+    }
+
+    @Benchmark
+    public Buffer jacksonEncodeDecimalEvent() {
+        return Buffer.buffer(Json.encode(decimalEvent));
+    }
+
+    @Benchmark
+    public Buffer codecEncodeDecimalEvent() {
+        return decimalEvent.toJsonBuffer();
+    }
+
+    @Benchmark
+    public DecimalEvent jacksonDecodeDecimalEvent() {
+        return Json.decodeValue(decimalEventJson.toString("UTF-8"), DecimalEvent.class);
+    }
+
+    @Benchmark
+    public DecimalEvent codecDecodeDecimalEvent() {
+        return DecimalEvent.fromJson(decimalEventJson);
+    }
+
+    @Benchmark
+    public Buffer jacksonEncodeDecimalPlacedBet() {
+        return Buffer.buffer(Json.encode(decimalPlacedBet));
+    }
+
+    @Benchmark
+    public Buffer codecEncodeDecimalPlacedBet() {
+        return decimalPlacedBet.toJsonBuffer();
+    }
+
+    @Benchmark
+    public DecimalPlacedBet jacksonDecodeDecimalPlacedBet() {
+        return Json.decodeValue(decimalPlacedBetJson.toString("UTF-8"), DecimalPlacedBet.class);
+    }
+
+    @Benchmark
+    public DecimalPlacedBet codecDecodeDecimalPlacedBet() {
+        return DecimalPlacedBet.fromJson(decimalPlacedBetJson);
+    }
+
+    @Benchmark
+    public Buffer jacksonEncodeFractionalBet() {
+        return Buffer.buffer(Json.encode(fractionalBet));
+    }
+
+    @Benchmark
+    public Buffer codecEncodeFractionalBet() {
+        return fractionalBet.toJsonBuffer();
+    }
+
+    @Benchmark
+    public FractionalBet jacksonDecodeFractionalBet() {
+        return Json.decodeValue(fractionalBetJson.toString("UTF-8"), FractionalBet.class);
+    }
+
+    @Benchmark
+    public FractionalBet codecDecodeFractionalBet() {
+        return FractionalBet.fromJson(fractionalBetJson);
+    }
+
+    @Benchmark
+    public Buffer jacksonEncodeFractionalEvent() {
+        return Buffer.buffer(Json.encode(fractionalEvent));
+    }
+
+    @Benchmark
+    public Buffer codecEncodeFractionalEvent() {
+        return fractionalEvent.toJsonBuffer();
+    }
+
+    @Benchmark
+    public FractionalEvent jacksonDecodeFractionalEvent() {
+        return Json.decodeValue(fractionalEventJson.toString("UTF-8"), FractionalEvent.class);
+    }
+
+    @Benchmark
+    public FractionalEvent codecDecodeFractionalEvent() {
+        return FractionalEvent.fromJson(fractionalEventJson);
+    }
+
+    @Benchmark
+    public Buffer jacksonEncodeFractionalPlacedBet() {
+        return Buffer.buffer(Json.encode(fractionalPlacedBet));
+    }
+
+    @Benchmark
+    public Buffer codecEncodeFractionalPlacedBet() {
+        return fractionalPlacedBet.toJsonBuffer();
+    }
+
+    @Benchmark
+    public FractionalPlacedBet jacksonDecodeFractionalPlacedBet() {
+        return Json.decodeValue(fractionalPlacedBetJson.toString("UTF-8"), FractionalPlacedBet.class);
+    }
+
+    @Benchmark
+    public FractionalPlacedBet codecDecodeFractionalPlacedBet() {
+        return FractionalPlacedBet.fromJson(fractionalPlacedBetJson);
+    }
+
+    @Benchmark
+    public Buffer jacksonEncodeJsonError() {
+        return Buffer.buffer(Json.encode(jsonError));
+    }
+
+    @Benchmark
+    public Buffer codecEncodeJsonError() {
+        return jsonError.toJsonBuffer();
+    }
+
+    @Benchmark
+    public JsonError jacksonDecodeJsonError() {
+        return Json.decodeValue(jsonErrorJson.toString("UTF-8"), JsonError.class);
+    }
+
+    @Benchmark
+    public JsonError codecDecodeJsonError() {
+        return JsonError.fromJson(jsonErrorJson);
+    }
+
+    @Benchmark
+    public Buffer boxedPlaceBet() {
+        DecimalBet db = DecimalBet.fromJson(decimalBetJson);
+        return FractionalBet.builder()
+                .betId(db.getBetId())
+                .odds(OddsConversionUtils.convertDecimalBetToFraction(db.getOdds()))
+                .stake(db.getStake())
+                .build()
+                .toJsonBuffer();
+    }
+
+    @Benchmark
+    public Buffer primitivePlaceBet() {
+        return Bet.decodeDecimal(decimalBetJson, WireFormat.JSON).toFractionalJson();
+    }
+
+    @Benchmark
+    public Buffer boxedPlacedBet() {
+        FractionalPlacedBet pb = FractionalPlacedBet.fromJson(fractionalPlacedBetJson);
+        return DecimalPlacedBet.builder()
+                .betId(pb.getBetId())
+                .event(pb.getEvent())
+                .name(pb.getName())
+                .odds(OddsConversionUtils.convertFractionToDecimalBet(fractionalBet.getOdds()))
+                .stake(pb.getStake())
+                .transactionId(pb.getTransactionId())
+                .build()
+                .toJsonBuffer();
+    }
+
+    @Benchmark
+    public Buffer primitivePlacedBet() {
+        return PlacedBet.fromFractionalJson(fractionalPlacedBetJson, bet).toJsonBuffer();
+    }
+}
@@ -0,0 +1,54 @@
+package skybet.test.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import skybet.test.pojo.FractionalOdds;
+import skybet.test.utils.OddsConversionUtils;
+
+/**
+ *
+ * Benchmarks the odds conversion in both directions, for prices on and off
+ * the odds ladder.
+ *
+ * @author chrishovey
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OddsConversionBenchmark {
+
+    private Double ladderOdds = 4.333333333333333;
+    private Double offLadderOdds = 1.37;
+    private FractionalOdds fractionalOdds = FractionalOdds.builder().numerator(11).denominator(10).build();
+
+    @Benchmark
+    public FractionalOdds decimalToFractionOnLadder() {
+        return OddsConversionUtils.convertDecimalBetToFraction(ladderOdds);
+    }
+
+    @Benchmark
+    public FractionalOdds decimalToFractionOffLadder() {
+        return OddsConversionUtils.convertDecimalBetToFraction(offLadderOdds);
+    }
+
+    @Benchmark
+    public long decimalToPackedFractionOffLadder() {
+        return OddsConversionUtils.convertDecimalBetToPackedFraction(offLadderOdds);
+    }
+
+    @Benchmark
+    public double fractionToDecimal() {
+        return OddsConversionUtils.convertFractionToDecimalBet(fractionalOdds);
+    }
+}
@@ -0,0 +1,60 @@
+package skybet.test.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import skybet.test.utils.PackedRational;
+import skybet.test.utils.Rational;
+
+/**
+ *
+ * Benchmarks Rational arithmetic against the packed long PackedRational
+ * equivalent.
+ *
+ * @author chrishovey
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RationalBenchmark {
+
+    private Rational a = new Rational(11, 8);
+    private Rational b = new Rational(100, 30);
+    private long pa = PackedRational.of(11, 8);
+    private long pb = PackedRational.of(100, 30);
+
+    @Benchmark
+    public Rational rationalPlus() {
+        return a.plus(b);
+    }
+
+    @Benchmark
+    public Rational rationalTimes() {
+        return a.times(b);
+    }
+
+    @Benchmark
+    public int rationalHashCode() {
+        return a.hashCode();
+    }
+
+    @Benchmark
+    public long packedPlus() {
+        return PackedRational.plus(pa, pb);
+    }
+
+    @Benchmark
+    public long packedTimes() {
+        return PackedRational.times(pa, pb);
+    }
+}
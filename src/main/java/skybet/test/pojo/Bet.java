@@ -0,0 +1,176 @@
+package skybet.test.pojo;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import java.io.IOException;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import skybet.test.utils.OddsConversionUtils;
+import skybet.test.utils.PackedRational;
+
+/**
+ * This class is the service's own model of a bet, held in primitives so that
+ * placing a bet does not box its id, odds or stake.
+ * <p>
+ * The odds are held as fractional odds packed into a long, see
+ * PackedRational, so they are exact and are sent to sky as they are, with no
+ * floating point rounding after the decimal odds the client sent have been
+ * converted. The conversion happens once, as the decimal json a client sends
+ * is read, and the bet is written straight to the fractional json sky
+ * expects. DecimalBet and FractionalBet remain the POJO's of the two json
+ * formats.
+ * <p>
+ * Unlike DecimalBet every field must be given, a bet without a bet_id, odds
+ * or stake cannot be placed.
+ *
+ * @author chrishovey
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Bet {
+
+    private static final int SIZE_HINT = 64;
+
+    private long betId;
+    private long odds;
+    private int stake;
+
+    /**
+     * This class collects the fields of a decimal bet as they are read.
+     */
+    private static class DecimalFields {
+
+        private static final int BET_ID = 1;
+        private static final int ODDS = 2;
+        private static final int STAKE = 4;
+
+        private long betId;
+        private double odds;
+        private int stake;
+        private int seen;
+    }
+
+    /**
+     *
+     * @param betId the bet_id
+     * @param numerator numerator of the fractional odds
+     * @param denominator denominator of the fractional odds
+     * @param stake the stake
+     * @return the bet
+     * @throws ArithmeticException if the denominator is 0
+     */
+    public static Bet of(long betId, int numerator, int denominator, int stake) {
+        return new Bet(betId, PackedRational.of(numerator, denominator), stake);
+    }
+
+    public int numerator() {
+        return PackedRational.numerator(odds);
+    }
+
+    public int denominator() {
+        return PackedRational.denominator(odds);
+    }
+
+    /**
+     *
+     * @return the odds in a decimal format
+     */
+    public double decimalOdds() {
+        return OddsConversionUtils.convertFractionToDecimalBet(numerator(), denominator());
+    }
+
+    /**
+     *
+     * @return the bet as the fractional json sky expects, the same json
+     * FractionalBet writes
+     */
+    public Buffer toFractionalJson() {
+        return JsonCodec.encode(this::writeFractional, SIZE_HINT, WireFormat.JSON);
+    }
+
+    /**
+     *
+     * @param g the generator to write the bet as a fractional json object to
+     * @throws IOException if the generator fails
+     */
+    public void writeFractional(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        g.writeNumberField("bet_id", betId);
+        g.writeFieldName("odds");
+        g.writeStartObject();
+        g.writeNumberField("numerator", numerator());
+        g.writeNumberField("denominator", denominator());
+        g.writeEndObject();
+        g.writeNumberField("stake", stake);
+        g.writeEndObject();
+    }
+
+    /**
+     *
+     * @param body buffer holding a bet in the DecimalBet format
+     * @param format the format the buffer is in
+     * @return the decoded bet, or null if the body is null
+     * @throws DecodeException if the body is not a complete bet or its odds
+     * cannot be converted to a fraction
+     */
+    public static Bet decodeDecimal(Buffer body, WireFormat format) {
+        return JsonCodec.decode(body, Bet::readDecimal, format);
+    }
+
+    /**
+     *
+     * @param body buffer holding an array of bets in the DecimalBet format
+     * @param format the format the buffer is in
+     * @return the decoded bets, an element that is not a complete bet is left
+     * null
+     * @throws DecodeException if the body is not an array
+     */
+    public static Bet[] decodeDecimalArray(Buffer body, WireFormat format) {
+        return JsonCodec.decodeArray(body, Bet::readDecimal, Bet[]::new, format);
+    }
+
+    /**
+     *
+     * @param p a parser positioned at the start of a DecimalBet json object,
+     * it is left at the end of the object
+     * @return the decoded bet
+     * @throws IOException if the json cannot be parsed
+     * @throws DecodeException if the json is not a complete bet or its odds
+     * cannot be converted to a fraction
+     */
+    public static Bet readDecimal(JsonParser p) throws IOException {
+        DecimalFields fields = JsonCodec.readObject(p, new DecimalFields(), (value, field, q) -> {
+            switch (field) {
+                case "bet_id":
+                    value.betId = JsonCodec.readLongValue(q);
+                    value.seen |= DecimalFields.BET_ID;
+                    break;
+                case "odds":
+                    value.odds = JsonCodec.readDoubleValue(q);
+                    value.seen |= DecimalFields.ODDS;
+                    break;
+                case "stake":
+                    value.stake = JsonCodec.readIntValue(q);
+                    value.seen |= DecimalFields.STAKE;
+                    break;
+                default:
+                    throw JsonCodec.unknownField(field);
+            }
+        });
+        if (fields.seen != (DecimalFields.BET_ID | DecimalFields.ODDS | DecimalFields.STAKE)) {
+            throw new DecodeException("bet_id, odds and stake must all be given");
+        }
+        try {
+            return new Bet(fields.betId, OddsConversionUtils.convertDecimalBetToPackedFraction(fields.odds),
+                    fields.stake);
+        } catch (IllegalArgumentException iae) {
+            throw new DecodeException(iae.getMessage());
+        }
+    }
+}
@@ -6,6 +6,11 @@
 package skybet.test.pojo;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import java.io.IOException;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -36,4 +41,83 @@ public class DecimalBet extends JsonSerialisable {
     private Long betId;
     private Double odds;
     private Integer stake;
+
+    @Override
+    public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        JsonCodec.writeNumber(g, "bet_id", betId);
+        JsonCodec.writeNumber(g, "odds", odds);
+        JsonCodec.writeNumber(g, "stake", stake);
+        g.writeEndObject();
+    }
+
+    /**
+     *
+     * @param json buffer holding the json object
+     * @return the decoded DecimalBet, or null if the json is null
+     * @throws DecodeException if the json is not a DecimalBet
+     */
+    public static DecimalBet fromJson(Buffer json) {
+        return decode(json, WireFormat.JSON);
+    }
+
+    /**
+     *
+     * @param body buffer holding the encoded object
+     * @param format the format the buffer is in
+     * @return the decoded DecimalBet, or null if the body is null
+     * @throws DecodeException if the body is not a DecimalBet
+     */
+    public static DecimalBet decode(Buffer body, WireFormat format) {
+        return JsonCodec.decode(body, DecimalBet::readJson, format);
+    }
+
+    /**
+     *
+     * @param json buffer holding a json array of bets
+     * @return the decoded bets, an element that is not a valid DecimalBet is
+     * left null
+     * @throws DecodeException if the json is not an array
+     */
+    public static DecimalBet[] fromJsonArray(Buffer json) {
+        return decodeArray(json, WireFormat.JSON);
+    }
+
+    /**
+     *
+     * @param body buffer holding an encoded array of bets
+     * @param format the format the buffer is in
+     * @return the decoded bets, an element that is not a valid DecimalBet is
+     * left null
+     * @throws DecodeException if the body is not an array
+     */
+    public static DecimalBet[] decodeArray(Buffer body, WireFormat format) {
+        return JsonCodec.decodeArray(body, DecimalBet::readJson, DecimalBet[]::new, format);
+    }
+
+    /**
+     *
+     * @param p a parser positioned at the start of the json object, it is
+     * left at the end of the object
+     * @return the decoded DecimalBet
+     * @throws IOException if the json cannot be parsed
+     * @throws DecodeException if the json is not a DecimalBet
+     */
+    public static DecimalBet readJson(JsonParser p) throws IOException {
+        return JsonCodec.readObject(p, new DecimalBet(), (value, field, q) -> {
+            switch (field) {
+                case "bet_id":
+                    value.betId = JsonCodec.readLong(q);
+                    break;
+                case "odds":
+                    value.odds = JsonCodec.readDouble(q);
+                    break;
+                case "stake":
+                    value.stake = JsonCodec.readInteger(q);
+                    break;
+                default:
+                    throw JsonCodec.unknownField(field);
+            }
+        });
+    }
 }
@@ -6,6 +6,11 @@
 package skybet.test.pojo;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import java.io.IOException;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -38,4 +43,71 @@ public class DecimalPlacedBet extends JsonSerialisable {
     @JsonProperty("transaction_id")
     private Long transactionId;
 
+    @Override
+    public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        JsonCodec.writeNumber(g, "bet_id", betId);
+        JsonCodec.writeString(g, "event", event);
+        JsonCodec.writeString(g, "name", name);
+        JsonCodec.writeNumber(g, "odds", odds);
+        JsonCodec.writeNumber(g, "stake", stake);
+        JsonCodec.writeNumber(g, "transaction_id", transactionId);
+        g.writeEndObject();
+    }
+
+    /**
+     *
+     * @param json buffer holding the json object
+     * @return the decoded DecimalPlacedBet, or null if the json is null
+     * @throws DecodeException if the json is not a DecimalPlacedBet
+     */
+    public static DecimalPlacedBet fromJson(Buffer json) {
+        return decode(json, WireFormat.JSON);
+    }
+
+    /**
+     *
+     * @param body buffer holding the encoded object
+     * @param format the format the buffer is in
+     * @return the decoded DecimalPlacedBet, or null if the body is null
+     * @throws DecodeException if the body is not a DecimalPlacedBet
+     */
+    public static DecimalPlacedBet decode(Buffer body, WireFormat format) {
+        return JsonCodec.decode(body, DecimalPlacedBet::readJson, format);
+    }
+
+    /**
+     *
+     * @param p a parser positioned at the start of the json object, it is
+     * left at the end of the object
+     * @return the decoded DecimalPlacedBet
+     * @throws IOException if the json cannot be parsed
+     * @throws DecodeException if the json is not a DecimalPlacedBet
+     */
+    public static DecimalPlacedBet readJson(JsonParser p) throws IOException {
+        return JsonCodec.readObject(p, new DecimalPlacedBet(), (value, field, q) -> {
+            switch (field) {
+                case "bet_id":
+                    value.betId = JsonCodec.readLong(q);
+                    break;
+                case "event":
+                    value.event = JsonCodec.readString(q);
+                    break;
+                case "name":
+                    value.name = JsonCodec.readString(q);
+                    break;
+                case "odds":
+                    value.odds = JsonCodec.readDouble(q);
+                    break;
+                case "stake":
+                    value.stake = JsonCodec.readInteger(q);
+                    break;
+                case "transaction_id":
+                    value.transactionId = JsonCodec.readLong(q);
+                    break;
+                default:
+                    throw JsonCodec.unknownField(field);
+            }
+        });
+    }
 }
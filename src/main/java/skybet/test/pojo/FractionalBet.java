@@ -6,6 +6,12 @@
 package skybet.test.pojo;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import java.io.IOException;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -34,4 +40,49 @@ public class FractionalBet extends JsonSerialisable {
     private Long betId;
     private FractionalOdds odds;
     private Integer stake;
+
+    @Override
+    public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        JsonCodec.writeNumber(g, "bet_id", betId);
+        JsonCodec.writeOdds(g, "odds", odds);
+        JsonCodec.writeNumber(g, "stake", stake);
+        g.writeEndObject();
+    }
+
+    /**
+     *
+     * @param json buffer holding the json object
+     * @return the decoded FractionalBet, or null if the json is null
+     * @throws DecodeException if the json is not a FractionalBet
+     */
+    public static FractionalBet fromJson(Buffer json) {
+        return JsonCodec.decode(json, FractionalBet::readJson, WireFormat.JSON);
+    }
+
+    /**
+     *
+     * @param p a parser positioned at the start of the json object, it is
+     * left at the end of the object
+     * @return the decoded FractionalBet
+     * @throws IOException if the json cannot be parsed
+     * @throws DecodeException if the json is not a FractionalBet
+     */
+    public static FractionalBet readJson(JsonParser p) throws IOException {
+        return JsonCodec.readObject(p, new FractionalBet(), (value, field, q) -> {
+            switch (field) {
+                case "bet_id":
+                    value.betId = JsonCodec.readLong(q);
+                    break;
+                case "odds":
+                    value.odds = q.getCurrentToken() == JsonToken.VALUE_NULL ? null : FractionalOdds.readJson(q);
+                    break;
+                case "stake":
+                    value.stake = JsonCodec.readInteger(q);
+                    break;
+                default:
+                    throw JsonCodec.unknownField(field);
+            }
+        });
+    }
 }
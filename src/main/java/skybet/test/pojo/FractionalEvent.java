@@ -6,6 +6,12 @@
 package skybet.test.pojo;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import java.io.IOException;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -35,6 +41,53 @@ public class FractionalEvent extends JsonSerialisable{
     private String event;
     private String name;
     private FractionalOdds odds;
-   
 
+    @Override
+    public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        JsonCodec.writeNumber(g, "bet_id", betId);
+        JsonCodec.writeString(g, "event", event);
+        JsonCodec.writeString(g, "name", name);
+        JsonCodec.writeOdds(g, "odds", odds);
+        g.writeEndObject();
+    }
+
+    /**
+     *
+     * @param json buffer holding the json object
+     * @return the decoded FractionalEvent, or null if the json is null
+     * @throws DecodeException if the json is not a FractionalEvent
+     */
+    public static FractionalEvent fromJson(Buffer json) {
+        return JsonCodec.decode(json, FractionalEvent::readJson, WireFormat.JSON);
+    }
+
+    /**
+     *
+     * @param p a parser positioned at the start of the json object, it is
+     * left at the end of the object
+     * @return the decoded FractionalEvent
+     * @throws IOException if the json cannot be parsed
+     * @throws DecodeException if the json is not a FractionalEvent
+     */
+    public static FractionalEvent readJson(JsonParser p) throws IOException {
+        return JsonCodec.readObject(p, new FractionalEvent(), (value, field, q) -> {
+            switch (field) {
+                case "bet_id":
+                    value.betId = JsonCodec.readLong(q);
+                    break;
+                case "event":
+                    value.event = JsonCodec.readString(q);
+                    break;
+                case "name":
+                    value.name = JsonCodec.readString(q);
+                    break;
+                case "odds":
+                    value.odds = q.getCurrentToken() == JsonToken.VALUE_NULL ? null : FractionalOdds.readJson(q);
+                    break;
+                default:
+                    throw JsonCodec.unknownField(field);
+            }
+        });
+    }
 }
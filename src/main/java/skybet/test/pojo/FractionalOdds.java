@@ -5,6 +5,11 @@
  */
 package skybet.test.pojo;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import java.io.IOException;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -31,4 +36,48 @@ public class FractionalOdds {
     private Integer numerator;
     private Integer denominator;
 
+    /**
+     *
+     * @param g the generator to write the odds as a json object to
+     * @throws IOException if the generator fails
+     */
+    public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        JsonCodec.writeNumber(g, "numerator", numerator);
+        JsonCodec.writeNumber(g, "denominator", denominator);
+        g.writeEndObject();
+    }
+
+    /**
+     *
+     * @param json buffer holding the json object
+     * @return the decoded FractionalOdds, or null if the json is null
+     * @throws DecodeException if the json is not a FractionalOdds
+     */
+    public static FractionalOdds fromJson(Buffer json) {
+        return JsonCodec.decode(json, FractionalOdds::readJson, WireFormat.JSON);
+    }
+
+    /**
+     *
+     * @param p a parser positioned at the start of the json object, it is
+     * left at the end of the object
+     * @return the decoded FractionalOdds
+     * @throws IOException if the json cannot be parsed
+     * @throws DecodeException if the json is not a FractionalOdds
+     */
+    public static FractionalOdds readJson(JsonParser p) throws IOException {
+        return JsonCodec.readObject(p, new FractionalOdds(), (value, field, q) -> {
+            switch (field) {
+                case "numerator":
+                    value.numerator = JsonCodec.readInteger(q);
+                    break;
+                case "denominator":
+                    value.denominator = JsonCodec.readInteger(q);
+                    break;
+                default:
+                    throw JsonCodec.unknownField(field);
+            }
+        });
+    }
 }
@@ -6,6 +6,12 @@
 package skybet.test.pojo;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import java.io.IOException;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -39,4 +45,60 @@ public class FractionalPlacedBet extends JsonSerialisable{
     @JsonProperty("transaction_id")
     private Long transactionId;
 
+    @Override
+    public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        JsonCodec.writeNumber(g, "bet_id", betId);
+        JsonCodec.writeString(g, "event", event);
+        JsonCodec.writeString(g, "name", name);
+        JsonCodec.writeOdds(g, "odds", odds);
+        JsonCodec.writeNumber(g, "stake", stake);
+        JsonCodec.writeNumber(g, "transaction_id", transactionId);
+        g.writeEndObject();
+    }
+
+    /**
+     *
+     * @param json buffer holding the json object
+     * @return the decoded FractionalPlacedBet, or null if the json is null
+     * @throws DecodeException if the json is not a FractionalPlacedBet
+     */
+    public static FractionalPlacedBet fromJson(Buffer json) {
+        return JsonCodec.decode(json, FractionalPlacedBet::readJson, WireFormat.JSON);
+    }
+
+    /**
+     *
+     * @param p a parser positioned at the start of the json object, it is
+     * left at the end of the object
+     * @return the decoded FractionalPlacedBet
+     * @throws IOException if the json cannot be parsed
+     * @throws DecodeException if the json is not a FractionalPlacedBet
+     */
+    public static FractionalPlacedBet readJson(JsonParser p) throws IOException {
+        return JsonCodec.readObject(p, new FractionalPlacedBet(), (value, field, q) -> {
+            switch (field) {
+                case "bet_id":
+                    value.betId = JsonCodec.readLong(q);
+                    break;
+                case "event":
+                    value.event = JsonCodec.readString(q);
+                    break;
+                case "name":
+                    value.name = JsonCodec.readString(q);
+                    break;
+                case "odds":
+                    value.odds = q.getCurrentToken() == JsonToken.VALUE_NULL ? null : FractionalOdds.readJson(q);
+                    break;
+                case "stake":
+                    value.stake = JsonCodec.readInteger(q);
+                    break;
+                case "transaction_id":
+                    value.transactionId = JsonCodec.readLong(q);
+                    break;
+                default:
+                    throw JsonCodec.unknownField(field);
+            }
+        });
+    }
 }
@@ -0,0 +1,315 @@
+package skybet.test.pojo;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.EncodeException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ *
+ * This class holds the helpers the json POJO's use to write and read
+ * themselves with the Jackson streaming api, straight to and from Buffer
+ * bytes, rather than through the reflection based ObjectMapper and a String.
+ * The same code writes and reads every WireFormat, only the Jackson factory
+ * differs.
+ * <p>
+ * The readers follow the ObjectMapper's rules so the POJO's accept the same
+ * json as before: numbers may be sent as json strings, floating point numbers
+ * are truncated for integer fields, nulls are allowed and unknown fields are
+ * rejected. The readers of primitive values follow the same rules but reject
+ * nulls, for fields that must be given.
+ *
+ * @author chrishovey
+ */
+final class JsonCodec {
+
+    /**
+     * This interface writes a value with a generator.
+     */
+    interface Writer {
+
+        void write(JsonGenerator g) throws IOException;
+    }
+
+    /**
+     * This interface reads a value the parser is positioned at.
+     */
+    interface Reader<T> {
+
+        T read(JsonParser p) throws IOException;
+    }
+
+    /**
+     * This interface reads the value of one field into the target object.
+     */
+    interface FieldReader<T> {
+
+        void read(T target, String field, JsonParser p) throws IOException;
+    }
+
+    private JsonCodec() {
+    }
+
+    /**
+     *
+     * @param writer writes the json
+     * @param sizeHint the expected size of the json in bytes
+     * @param format the format to write
+     * @return buffer holding the encoded value
+     */
+    static Buffer encode(Writer writer, int sizeHint, WireFormat format) {
+        ByteBuf out = Unpooled.buffer(sizeHint);
+        try (JsonGenerator g = format.factory().createGenerator(new ByteBufOutputStream(out))) {
+            writer.write(g);
+        } catch (IOException e) {
+            throw new EncodeException(e.getMessage());
+        }
+        return Buffer.buffer(out);
+    }
+
+    /**
+     *
+     * @param json buffer holding the encoded value
+     * @param reader reads the value the parser is positioned at
+     * @param format the format the buffer is in
+     * @return the value, or null if the json is null
+     * @throws DecodeException if the json cannot be read
+     */
+    static <T> T decode(Buffer json, Reader<T> reader, WireFormat format) {
+        try (JsonParser p = format.factory().createParser(new ByteBufInputStream(json.getByteBuf()))) {
+            JsonToken token = p.nextToken();
+            if (token == null) {
+                throw new DecodeException("Failed to decode: no content");
+            }
+            return token == JsonToken.VALUE_NULL ? null : reader.read(p);
+        } catch (IOException e) {
+            throw new DecodeException("Failed to decode: " + e.getMessage());
+        }
+    }
+
+    /**
+     *
+     * This method reads a json array, each element that cannot be read is
+     * left null rather than failing the whole array.
+     *
+     * @param json buffer holding the encoded array
+     * @param reader reads an element the parser is positioned at
+     * @param empty creates the result array
+     * @param format the format the buffer is in
+     * @return the elements
+     * @throws DecodeException if the json is not an array
+     */
+    static <T> T[] decodeArray(Buffer json, Reader<T> reader, IntFunction<T[]> empty, WireFormat format) {
+        try (JsonParser p = format.factory().createParser(new ByteBufInputStream(json.getByteBuf()))) {
+            if (p.nextToken() != JsonToken.START_ARRAY) {
+                throw new DecodeException("Failed to decode: expected an array");
+            }
+            T[] values = empty.apply(16);
+            int size = 0;
+            while (p.nextToken() != JsonToken.END_ARRAY) {
+                if (p.getCurrentToken() == null) {
+                    throw new DecodeException("Failed to decode: unexpected end of input");
+                }
+                T value = null;
+                try {
+                    value = p.getCurrentToken() == JsonToken.VALUE_NULL ? null : reader.read(p);
+                } catch (DecodeException de) {
+                    // a bad element, reader has skipped over it
+                }
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size++] = value;
+            }
+            return Arrays.copyOf(values, size);
+        } catch (IOException e) {
+            throw new DecodeException("Failed to decode: " + e.getMessage());
+        }
+    }
+
+    /**
+     *
+     * This method reads the json object the parser is positioned at into the
+     * target. If a field has the wrong type the rest of the object is still
+     * read, so the parser is left at the end of the object, before failing.
+     *
+     * @param p the parser
+     * @param target the object to read into
+     * @param fields reads each field
+     * @return the target
+     * @throws DecodeException if the value is not an object of the target
+     * type
+     */
+    static <T> T readObject(JsonParser p, T target, FieldReader<T> fields) throws IOException {
+        if (p.getCurrentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            throw new DecodeException("expected an object but was " + p.getCurrentToken());
+        }
+        DecodeException error = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            try {
+                fields.read(target, field, p);
+            } catch (DecodeException de) {
+                if (error == null) {
+                    error = de;
+                }
+                p.skipChildren();
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+        return target;
+    }
+
+    static DecodeException unknownField(String field) {
+        return new DecodeException("Unrecognized field \"" + field + "\"");
+    }
+
+    static Long readLong(JsonParser p) throws IOException {
+        return isNull(p) ? null : readLongValue(p);
+    }
+
+    static long readLongValue(JsonParser p) throws IOException {
+        switch (p.getCurrentToken()) {
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                try {
+                    return p.getLongValue();
+                } catch (JsonParseException jpe) {
+                    throw new DecodeException(jpe.getOriginalMessage());
+                }
+            case VALUE_STRING:
+                String text = p.getText().trim();
+                try {
+                    return Long.parseLong(text);
+                } catch (NumberFormatException nfe) {
+                    throw new DecodeException("not a long: " + text);
+                }
+            default:
+                throw new DecodeException("expected a long but was " + p.getCurrentToken());
+        }
+    }
+
+    static Integer readInteger(JsonParser p) throws IOException {
+        return isNull(p) ? null : readIntValue(p);
+    }
+
+    static int readIntValue(JsonParser p) throws IOException {
+        switch (p.getCurrentToken()) {
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                try {
+                    return p.getIntValue();
+                } catch (JsonParseException jpe) {
+                    throw new DecodeException(jpe.getOriginalMessage());
+                }
+            case VALUE_STRING:
+                String text = p.getText().trim();
+                try {
+                    return Integer.parseInt(text);
+                } catch (NumberFormatException nfe) {
+                    throw new DecodeException("not an int: " + text);
+                }
+            default:
+                throw new DecodeException("expected an int but was " + p.getCurrentToken());
+        }
+    }
+
+    static Double readDouble(JsonParser p) throws IOException {
+        return isNull(p) ? null : readDoubleValue(p);
+    }
+
+    static double readDoubleValue(JsonParser p) throws IOException {
+        switch (p.getCurrentToken()) {
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return p.getDoubleValue();
+            case VALUE_STRING:
+                String text = p.getText().trim();
+                try {
+                    return Double.parseDouble(text);
+                } catch (NumberFormatException nfe) {
+                    throw new DecodeException("not a double: " + text);
+                }
+            default:
+                throw new DecodeException("expected a double but was " + p.getCurrentToken());
+        }
+    }
+
+    // a json null, or an empty string which the ObjectMapper also reads as
+    // null for a number field
+    private static boolean isNull(JsonParser p) throws IOException {
+        JsonToken token = p.getCurrentToken();
+        return token == JsonToken.VALUE_NULL
+                || (token == JsonToken.VALUE_STRING && p.getText().trim().isEmpty());
+    }
+
+    static String readString(JsonParser p) throws IOException {
+        JsonToken token = p.getCurrentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token.isScalarValue()) {
+            return p.getText();
+        }
+        throw new DecodeException("expected a string but was " + token);
+    }
+
+    static void writeNumber(JsonGenerator g, String field, Long value) throws IOException {
+        g.writeFieldName(field);
+        if (value == null) {
+            g.writeNull();
+        } else {
+            g.writeNumber(value);
+        }
+    }
+
+    static void writeNumber(JsonGenerator g, String field, Integer value) throws IOException {
+        g.writeFieldName(field);
+        if (value == null) {
+            g.writeNull();
+        } else {
+            g.writeNumber(value);
+        }
+    }
+
+    static void writeNumber(JsonGenerator g, String field, Double value) throws IOException {
+        g.writeFieldName(field);
+        if (value == null) {
+            g.writeNull();
+        } else {
+            g.writeNumber(value);
+        }
+    }
+
+    static void writeString(JsonGenerator g, String field, String value) throws IOException {
+        g.writeFieldName(field);
+        if (value == null) {
+            g.writeNull();
+        } else {
+            g.writeString(value);
+        }
+    }
+
+    static void writeOdds(JsonGenerator g, String field, FractionalOdds value) throws IOException {
+        g.writeFieldName(field);
+        if (value == null) {
+            g.writeNull();
+        } else {
+            value.writeJson(g);
+        }
+    }
+}
@@ -5,6 +5,12 @@
  */
 package skybet.test.pojo;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import java.io.IOException;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -12,6 +18,10 @@ import lombok.NoArgsConstructor;
 
 /**
  * This class represents an error message when the json object cannot be parsed.
+ * <p>
+ * When a bet is rejected because its odds are out of date the error also
+ * holds the current decimal odds, otherwise currentOdds is null and left out
+ * of the json.
  * 
  * @author chrishovey
  *
@@ -24,5 +34,54 @@ public class JsonError extends JsonSerialisable {
 
     private int errorCode;
     private String errorMessage;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double currentOdds;
 
+    @Override
+    public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        g.writeNumberField("errorCode", errorCode);
+        JsonCodec.writeString(g, "errorMessage", errorMessage);
+        if (currentOdds != null) {
+            JsonCodec.writeNumber(g, "currentOdds", currentOdds);
+        }
+        g.writeEndObject();
+    }
+
+    /**
+     *
+     * @param json buffer holding the json object
+     * @return the decoded JsonError, or null if the json is null
+     * @throws DecodeException if the json is not a JsonError
+     */
+    public static JsonError fromJson(Buffer json) {
+        return JsonCodec.decode(json, JsonError::readJson, WireFormat.JSON);
+    }
+
+    /**
+     *
+     * @param p a parser positioned at the start of the json object, it is
+     * left at the end of the object
+     * @return the decoded JsonError
+     * @throws IOException if the json cannot be parsed
+     * @throws DecodeException if the json is not a JsonError
+     */
+    public static JsonError readJson(JsonParser p) throws IOException {
+        return JsonCodec.readObject(p, new JsonError(), (value, field, q) -> {
+            switch (field) {
+                case "errorCode":
+                    Integer errorCodeValue = JsonCodec.readInteger(q);
+                    value.errorCode = errorCodeValue == null ? 0 : errorCodeValue;
+                    break;
+                case "errorMessage":
+                    value.errorMessage = JsonCodec.readString(q);
+                    break;
+                case "currentOdds":
+                    value.currentOdds = JsonCodec.readDouble(q);
+                    break;
+                default:
+                    throw JsonCodec.unknownField(field);
+            }
+        });
+    }
 }
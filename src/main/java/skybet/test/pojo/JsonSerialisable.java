@@ -5,19 +5,79 @@
  */
 package skybet.test.pojo;
 
-import io.vertx.core.json.Json;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.vertx.core.buffer.Buffer;
+import java.io.IOException;
 
 /**
  *
  * This class is extened by all the json POJO's to provide a readable
  * way to serialising the POJO.
+ * <p>
+ * Each POJO writes its own fields with the Jackson streaming api, see
+ * JsonCodec, so no reflection or intermediate String is involved.
  * 
  * @author chrishovey
  *
  */
 public abstract class JsonSerialisable {
-    
+
+    private static final int SIZE_HINT = 128;
+
     public String toJsonString() {
-        return Json.encode(this);
+        return toJsonBuffer().toString("UTF-8");
+    }
+
+    /**
+     *
+     * @return the POJO encoded as json, ready to be sent
+     */
+    public Buffer toJsonBuffer() {
+        return encode(WireFormat.JSON);
+    }
+
+    /**
+     *
+     * @param format the format to encode in
+     * @return the POJO encoded in the format, ready to be sent
+     */
+    public Buffer encode(WireFormat format) {
+        return JsonCodec.encode(this::writeJson, SIZE_HINT, format);
     }
+
+    /**
+     *
+     * @param values the POJO's to encode, may hold nulls
+     * @return the POJO's encoded as a json array, ready to be sent
+     */
+    public static Buffer toJsonBuffer(JsonSerialisable[] values) {
+        return encode(values, WireFormat.JSON);
+    }
+
+    /**
+     *
+     * @param values the POJO's to encode, may hold nulls
+     * @param format the format to encode in
+     * @return the POJO's encoded as an array in the format, ready to be sent
+     */
+    public static Buffer encode(JsonSerialisable[] values, WireFormat format) {
+        return JsonCodec.encode(g -> {
+            g.writeStartArray();
+            for (JsonSerialisable value : values) {
+                if (value == null) {
+                    g.writeNull();
+                } else {
+                    value.writeJson(g);
+                }
+            }
+            g.writeEndArray();
+        }, SIZE_HINT * Math.max(1, values.length), format);
+    }
+
+    /**
+     *
+     * @param g the generator to write the POJO as a json object to
+     * @throws IOException if the generator fails
+     */
+    public abstract void writeJson(JsonGenerator g) throws IOException;
 }
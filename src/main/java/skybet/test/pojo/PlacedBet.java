@@ -0,0 +1,136 @@
+package skybet.test.pojo;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import java.io.IOException;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import skybet.test.utils.OddsConversionUtils;
+import skybet.test.utils.PackedRational;
+
+/**
+ * This class is the service's own model of a placed bet, the receipt sky
+ * sends back for a Bet, held in primitives as Bet is.
+ * <p>
+ * It is read straight from the fractional json receipt sky sends and written
+ * as the same decimal json DecimalPlacedBet writes, with the decimal odds
+ * worked out from the exact fractional odds only as the json is written. The
+ * odds are those of the bet that was placed. The bet_id, stake and
+ * transaction_id must all be in the receipt.
+ *
+ * @author chrishovey
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlacedBet extends JsonSerialisable {
+
+    private long betId;
+    private String event;
+    private String name;
+    private long odds;
+    private int stake;
+    private long transactionId;
+
+    /**
+     * This class collects the fields of a fractional receipt as they are
+     * read.
+     */
+    private static class FractionalFields {
+
+        private static final int BET_ID = 1;
+        private static final int STAKE = 2;
+        private static final int TRANSACTION_ID = 4;
+
+        private long betId;
+        private String event;
+        private String name;
+        private int stake;
+        private long transactionId;
+        private int seen;
+    }
+
+    /**
+     *
+     * @return the odds in a decimal format
+     */
+    public double decimalOdds() {
+        return OddsConversionUtils.convertFractionToDecimalBet(PackedRational.numerator(odds),
+                PackedRational.denominator(odds));
+    }
+
+    @Override
+    public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        g.writeNumberField("bet_id", betId);
+        JsonCodec.writeString(g, "event", event);
+        JsonCodec.writeString(g, "name", name);
+        g.writeNumberField("odds", decimalOdds());
+        g.writeNumberField("stake", stake);
+        g.writeNumberField("transaction_id", transactionId);
+        g.writeEndObject();
+    }
+
+    /**
+     *
+     * @param json buffer holding the receipt in the FractionalPlacedBet format
+     * @param bet the bet the receipt is for
+     * @return the placed bet, or null if the json is null
+     * @throws DecodeException if the json is not a complete receipt
+     */
+    public static PlacedBet fromFractionalJson(Buffer json, Bet bet) {
+        return JsonCodec.decode(json, p -> readFractional(p, bet), WireFormat.JSON);
+    }
+
+    /**
+     *
+     * @param p a parser positioned at the start of a FractionalPlacedBet json
+     * object, it is left at the end of the object
+     * @param bet the bet the receipt is for
+     * @return the placed bet
+     * @throws IOException if the json cannot be parsed
+     * @throws DecodeException if the json is not a complete receipt
+     */
+    public static PlacedBet readFractional(JsonParser p, Bet bet) throws IOException {
+        FractionalFields fields = JsonCodec.readObject(p, new FractionalFields(), (value, field, q) -> {
+            switch (field) {
+                case "bet_id":
+                    value.betId = JsonCodec.readLongValue(q);
+                    value.seen |= FractionalFields.BET_ID;
+                    break;
+                case "event":
+                    value.event = JsonCodec.readString(q);
+                    break;
+                case "name":
+                    value.name = JsonCodec.readString(q);
+                    break;
+                case "odds":
+                    // the odds placed are those of the bet
+                    q.skipChildren();
+                    break;
+                case "stake":
+                    value.stake = JsonCodec.readIntValue(q);
+                    value.seen |= FractionalFields.STAKE;
+                    break;
+                case "transaction_id":
+                    value.transactionId = JsonCodec.readLongValue(q);
+                    value.seen |= FractionalFields.TRANSACTION_ID;
+                    break;
+                default:
+                    throw JsonCodec.unknownField(field);
+            }
+        });
+        if (fields.seen != (FractionalFields.BET_ID | FractionalFields.STAKE | FractionalFields.TRANSACTION_ID)) {
+            throw new DecodeException("bet_id, stake and transaction_id must all be in the receipt");
+        }
+        return new PlacedBet(fields.betId, fields.event, fields.name, bet.getOdds(), fields.stake,
+                fields.transactionId);
+    }
+}
@@ -0,0 +1,99 @@
+package skybet.test.pojo;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import io.vertx.core.json.Json;
+
+/**
+ *
+ * This enum holds the formats the json POJO's can be sent in.
+ * <p>
+ * JSON is the default. CBOR (RFC 7049, media type application/cbor) is a
+ * binary encoding of the same data model, the POJO's are written with the
+ * same field names and layout, so JVM clients can use any CBOR library, or
+ * Jackson's CBORFactory, to skip parsing json text.
+ *
+ * @author chrishovey
+ */
+public enum WireFormat {
+
+    // shares the parser features, such as allowing comments, of Json.mapper
+    JSON("application/json", "application/json; charset=utf-8", Json.mapper.getFactory()),
+    CBOR("application/cbor", "application/cbor", new CBORFactory());
+
+    private final String mediaType;
+    private final String contentType;
+    private final JsonFactory factory;
+
+    private WireFormat(String mediaType, String contentType, JsonFactory factory) {
+        this.mediaType = mediaType;
+        this.contentType = contentType;
+        this.factory = factory;
+    }
+
+    /**
+     *
+     * @return the Content-Type header value for a body in this format
+     */
+    public String contentType() {
+        return contentType;
+    }
+
+    /**
+     *
+     * @return the Jackson streaming factory for this format
+     */
+    public JsonFactory factory() {
+        return factory;
+    }
+
+    /**
+     *
+     * @param contentType the Content-Type request header, may be null
+     * @return CBOR if the body is application/cbor, otherwise JSON
+     */
+    public static WireFormat fromContentType(String contentType) {
+        if (contentType != null && contentType.trim().toLowerCase().startsWith(CBOR.mediaType)) {
+            return CBOR;
+        }
+        return JSON;
+    }
+
+    /**
+     *
+     * This method picks the format to send a response in. CBOR is only sent
+     * to clients that ask for it with a higher quality than json, so clients
+     * sending a wildcard Accept header still get json.
+     *
+     * @param accept the Accept request header, may be null
+     * @return the format to respond with
+     */
+    public static WireFormat negotiate(String accept) {
+        if (accept == null) {
+            return JSON;
+        }
+        double json = 0;
+        double cbor = 0;
+        for (String part : accept.split(",")) {
+            String[] params = part.split(";");
+            String range = params[0].trim().toLowerCase();
+            double quality = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException nfe) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (CBOR.mediaType.equals(range)) {
+                cbor = Math.max(cbor, quality);
+            } else if (JSON.mediaType.equals(range) || "application/*".equals(range) || "*/*".equals(range)) {
+                json = Math.max(json, quality);
+            }
+        }
+        return cbor > json ? CBOR : JSON;
+    }
+}
@@ -0,0 +1,550 @@
+package skybet.test.rs;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.EncodeException;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import skybet.test.pojo.WireFormat;
+import skybet.test.utils.AvailableTransformer;
+import skybet.test.utils.ContentEncoding;
+import skybet.test.utils.LongIntMap;
+import skybet.test.utils.OddsConversionUtils;
+import skybet.test.utils.PackedRational;
+
+/**
+ * This class is an immutable snapshot of the available events converted to
+ * decimal odds.
+ *
+ * It holds the converted json payload ready to be sent, along with the events
+ * themselves in parallel primitive arrays indexed by bet_id. The arrays are
+ * filled in the same pass that converts the payload, see
+ * AvailableTransformer. The odds are kept as the fractional odds sky sent,
+ * packed into a long, see PackedRational, so a price is compared exactly and
+ * only converted to decimal odds as an event is written. A second index maps
+ * each event name to the positions of its selections, so a single selection
+ * or the selections of one event can be sent without scanning or sending the
+ * whole payload.
+ *
+ * The payload is held as compact json. A pretty printed copy, a CBOR copy
+ * and gzip and deflate compressed copies of each are made the first time
+ * they are asked for and then kept, so serving the snapshot never encodes it
+ * again. Every representation, pages and single events included, is written
+ * by AvailableTransformer.writeEvent from the same values, so they all carry
+ * the same events.
+ *
+ * Once built a snapshot is only read, so it is safe to share between event
+ * loops.
+ *
+ * @author chrishovey
+ */
+public class AvailableSnapshot {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final int[] NONE = new int[0];
+
+    private final Buffer body;
+    private final int size;
+    private final long[] betIds;
+    private final String[] events;
+    private final String[] names;
+    private final long[] odds;
+    private final LongIntMap index;
+    private final Map<String, int[]> byEvent;
+    private final String etag;
+    private final String upstreamEtag;
+    private final String upstreamLastModified;
+
+    // encoded bodies indexed by variant(format, pretty, encoding), filled on
+    // demand, there are three forms: compact json, pretty json and cbor
+    private final AtomicReferenceArray<Buffer> variants = new AtomicReferenceArray<>(3 * ContentEncoding.values().length);
+
+    private volatile String compact;
+
+    private AvailableSnapshot(Buffer body, Builder b, String upstreamEtag, String upstreamLastModified) {
+        this.body = body;
+        this.etag = etag(body);
+        this.variants.set(variant(WireFormat.JSON, false, ContentEncoding.IDENTITY), body);
+        this.upstreamEtag = upstreamEtag;
+        this.upstreamLastModified = upstreamLastModified;
+        this.size = b.size;
+        this.betIds = b.betIds;
+        this.events = b.events;
+        this.names = b.names;
+        this.odds = b.odds;
+        this.index = new LongIntMap(size);
+        for (int i = 0; i < size; i++) {
+            // an event without a bet_id is sent but cannot be looked up or
+            // bet on
+            if (betIds[i] != AvailableTransformer.NO_BET_ID) {
+                index.put(betIds[i], i);
+            }
+        }
+        this.byEvent = indexEvents(events, size);
+    }
+
+    // positions of the selections of each event, in snapshot order
+    private static Map<String, int[]> indexEvents(String[] events, int size) {
+        Map<String, int[]> counts = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            if (events[i] != null) {
+                counts.computeIfAbsent(events[i], e -> new int[1])[0]++;
+            }
+        }
+        Map<String, int[]> positions = new HashMap<>(counts.size() * 2);
+        for (Map.Entry<String, int[]> count : counts.entrySet()) {
+            positions.put(count.getKey(), new int[count.getValue()[0]]);
+            count.getValue()[0] = 0;
+        }
+        for (int i = 0; i < size; i++) {
+            if (events[i] != null) {
+                positions.get(events[i])[counts.get(events[i])[0]++] = i;
+            }
+        }
+        return positions;
+    }
+
+    /**
+     *
+     * @param fractional buffer holding the sky json array of fractional events
+     * @return the converted snapshot
+     * @throws io.vertx.core.json.DecodeException if the payload is not an
+     * array of events
+     */
+    public static AvailableSnapshot fromFractional(Buffer fractional) {
+        return fromFractional(fractional, null, null);
+    }
+
+    /**
+     *
+     * @param fractional buffer holding the sky json array of fractional events
+     * @param upstreamEtag the ETag header sky sent with the events, may be
+     * null
+     * @param upstreamLastModified the Last-Modified header sky sent with the
+     * events, may be null
+     * @return the converted snapshot
+     * @throws io.vertx.core.json.DecodeException if the payload is not an
+     * array of events
+     */
+    public static AvailableSnapshot fromFractional(Buffer fractional, String upstreamEtag,
+            String upstreamLastModified) {
+        Builder b = new Builder();
+        Buffer body = AvailableTransformer.toDecimal(fractional, false, b);
+        return new AvailableSnapshot(body, b, upstreamEtag, upstreamLastModified);
+    }
+
+    /**
+     *
+     * This method converts the events in up to "parallelism" chunks at once,
+     * see AvailableTransformer.toDecimalParallel. It blocks until the whole
+     * payload is converted so it must be called from a worker thread, not an
+     * event loop.
+     *
+     * @param fractional buffer holding the sky json array of fractional events
+     * @param upstreamEtag the ETag header sky sent with the events, may be
+     * null
+     * @param upstreamLastModified the Last-Modified header sky sent with the
+     * events, may be null
+     * @param parallelism the most chunks to convert at once, 1 or less to
+     * convert the payload in one pass on the calling thread
+     * @return the converted snapshot, the same as fromFractional gives
+     * @throws io.vertx.core.json.DecodeException if the payload is not an
+     * array of events
+     */
+    public static AvailableSnapshot fromFractional(Buffer fractional, String upstreamEtag,
+            String upstreamLastModified, int parallelism) {
+        if (parallelism <= 1) {
+            return fromFractional(fractional, upstreamEtag, upstreamLastModified);
+        }
+        Builder[] chunks = new Builder[parallelism];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = new Builder();
+        }
+        Buffer body = AvailableTransformer.toDecimalParallel(fractional, chunks);
+        return new AvailableSnapshot(body, Builder.join(chunks), upstreamEtag, upstreamLastModified);
+    }
+
+    /**
+     *
+     * @return a strong ETag for the compact converted payload, a quoted 64 bit
+     * hash of the body
+     */
+    public String etag() {
+        return etag;
+    }
+
+    /**
+     *
+     * @param format the format the payload is sent in
+     * @param pretty true for the pretty printed payload, ignored for CBOR
+     * @param encoding the content coding the payload is sent with
+     * @return a strong ETag for that representation of the payload, the ETag
+     * of the compact payload with a suffix for each variation
+     */
+    public String etag(WireFormat format, boolean pretty, ContentEncoding encoding) {
+        pretty = pretty && format == WireFormat.JSON;
+        if (format == WireFormat.JSON && !pretty && encoding == ContentEncoding.IDENTITY) {
+            return etag;
+        }
+        StringBuilder tag = new StringBuilder(etag.length() + 16).append(etag, 0, etag.length() - 1);
+        if (format == WireFormat.CBOR) {
+            tag.append("-cbor");
+        }
+        if (pretty) {
+            tag.append("-pretty");
+        }
+        if (encoding != ContentEncoding.IDENTITY) {
+            tag.append('-').append(encoding.token());
+        }
+        return tag.append('"').toString();
+    }
+
+    /**
+     *
+     * This method checks an If-None-Match header against the ETag of the
+     * representation of the snapshot being sent, so a client holding another
+     * representation, such as the json when CBOR is asked for, is sent it in
+     * full.
+     *
+     * @param ifNoneMatch the If-None-Match request header, may be null
+     * @param format the format the payload is sent in
+     * @param pretty true for the pretty printed payload, ignored for CBOR
+     * @param encoding the content coding the payload is sent with
+     * @return true if the header matches, so a 304 not modified can be sent
+     */
+    public boolean matches(String ifNoneMatch, WireFormat format, boolean pretty, ContentEncoding encoding) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String served = etag(format, pretty, encoding);
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if ("*".equals(tag) || served.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String upstreamEtag() {
+        return upstreamEtag;
+    }
+
+    public String upstreamLastModified() {
+        return upstreamLastModified;
+    }
+
+    /**
+     *
+     * @return the converted events as a single line json array
+     */
+    public Buffer body() {
+        return body;
+    }
+
+    /**
+     *
+     * This method returns the payload ready to be sent, encoding it the first
+     * time each variant is asked for.
+     *
+     * @param format the format to send the payload in
+     * @param pretty true for a pretty printed json array, ignored for CBOR
+     * @param encoding the content coding to compress the payload with
+     * @return the converted events
+     */
+    public Buffer body(WireFormat format, boolean pretty, ContentEncoding encoding) {
+        pretty = pretty && format == WireFormat.JSON;
+        int v = variant(format, pretty, encoding);
+        Buffer result = variants.get(v);
+        if (result == null) {
+            if (encoding != ContentEncoding.IDENTITY) {
+                result = encoding.encode(body(format, pretty, ContentEncoding.IDENTITY));
+            } else {
+                // the compact json variant is always set
+                result = encodeAll(format, pretty);
+            }
+            // another thread may have got there first, either copy will do
+            if (!variants.compareAndSet(v, null, result)) {
+                result = variants.get(v);
+            }
+        }
+        return result;
+    }
+
+    /**
+     *
+     * This method encodes a page of the events, optionally only those of one
+     * event name. Unlike the full payload the page is encoded on every call.
+     *
+     * @param event only include selections of this event, or null for all
+     * events
+     * @param offset the number of matching selections to skip
+     * @param limit the most selections to include
+     * @param format the format to send the page in
+     * @param pretty true for a pretty printed json array, ignored for CBOR
+     * @return the matching events, in snapshot order
+     */
+    public Buffer select(String event, int offset, int limit, WireFormat format, boolean pretty) {
+        int[] positions = event == null ? null : byEvent.getOrDefault(event, NONE);
+        int count = positions == null ? size : positions.length;
+        int from = Math.min(Math.max(0, offset), count);
+        int to = (int) Math.min((long) from + Math.max(0, limit), count);
+        return encode(format, pretty && format == WireFormat.JSON, to - from,
+                g -> writeEvents(g, positions, from, to));
+    }
+
+    /**
+     *
+     * @param event the event name, or null for all events
+     * @return the number of selections of the event
+     */
+    public int count(String event) {
+        return event == null ? size : byEvent.getOrDefault(event, NONE).length;
+    }
+
+    /**
+     *
+     * This method encodes a single event as a json object.
+     *
+     * @param i the position of the event, see indexOf
+     * @param format the format to send the event in
+     * @param pretty true for a pretty printed json object, ignored for CBOR
+     * @return the event
+     */
+    public Buffer event(int i, WireFormat format, boolean pretty) {
+        return encode(format, pretty && format == WireFormat.JSON, 1, g -> writeEvent(g, i));
+    }
+
+    /**
+     *
+     * @return the converted events as a single line json array
+     */
+    public String compactJson() {
+        String result = compact;
+        if (result == null) {
+            result = body.toString("UTF-8");
+            compact = result;
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     *
+     * @param betId the bet_id to look up
+     * @return the position of the event in the snapshot or -1 if it is not
+     * available
+     */
+    public int indexOf(long betId) {
+        return index.get(betId);
+    }
+
+    public long betId(int i) {
+        return betIds[i];
+    }
+
+    public String event(int i) {
+        return events[i];
+    }
+
+    public String name(int i) {
+        return names[i];
+    }
+
+    /**
+     *
+     * @param i the position of the event
+     * @return the fractional odds of the event packed into a long, see
+     * PackedRational, or AvailableTransformer.NO_ODDS if it has none
+     */
+    public long odds(int i) {
+        return odds[i];
+    }
+
+    /**
+     *
+     * @param i the position of the event
+     * @return the decimal odds of the event, NaN if it has none
+     */
+    public double decimalOdds(int i) {
+        long r = odds[i];
+        return r == AvailableTransformer.NO_ODDS ? Double.NaN
+                : OddsConversionUtils.convertFractionToDecimalBet(PackedRational.numerator(r),
+                        PackedRational.denominator(r));
+    }
+
+    /**
+     *
+     * This method works out which events changed between two snapshots.
+     *
+     * @param previous the earlier snapshot, may be null
+     * @param next the later snapshot
+     * @return a json object with an "updated" array of events that are new or
+     * have changed and a "removed" array of bet_ids no longer available, or
+     * null if nothing changed
+     */
+    public static String diff(AvailableSnapshot previous, AvailableSnapshot next) {
+        int[] updated = new int[next.size];
+        int updatedCount = 0;
+        for (int i = 0; i < next.size; i++) {
+            if (next.betIds[i] == AvailableTransformer.NO_BET_ID) {
+                continue;
+            }
+            int j = previous == null ? -1 : previous.indexOf(next.betIds[i]);
+            if (j < 0 || !next.sameAs(i, previous, j)) {
+                updated[updatedCount++] = i;
+            }
+        }
+        long[] removed = new long[previous == null ? 0 : previous.size];
+        int removedCount = 0;
+        for (int j = 0; j < removed.length; j++) {
+            if (previous.betIds[j] != AvailableTransformer.NO_BET_ID && next.indexOf(previous.betIds[j]) < 0) {
+                removed[removedCount++] = previous.betIds[j];
+            }
+        }
+        if (updatedCount == 0 && removedCount == 0) {
+            return null;
+        }
+        StringWriter out = new StringWriter();
+        try (JsonGenerator g = FACTORY.createGenerator(out)) {
+            g.writeStartObject();
+            g.writeFieldName("updated");
+            next.writeEvents(g, updated, 0, updatedCount);
+            g.writeArrayFieldStart("removed");
+            for (int j = 0; j < removedCount; j++) {
+                g.writeNumber(removed[j]);
+            }
+            g.writeEndArray();
+            g.writeEndObject();
+        } catch (IOException e) {
+            throw new EncodeException(e.getMessage());
+        }
+        return out.toString();
+    }
+
+    private static int variant(WireFormat format, boolean pretty, ContentEncoding encoding) {
+        int form = format == WireFormat.CBOR ? 2 : pretty ? 1 : 0;
+        return form * ContentEncoding.values().length + encoding.ordinal();
+    }
+
+    private Buffer encodeAll(WireFormat format, boolean pretty) {
+        return encode(format, pretty, size, g -> writeEvents(g, null, 0, size));
+    }
+
+    private Buffer encode(WireFormat format, boolean pretty, int count, Writer writer) {
+        // size the buffer from the average compact event
+        ByteBuf out = Unpooled.buffer(size == 0 ? 64 : (int) ((long) body.length() * count / size) + 64);
+        try (JsonGenerator g = format.factory().createGenerator(new ByteBufOutputStream(out))) {
+            if (pretty) {
+                g.useDefaultPrettyPrinter();
+            }
+            writer.write(g);
+        } catch (IOException e) {
+            throw new EncodeException(e.getMessage());
+        }
+        return Buffer.buffer(out);
+    }
+
+    // 64 bit FNV-1a hash of the body
+    private static String etag(Buffer body) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < body.length(); i++) {
+            h ^= body.getByte(i) & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return "\"" + Long.toHexString(h) + "\"";
+    }
+
+    private boolean sameAs(int i, AvailableSnapshot other, int j) {
+        return odds[i] == other.odds[j]
+                && Objects.equals(events[i], other.events[j])
+                && Objects.equals(names[i], other.names[j]);
+    }
+
+    // writes the events at positions[from] to positions[to - 1], or at from
+    // to to - 1 if positions is null
+    private void writeEvents(JsonGenerator g, int[] positions, int from, int to) throws IOException {
+        g.writeStartArray();
+        for (int n = from; n < to; n++) {
+            writeEvent(g, positions == null ? n : positions[n]);
+        }
+        g.writeEndArray();
+    }
+
+    private void writeEvent(JsonGenerator g, int i) throws IOException {
+        AvailableTransformer.writeEvent(g, betIds[i], events[i], names[i], odds[i]);
+    }
+
+    /**
+     * This interface writes part of the snapshot with a generator.
+     */
+    @FunctionalInterface
+    private interface Writer {
+
+        void write(JsonGenerator g) throws IOException;
+    }
+
+    /**
+     * This class collects the events as they are converted.
+     */
+    private static class Builder implements AvailableTransformer.EventListener {
+
+        private int size;
+        private long[] betIds = new long[16];
+        private String[] events = new String[16];
+        private String[] names = new String[16];
+        private long[] odds = new long[16];
+
+        @Override
+        public void event(long betId, String event, String name, long odds) {
+            if (size == betIds.length) {
+                int capacity = size * 2;
+                this.betIds = Arrays.copyOf(this.betIds, capacity);
+                this.events = Arrays.copyOf(this.events, capacity);
+                this.names = Arrays.copyOf(this.names, capacity);
+                this.odds = Arrays.copyOf(this.odds, capacity);
+            }
+            this.betIds[size] = betId;
+            this.events[size] = event;
+            this.names[size] = name;
+            this.odds[size] = odds;
+            size++;
+        }
+
+        // the events of each builder in turn
+        static Builder join(Builder[] builders) {
+            Builder joined = new Builder();
+            int size = 0;
+            for (Builder b : builders) {
+                size += b.size;
+            }
+            joined.betIds = new long[size];
+            joined.events = new String[size];
+            joined.names = new String[size];
+            joined.odds = new long[size];
+            for (Builder b : builders) {
+                System.arraycopy(b.betIds, 0, joined.betIds, joined.size, b.size);
+                System.arraycopy(b.events, 0, joined.events, joined.size, b.size);
+                System.arraycopy(b.names, 0, joined.names, joined.size, b.size);
+                System.arraycopy(b.odds, 0, joined.odds, joined.size, b.size);
+                joined.size += b.size;
+            }
+            return joined;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package skybet.test.rs;
+
+import skybet.test.pojo.Bet;
+import skybet.test.pojo.JsonSerialisable;
+
+/**
+ * This class tracks the progress of a /bets/batch request. Bets that failed
+ * validation are left null and already have their result set, the rest are
+ * handed out one at a time by next() and the done handler runs once every
+ * one of them has completed.
+ *
+ * It is only used from the event loop of the request so it is not thread
+ * safe.
+ *
+ * @author chrishovey
+ */
+class BetBatch {
+
+    final Bet[] bets;
+    final JsonSerialisable[] results;
+    private final Runnable done;
+    private int cursor;
+    private int remaining;
+
+    BetBatch(Bet[] bets, JsonSerialisable[] results, Runnable done) {
+        this.bets = bets;
+        this.results = results;
+        this.done = done;
+        for (Bet bet : bets) {
+            if (bet != null) {
+                remaining++;
+            }
+        }
+    }
+
+    /**
+     *
+     * @return the index of the next bet to submit, or -1 if every bet has
+     * been handed out
+     */
+    int next() {
+        while (cursor < bets.length) {
+            int i = cursor++;
+            if (bets[i] != null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * This method records that a submitted bet has completed.
+     */
+    void completed() {
+        remaining--;
+        checkDone();
+    }
+
+    /**
+     * This method runs the done handler if no bets are left to complete.
+     */
+    void checkDone() {
+        if (remaining == 0) {
+            remaining = -1;
+            done.run();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package skybet.test.rs;
+
+import skybet.test.pojo.JsonError;
+
+/**
+ * This exception is used to fail a bet that was rejected against the cached
+ * available events without being sent to the sky bet api. It keeps the error
+ * so it can be passed back to the client.
+ *
+ * @author chrishovey
+ */
+public class BetRejectedException extends RuntimeException {
+
+    private final JsonError error;
+
+    public BetRejectedException(JsonError error) {
+        super(error.getErrorCode() + " " + error.getErrorMessage(), null, false, false);
+        this.error = error;
+    }
+
+    public JsonError getError() {
+        return error;
+    }
+}
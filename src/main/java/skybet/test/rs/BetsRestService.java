@@ -1,25 +1,42 @@
 package skybet.test.rs;
 
+import io.netty.handler.codec.http.HttpResponseStatus;
 import io.vertx.core.AbstractVerticle;
-import io.vertx.core.http.HttpClient;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.ServerWebSocket;
 import io.vertx.core.json.DecodeException;
-import io.vertx.core.json.Json;
-import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.BodyHandler;
-import java.util.List;
-import java.util.stream.Collectors;
-import skybet.test.pojo.DecimalBet;
-import skybet.test.pojo.DecimalEvent;
-import skybet.test.pojo.DecimalPlacedBet;
-import skybet.test.pojo.FractionalBet;
-import skybet.test.pojo.FractionalEvent;
-import skybet.test.pojo.FractionalPlacedBet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import skybet.test.pojo.Bet;
 import skybet.test.pojo.JsonError;
-import skybet.test.utils.OddsConversionUtils;
+import skybet.test.pojo.JsonSerialisable;
+import skybet.test.pojo.PlacedBet;
+import skybet.test.pojo.WireFormat;
+import skybet.test.utils.AdmissionLimiter;
+import skybet.test.utils.AvailableTransformer;
+import skybet.test.utils.ContentEncoding;
+import skybet.test.utils.IdempotencyCache;
+import skybet.test.utils.IdempotencyCacheFullException;
+import skybet.test.utils.IdempotencyConflictException;
+import skybet.test.utils.LatencyHistogram;
+import skybet.test.utils.SnapshotCache;
+import skybet.test.utils.WindowedHistogram;
 
 /**
  * This is the Main vertical which creates micro service that exposes two
@@ -36,81 +53,713 @@ import skybet.test.utils.OddsConversionUtils;
  * converted into a decimal format and the results are then passed back as a
  * response
  *
+ * /bets/batch service accepts a json array of bets placed in decimal format
+ * and places each of them as /bets does, returning a json array of the
+ * results.
+ *
+ * /available/stream (server sent events) and /available/ws (websocket) push
+ * a snapshot of the available events followed by deltas of the events that
+ * changed, see OddsStreamHub.
+ *
+ * Requests to sky have a deadline and are guarded by a circuit breaker, so
+ * while sky is slow or failing requests get a JsonError straight away, 504
+ * gateway timeout when sky did not answer in time and 503 service unavailable
+ * while the breaker is open, see UpstreamClient. The /available refresh can
+ * be hedged by setting "hedgeAvailable" in the upstream config, a second
+ * request is sent if sky has not answered within the p95 of its response
+ * times over the last 30 to 60 seconds, see ServiceMetrics.recentUpstream, or
+ * "hedgeDelay" milliseconds if set, and the first answer wins.
+ *
+ * /available, /bets and /bets/batch send CBOR rather than json to clients
+ * that prefer application/cbor in their Accept header, and /bets and
+ * /bets/batch accept a CBOR body sent with Content-Type application/cbor, see
+ * WireFormat. Errors are always sent as json.
+ *
+ * /available is sent as compact json unless the "pretty" query parameter is
+ * given, compressed with gzip or deflate if the Accept-Encoding header allows.
+ * Each variant is encoded once per snapshot and then reused. The "event",
+ * "offset" and "limit" query parameters return a page of the events, only
+ * those of the named event, with the number of matching events in the
+ * X-Total-Count header. /available/{betId} returns the single event with that
+ * bet_id, or 404 not found. Both are looked up in the snapshot's indexes, see
+ * AvailableSnapshot.
+ *
+ * The converted /available payload is cached for "availableCacheTtl"
+ * milliseconds (default 1000), concurrent requests for an expired snapshot
+ * share a single upstream request and are served the stale snapshot until it
+ * completes. The snapshot is served with an ETag so clients polling with
+ * If-None-Match get a 304 not modified when nothing has changed, and the
+ * refresh is made conditional on the ETag or Last-Modified sky last sent.
+ *
+ * With "validateBets" set in the config, bets to /bets and /bets/batch are
+ * checked against the cached /available snapshot before being sent to sky,
+ * as long as it was loaded within "validateMaxAge" milliseconds (default
+ * 5000). A bet_id that is not available gets 404 not found and odds that do
+ * not match the current price get 418 with the current odds in the
+ * JsonError, straight away rather than after a round trip to sky.
+ *
+ * A POST to /bets with an Idempotency-Key header is placed at most once per
+ * key, retries with the same key within "idempotencyTtl" milliseconds
+ * (default 10 minutes) wait for the first attempt and get its receipt or
+ * rejection, see IdempotencyCache. Reusing a key for a different bet gets
+ * 422 unprocessable entity. Only failures that are not worth retrying, such
+ * as sky rejecting the bet, are kept, so a retry after a timeout is sent to
+ * sky again. If all "idempotencyCacheSize" (default 10000) keys are still
+ * waiting on sky a bet with a new key is shed with a 503.
+ *
+ * /bets, /bets/batch, /available and /available/{betId} are admission
+ * controlled, see AdmissionLimiter. Each route handles at most "maxInFlight"
+ * requests at once (default 1024) across all instances, with up to
+ * "maxQueued" (default 1024) more waiting, set per route in the "admission"
+ * config object. Each request has a deadline of "requestDeadline"
+ * milliseconds (default 10000), or the X-Request-Timeout header if the client
+ * sends one. A request that finds the queue full, or is still waiting when
+ * its deadline passes, gets a 503 service unavailable with a Retry-After of
+ * "retryAfter" seconds (default 1) rather than waiting for an answer it can
+ * no longer use.
+ *
+ * Only /bets and /bets/batch read a request body, buffered up to the limit
+ * for the route in the "maxBodySize" config object (default 16KB for /bets
+ * and 1MB for /bets/batch). A larger body gets 413 request entity too large.
+ * The body is only read once the request has been admitted.
+ *
+ * Requests to sky are spread over the upstream "backends", see
+ * UpstreamBalancer, and a backend that keeps failing is ejected for a while.
+ *
+ * A sky /available payload of "offloadThreshold" bytes or more (default
+ * 256KB) is converted on a worker thread rather than the event loop, split
+ * into up to "conversionParallelism" chunks (default the number of
+ * processors) that are converted in parallel. Smaller payloads are converted
+ * in place, where the hop to a worker would cost more than it saves. A route
+ * handler or sky response handler that holds the event loop for longer than
+ * "eventLoopBudget" milliseconds (default 50) is logged as a warning.
+ *
+ * Setting "executionMode" to "blocking" (default "eventloop") runs each
+ * call to sky, for /bets, /bets/batch and the /available refresh, as
+ * straight-line blocking code on a vertx worker thread, see BlockingUpstream.
+ * Every request to sky then holds a worker thread while it waits, so the
+ * worker pool, set with -Dvertx.options.workerPoolSize, caps the requests to
+ * sky in flight.
+ *
+ * /metrics reports latency histograms for each route, the upstream round
+ * trips, each upstream backend, odds conversion and json encoding, along with
+ * response and upstream counters, in the Prometheus text format, see
+ * ServiceMetrics.
+ *
+ * The service listens on the "port" given in the verticle config (default
+ * 8080). Any number of instances can be deployed, see BetsServiceLauncher,
+ * they share the listening port, the /available cache, the upstream stats and
+ * the metrics through the vertx LocalMap named by SHARED_MAP.
  *
  * @author chrishovey
  */
 public class BetsRestService extends AbstractVerticle {
 
+    public static final String SHARED_MAP = "skybet.test.rs";
+    public static final int DEFAULT_PORT = 8080;
+    public static final long DEFAULT_AVAILABLE_CACHE_TTL = 1000;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    public static final int DEFAULT_BATCH_CONCURRENCY = 4;
+    public static final int DEFAULT_STREAM_WRITE_QUEUE_MAX_SIZE = 64 * 1024;
+    public static final long MIN_HEDGE_DELAY = 5;
+    public static final int MIN_HEDGE_SAMPLES = 20;
+    public static final long DEFAULT_VALIDATE_MAX_AGE = 5000;
+    public static final int DEFAULT_IDEMPOTENCY_CACHE_SIZE = 10000;
+    public static final long DEFAULT_IDEMPOTENCY_TTL = 10 * 60 * 1000;
+    public static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+    public static final int DEFAULT_MAX_QUEUED = 1024;
+    public static final long DEFAULT_REQUEST_DEADLINE = 10000;
+    public static final int DEFAULT_RETRY_AFTER = 1;
+    public static final long DEFAULT_MAX_BET_BODY_SIZE = 16 * 1024;
+    public static final long DEFAULT_MAX_BATCH_BODY_SIZE = 1024 * 1024;
+    public static final int DEFAULT_OFFLOAD_THRESHOLD = 256 * 1024;
+    public static final long DEFAULT_EVENT_LOOP_BUDGET = 50;
+    public static final String EVENT_LOOP_MODE = "eventloop";
+    public static final String BLOCKING_MODE = "blocking";
+
+    private static final Logger LOG = LoggerFactory.getLogger(BetsRestService.class);
+
+    private UpstreamClient upstream;
+    private BlockingUpstream blockingUpstream;
+    private boolean blocking;
+    private UpstreamStats upstreamStats;
+    private CircuitBreaker breaker;
+    private UpstreamBalancer balancer;
+    private ServiceMetrics metrics;
+    private SnapshotCache<AvailableSnapshot> available;
+    private IdempotencyCache<PlacedBet> placedBets;
+    private OddsStreamHub oddsStream;
+
     /**
      *
      * This method is called by vertx on startup and assigns request handlers to
      * /bets and /available. Any other requests will be sent back a 501 not
      * implemented error.
+     *
+     * @param startFuture completed once the http server is listening
      */
     @Override
-    public void start() {
+    public void start(Future<Void> startFuture) {
 
-        Router router = Router.router(vertx);
-        router.route().handler(BodyHandler.create());
+        String mode = config().getString("executionMode", EVENT_LOOP_MODE);
+        if (!EVENT_LOOP_MODE.equals(mode) && !BLOCKING_MODE.equals(mode)) {
+            startFuture.fail(new IllegalArgumentException("Unknown executionMode: " + mode));
+            return;
+        }
+        blocking = BLOCKING_MODE.equals(mode);
+        upstreamStats = shared("upstreamStats", UpstreamStats::new);
+        metrics = shared("metrics", ServiceMetrics::new);
+        JsonObject upstreamConfig = config().getJsonObject("upstream", new JsonObject());
+        breaker = shared("circuitBreaker", () -> new CircuitBreaker(
+                upstreamConfig.getInteger("failureThreshold", CircuitBreaker.DEFAULT_FAILURE_THRESHOLD),
+                upstreamConfig.getLong("resetTimeout", CircuitBreaker.DEFAULT_RESET_TIMEOUT)));
+        balancer = shared("upstreamBalancer", () -> new UpstreamBalancer(upstreamConfig));
+        upstream = new UpstreamClient(vertx, upstreamConfig, upstreamStats, breaker, balancer);
+        blockingUpstream = new BlockingUpstream(context, upstream);
+        available = shared("available",
+                () -> new SnapshotCache<>(config().getLong("availableCacheTtl", DEFAULT_AVAILABLE_CACHE_TTL)));
+        // a rejection from sky or a receipt that could not be read is the
+        // answer to the bet, anything else is worth retrying
+        placedBets = shared("placedBets", () -> new IdempotencyCache<>(
+                config().getInteger("idempotencyCacheSize", DEFAULT_IDEMPOTENCY_CACHE_SIZE),
+                config().getLong("idempotencyTtl", DEFAULT_IDEMPOTENCY_TTL),
+                t -> t instanceof DecodeException
+                || (t instanceof UpstreamException && ((UpstreamException) t).getStatusCode() < 500)));
+        oddsStream = new OddsStreamHub(vertx, available::peek,
+                v -> available.get(this::loadAvailable, ar -> {
+                }),
+                config().getLong("streamPollInterval",
+                        config().getLong("availableCacheTtl", DEFAULT_AVAILABLE_CACHE_TTL)));
 
-        router.post("/bets").handler(routingContext -> {
+        Router router = Router.router(vertx);
+        // only the routes that read a body buffer one, and only once the
+        // request has been admitted, so nothing is held in memory for the
+        // other routes or for requests that are queued or shed
+        JsonObject bodyLimits = config().getJsonObject("maxBodySize", new JsonObject());
+        router.post("/bets").handler(timed(ServiceMetrics.BETS,
+                admitted(ServiceMetrics.BETS, RoutingContext::next)));
+        router.post("/bets").handler(BodyHandler.create()
+                .setBodyLimit(bodyLimits.getLong(ServiceMetrics.BETS, DEFAULT_MAX_BET_BODY_SIZE)));
+        router.post("/bets").handler(budgeted(ServiceMetrics.BETS, routingContext -> {
             this.postBets(routingContext);
-        });
+        }));
+
+        router.post("/bets/batch").handler(timed(ServiceMetrics.BETS_BATCH,
+                admitted(ServiceMetrics.BETS_BATCH, RoutingContext::next)));
+        router.post("/bets/batch").handler(BodyHandler.create()
+                .setBodyLimit(bodyLimits.getLong(ServiceMetrics.BETS_BATCH, DEFAULT_MAX_BATCH_BODY_SIZE)));
+        router.post("/bets/batch").handler(budgeted(ServiceMetrics.BETS_BATCH, routingContext -> {
+            this.postBetsBatch(routingContext);
+        }));
+
+        router.get("/available").handler(timed(ServiceMetrics.AVAILABLE,
+                admitted(ServiceMetrics.AVAILABLE, routingContext -> {
+                    available.get(this::loadAvailable, ar -> {
+                        if (ar.succeeded()) {
+                            this.sendAvailable(routingContext, ar.result());
+                        } else {
+                            this.upstreamFailed(routingContext, ar.cause());
+                        }
+                    });
+                })));
 
-        router.get("/available").handler(routingContext -> {
-            HttpClient c = vertx.createHttpClient();
-            c.getNow(80, "skybettechtestapi.herokuapp.com", "/available", r -> {
-                this.getAvailable(r, routingContext);
+        // the stream stays open for as long as the client listens, so it is
+        // timed to its first event, and its status counted then, rather than
+        // to the end of the response
+        router.get("/available/stream").handler(routingContext -> {
+            long start = System.nanoTime();
+            available.get(this::loadAvailable, ar -> {
+                if (ar.succeeded()) {
+                    oddsStream.subscribe(new OddsSubscriber.ServerSentEvents(routingContext.response(),
+                            config().getInteger("streamWriteQueueMaxSize", DEFAULT_STREAM_WRITE_QUEUE_MAX_SIZE)),
+                            ar.result());
+                } else {
+                    this.upstreamFailed(routingContext, ar.cause());
+                }
+                metrics.route(ServiceMetrics.AVAILABLE_STREAM).recordSince(start);
+                metrics.response(routingContext.response().getStatusCode());
             });
+            checkBudget(ServiceMetrics.AVAILABLE_STREAM, start);
         });
-        //Catch all other requests not served
-        router.route().handler(routingContext -> {
+
+        router.get("/available/:betId").handler(timed(ServiceMetrics.AVAILABLE_EVENT,
+                admitted(ServiceMetrics.AVAILABLE_EVENT, routingContext -> {
+                    available.get(this::loadAvailable, ar -> {
+                        if (ar.succeeded()) {
+                            this.sendEvent(routingContext, ar.result());
+                        } else {
+                            this.upstreamFailed(routingContext, ar.cause());
+                        }
+                    });
+                })));
+
+        router.get("/metrics").handler(timed(ServiceMetrics.METRICS, routingContext -> {
             routingContext.response()
-                    .setStatusCode(501)
-                    .setStatusMessage("Not Implemented")
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(JsonError.builder()
-                            .errorCode(501)
-                            .errorMessage("Not Implemented")
-                            .build()
-                            .toJsonString());
+                    .setStatusCode(200)
+                    .putHeader("content-type", "text/plain; version=0.0.4; charset=utf-8")
+                    .end(metrics.toPrometheus(upstreamStats, upstream.maxPoolSize(), breaker, balancer));
+        }));
+        //Catch all other requests not served
+        router.route().handler(timed(ServiceMetrics.NOT_IMPLEMENTED, routingContext -> {
+            sendError(routingContext, 501, "Not Implemented");
+        }));
+        //Send requests failed by a handler, such as 413 from a body over its
+        //limit, a JsonError. The response is timed and counted by the timed
+        //handler the route started with
+        router.route().failureHandler(routingContext -> {
+            int statusCode = routingContext.statusCode() < 400 ? 500 : routingContext.statusCode();
+            if (!routingContext.response().ended()) {
+                sendError(routingContext, statusCode, HttpResponseStatus.valueOf(statusCode).reasonPhrase());
+            }
+        });
+        vertx.createHttpServer().requestHandler(router::accept)
+                .websocketHandler(this::streamOdds)
+                .listen(config().getInteger("port", DEFAULT_PORT), ar -> {
+                    if (ar.succeeded()) {
+                        startFuture.complete();
+                    } else {
+                        startFuture.fail(ar.cause());
+                    }
+                });
+
+    }
+
+    /**
+     *
+     * This method wraps a route handler so the time taken until the response
+     * body has been written is recorded against the route, and the response
+     * status is counted.
+     *
+     * @param route the route the handler serves, one of the ServiceMetrics
+     * route constants
+     * @param handler the route handler
+     * @return the timed handler
+     */
+    private Handler<RoutingContext> timed(String route, Handler<RoutingContext> handler) {
+        LatencyHistogram histogram = metrics.route(route);
+        return routingContext -> {
+            long start = System.nanoTime();
+            routingContext.addBodyEndHandler(v -> {
+                histogram.recordSince(start);
+                metrics.response(routingContext.response().getStatusCode());
+            });
+            handler.handle(routingContext);
+            checkBudget(route, start);
+        };
+    }
+
+    /**
+     *
+     * This method wraps a route handler that runs after the request body has
+     * been read, so it is checked against the "eventLoopBudget" like a timed
+     * handler.
+     *
+     * @param route the route the handler serves
+     * @param handler the route handler
+     * @return the budgeted handler
+     */
+    private Handler<RoutingContext> budgeted(String route, Handler<RoutingContext> handler) {
+        return routingContext -> {
+            long start = System.nanoTime();
+            handler.handle(routingContext);
+            checkBudget(route, start);
+        };
+    }
+
+    /**
+     *
+     * This method warns if a handler that started at the given time has held
+     * the event loop for longer than the "eventLoopBudget", as a handler that
+     * does delays every other request on its event loop.
+     *
+     * @param handler names the handler in the warning
+     * @param start the System.nanoTime() the handler started at
+     */
+    private void checkBudget(String handler, long start) {
+        long held = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long budget = config().getLong("eventLoopBudget", DEFAULT_EVENT_LOOP_BUDGET);
+        if (held > budget) {
+            metrics.overBudget();
+            LOG.warn(handler + " held the event loop for " + held + "ms, over its budget of " + budget + "ms");
+        }
+    }
+
+    /**
+     *
+     * This method wraps a route handler so it is only run once the route's
+     * AdmissionLimiter admits the request, and the request is released again
+     * once its response has been written or its connection closed. A request
+     * that cannot be queued, or whose deadline passes before it is admitted,
+     * is sent a 503 service unavailable without running the handler. A queued
+     * request is paused, so its body is left unread until it is admitted.
+     *
+     * @param route the route the handler serves, also the key of its limits
+     * in the "admission" config object
+     * @param handler the route handler
+     * @return the admission controlled handler
+     */
+    private Handler<RoutingContext> admitted(String route, Handler<RoutingContext> handler) {
+        JsonObject limits = config().getJsonObject("admission", new JsonObject())
+                .getJsonObject(route, new JsonObject());
+        AdmissionLimiter limiter = shared("admission" + route, () -> new AdmissionLimiter(
+                limits.getInteger("maxInFlight", DEFAULT_MAX_IN_FLIGHT),
+                limits.getInteger("maxQueued", DEFAULT_MAX_QUEUED)));
+        return routingContext -> {
+            HttpServerResponse response = routingContext.response();
+            long deadline = System.currentTimeMillis() + requestDeadline(routingContext.request());
+            // the request is admitted on its own event loop, so plain arrays
+            // are enough to share its state with the timer and close handler
+            boolean[] admitted = {false};
+            boolean[] closed = {false};
+            boolean[] released = {false};
+            long[] timer = {-1};
+            Handler<Void> release = v -> {
+                if (!released[0]) {
+                    released[0] = true;
+                    limiter.release();
+                }
+            };
+            AdmissionLimiter.Ticket ticket = limiter.admit(v -> {
+                admitted[0] = true;
+                vertx.cancelTimer(timer[0]);
+                if (closed[0]) {
+                    release.handle(null);
+                } else if (System.currentTimeMillis() >= deadline) {
+                    release.handle(null);
+                    shed(routingContext);
+                } else {
+                    routingContext.addBodyEndHandler(release);
+                    response.closeHandler(release);
+                    handler.handle(routingContext);
+                }
+                // after the handler, so a body handler it added is in place
+                // before the body queued while paused is delivered
+                routingContext.request().resume();
+            });
+            if (ticket == null) {
+                shed(routingContext);
+            } else if (!admitted[0]) {
+                routingContext.request().pause();
+                timer[0] = vertx.setTimer(Math.max(1, deadline - System.currentTimeMillis()), id -> {
+                    if (ticket.cancel()) {
+                        shed(routingContext);
+                        // the unread body is discarded
+                        routingContext.request().resume();
+                    }
+                });
+                response.closeHandler(v -> {
+                    closed[0] = true;
+                    vertx.cancelTimer(timer[0]);
+                    ticket.cancel();
+                });
+            }
+        };
+    }
+
+    /**
+     *
+     * @param request the request
+     * @return the time in milliseconds the client will wait for the request,
+     * from its X-Request-Timeout header or "requestDeadline"
+     */
+    private long requestDeadline(HttpServerRequest request) {
+        String timeout = request.getHeader("x-request-timeout");
+        if (timeout != null) {
+            try {
+                long parsed = Long.parseLong(timeout.trim());
+                if (parsed > 0) {
+                    return parsed;
+                }
+            } catch (NumberFormatException nfe) {
+                // not a number, use the default
+            }
+        }
+        return config().getLong("requestDeadline", DEFAULT_REQUEST_DEADLINE);
+    }
 
+    /**
+     *
+     * This method sends a 503 service unavailable to a request that was not
+     * admitted, or whose idempotency key could not be remembered, asking the
+     * client to retry after "retryAfter" seconds.
+     *
+     * @param routingContext routingContext Represents the context for the
+     * handling of a request
+     */
+    private void shed(RoutingContext routingContext) {
+        metrics.shed();
+        routingContext.response().putHeader("retry-after",
+                String.valueOf(config().getInteger("retryAfter", DEFAULT_RETRY_AFTER)));
+        sendError(routingContext, 503, "Service Unavailable");
+    }
+
+    /**
+     *
+     * This method subscribes a websocket connected to /available/ws to the
+     * odds stream. Websockets to any other path are rejected.
+     *
+     * @param socket the connected websocket
+     */
+    private void streamOdds(ServerWebSocket socket) {
+        if (!"/available/ws".equals(socket.path())) {
+            socket.reject();
+            return;
+        }
+        socket.pause();
+        available.get(this::loadAvailable, ar -> {
+            socket.resume();
+            if (ar.succeeded()) {
+                oddsStream.subscribe(new OddsSubscriber.WebSocket(socket,
+                        config().getInteger("streamWriteQueueMaxSize", DEFAULT_STREAM_WRITE_QUEUE_MAX_SIZE)),
+                        ar.result());
+            } else {
+                socket.close();
+            }
         });
-        vertx.createHttpServer().requestHandler(router::accept).listen(8080);
+    }
 
+    /**
+     *
+     * This method returns the object stored under the name in the shared
+     * LocalMap, creating it if no other instance has done so yet.
+     *
+     * @param name the name the object is shared under
+     * @param factory creates the object if it does not exist
+     * @return the shared object
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Shareable> T shared(String name, Supplier<T> factory) {
+        LocalMap<String, Shareable> map = vertx.sharedData().getLocalMap(SHARED_MAP);
+        Shareable existing = map.get(name);
+        if (existing == null) {
+            Shareable created = factory.get();
+            existing = map.putIfAbsent(name, created);
+            if (existing == null) {
+                existing = created;
+            }
+        }
+        return (T) existing;
+    }
+
+    /**
+     * This method is called by vertx on undeploy and closes the upstream
+     * client and its pooled connections.
+     */
+    @Override
+    public void stop() {
+        if (oddsStream != null) {
+            oddsStream.close();
+        }
+        if (upstream != null) {
+            upstream.close();
+        }
     }
 
     /**
      *
-     * This method deserialises the request body into a decimal bet and builds a
-     * fractional bet to be sent to the submitBet Method. if the request body
-     * cant be deserialised then a bad request response will be returned
+     * This method deserialises the request body from a decimal bet into a Bet,
+     * converting its odds to a fraction as it is read, to be sent to the
+     * submitBet Method. if the request body cant be deserialised, or is
+     * missing its bet_id, odds or stake, then a bad request response will be
+     * returned. The body is json unless the Content-Type is application/cbor.
      *
      * @param routingContext Represents the context for the handling of a
      * request
      */
     private void postBets(RoutingContext routingContext) {
         try {
-            DecimalBet db = Json.decodeValue(routingContext.getBodyAsString(), DecimalBet.class);
-            //check the odds been null;
-            submitBet(routingContext, FractionalBet.builder()
-                    .betId(db.getBetId())
-                    .odds(OddsConversionUtils.convertDecimalBetToFraction(db.getOdds()))
-                    .stake(db.getStake())
-                    .build());
-
-        } catch (DecodeException | IllegalArgumentException de) {
+            long start = System.nanoTime();
+            Bet bet = Bet.decodeDecimal(routingContext.getBody(),
+                    WireFormat.fromContentType(routingContext.request().getHeader("content-type")));
+            metrics.conversion().recordSince(start);
+            if (bet == null) {
+                sendError(routingContext, 400, "Bad Request");
+                return;
+            }
+            String key = routingContext.request().getHeader("idempotency-key");
+            if (key != null && (key.isEmpty() || key.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+                sendError(routingContext, 400, "Bad Request");
+                return;
+            }
+            submitBet(routingContext, bet, key);
+        } catch (DecodeException de) {
+            sendError(routingContext, 400, "Bad Request");
+        }
+
+    }
+
+    /**
+     *
+     * This method accepts a json array of decimal bets, converts them all to
+     * fractional bets and submits them to sky with at most "batchConcurrency"
+     * (default 4) requests in flight. The response is a json array holding a
+     * placed bet or an error for each bet, in the order the bets were sent.
+     * Bets that cant be deserialised get a 400 error without being sent to
+     * sky. If the body is not an array, or holds more than "maxBatchSize"
+     * (default 100) bets, a bad request response is returned. As with /bets
+     * the body and response can be CBOR rather than json.
+     *
+     * @param routingContext Represents the context for the handling of a
+     * request
+     */
+    private void postBetsBatch(RoutingContext routingContext) {
+        Bet[] bets;
+        try {
+            bets = Bet.decodeDecimalArray(routingContext.getBody(),
+                    WireFormat.fromContentType(routingContext.request().getHeader("content-type")));
+        } catch (DecodeException de) {
+            sendError(routingContext, 400, "Bad Request");
+            return;
+        }
+        if (bets.length > config().getInteger("maxBatchSize", DEFAULT_MAX_BATCH_SIZE)) {
+            sendError(routingContext, 400, "Bad Request");
+            return;
+        }
+
+        JsonSerialisable[] results = new JsonSerialisable[bets.length];
+        for (int i = 0; i < bets.length; i++) {
+            if (bets[i] == null) {
+                results[i] = JsonError.builder()
+                        .errorCode(400)
+                        .errorMessage("Bad Request")
+                        .build();
+                continue;
+            }
+            results[i] = validate(bets[i]);
+            if (results[i] != null) {
+                bets[i] = null;
+            }
+        }
+
+        WireFormat format = WireFormat.negotiate(routingContext.request().getHeader("accept"));
+        BetBatch batch = new BetBatch(bets, results, () -> {
+            long start = System.nanoTime();
+            Buffer body = JsonSerialisable.encode(results, format);
+            metrics.encoding().recordSince(start);
             routingContext.response()
-                    .setStatusCode(400)
-                    .setStatusMessage("Bad Request")
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(JsonError.builder()
-                            .errorCode(400)
-                            .errorMessage("Bad Request")
-                            .build()
-                            .toJsonString());
+                    .setStatusCode(200)
+                    .putHeader("content-type", format.contentType())
+                    .putHeader("vary", "Accept")
+                    .end(body);
+        });
+        int concurrency = Math.max(1, config().getInteger("batchConcurrency", DEFAULT_BATCH_CONCURRENCY));
+        for (int i = 0; i < concurrency; i++) {
+            submitNext(batch);
+        }
+        batch.checkDone();
+    }
+
+    /**
+     *
+     * This method submits the next unsent bet of the batch, and when it
+     * completes records the result and moves on to the next one. Each call
+     * acts as one lane of the batch so a slow bet only holds up its own lane.
+     *
+     * @param batch the batch being submitted
+     */
+    private void submitNext(BetBatch batch) {
+        int i = batch.next();
+        if (i < 0) {
+            return;
+        }
+        placeBet(batch.bets[i], ar -> {
+            if (ar.succeeded()) {
+                batch.results[i] = ar.result();
+            } else if (ar.cause() instanceof UpstreamException) {
+                batch.results[i] = toJsonError((UpstreamException) ar.cause());
+            } else if (ar.cause() instanceof DecodeException) {
+                batch.results[i] = JsonError.builder()
+                        .errorCode(400)
+                        .errorMessage("Bad Request")
+                        .build();
+            } else {
+                batch.results[i] = toJsonError(ar.cause());
+            }
+            batch.completed();
+            submitNext(batch);
+        });
+    }
+
+    /**
+     *
+     * @param cause why the request to sky could not be completed
+     * @return a JsonError with 503 service unavailable if the circuit breaker
+     * is open, 504 gateway timeout if sky did not answer in time, otherwise
+     * 502 bad gateway
+     */
+    private JsonError toJsonError(Throwable cause) {
+        if (cause instanceof CircuitOpenException) {
+            return JsonError.builder()
+                    .errorCode(503)
+                    .errorMessage("Service Unavailable")
+                    .build();
+        } else if (cause instanceof TimeoutException) {
+            return JsonError.builder()
+                    .errorCode(504)
+                    .errorMessage("Gateway Timeout")
+                    .build();
         }
+        return JsonError.builder()
+                .errorCode(502)
+                .errorMessage("Bad Gateway")
+                .build();
+    }
 
+    /**
+     *
+     * @param ue the failed upstream request
+     * @return a JsonError with the upstream status and the error sky gave, or
+     * the status message if sky did not give one
+     */
+    private JsonError toJsonError(UpstreamException ue) {
+        String message = ue.getStatusMessage();
+        try {
+            message = new JsonObject(ue.getBody().toString("UTF-8")).getString("error", message);
+        } catch (DecodeException | ClassCastException de) {
+            // not a json error body, keep the status message
+        }
+        return JsonError.builder()
+                .errorCode(ue.getStatusCode())
+                .errorMessage(message)
+                .build();
+    }
+
+    /**
+     *
+     * This method checks a bet against the cached available events, if
+     * "validateBets" is set and the events were loaded recently enough. Any
+     * bet that cannot be checked is let through for sky to decide.
+     *
+     * @param bet the bet to check
+     * @return null if the bet can be sent to sky, otherwise the error to
+     * reject it with
+     */
+    private JsonError validate(Bet bet) {
+        if (!config().getBoolean("validateBets", false)
+                || available.age() > config().getLong("validateMaxAge", DEFAULT_VALIDATE_MAX_AGE)) {
+            return null;
+        }
+        AvailableSnapshot snapshot = available.peek();
+        int i = snapshot.indexOf(bet.getBetId());
+        if (i < 0) {
+            metrics.betRejected();
+            return JsonError.builder()
+                    .errorCode(404)
+                    .errorMessage("Not Found")
+                    .build();
+        }
+        long current = snapshot.odds(i);
+        // both sides are reduced fractions, so equal prices compare equal
+        if (current != AvailableTransformer.NO_ODDS && current != bet.getOdds()) {
+            metrics.betRejected();
+            return JsonError.builder()
+                    .errorCode(418)
+                    .errorMessage("Incorrect Odds")
+                    .currentOdds(snapshot.decimalOdds(i))
+                    .build();
+        }
+        return null;
     }
 
     /**
@@ -123,80 +772,531 @@ public class BetsRestService extends AbstractVerticle {
      *
      * @param routingContext routingContext Represents the context for the
      * handling of a request
-     * @param fb fractional bet object representing a bet placed in a fractional
-     * format
-     */
-    private void submitBet(RoutingContext routingContext, FractionalBet fb) {
-        HttpClient c = vertx.createHttpClient();
-        c.post(80, "skybettechtestapi.herokuapp.com", "/bets", r -> {
-            r.bodyHandler(buffer -> {
-                if (r.statusCode() != 201) {
-                    routingContext.response()
-                            .setStatusCode(r.statusCode())
-                            .setStatusMessage(r.statusMessage())
-                            .putHeader("content-type", "application/json; charset=utf-8")
-                            .end(buffer);
-                } else {
-                    try {
-                        FractionalPlacedBet pb = Json.decodeValue(buffer.toString("UTF-8"), FractionalPlacedBet.class);
-                        routingContext.response()
-                                .setStatusCode(201)
-                                .putHeader("content-type", "application/json; charset=utf-8")
-                                .end(DecimalPlacedBet.builder()
-                                        .betId(pb.getBetId())
-                                        .event(pb.getEvent())
-                                        .name(pb.getName())
-                                        .odds(OddsConversionUtils.convertFractionToDecimalBet(fb.getOdds()))
-                                        .stake(pb.getStake())
-                                        .transactionId(pb.getTransactionId())
-                                        .build()
-                                        .toJsonString());
-                    } catch (DecodeException | IllegalArgumentException de) {
-                        routingContext.response()
-                                .setStatusCode(400)
-                                .setStatusMessage("Bad Request")
-                                .putHeader("content-type", "application/json; charset=utf-8")
-                                .end(JsonError.builder()
-                                        .errorCode(400)
-                                        .errorMessage("Bad Request")
-                                        .build()
-                                        .toJsonString());
-                    }
+     * @param bet the bet to place
+     * @param key the idempotency key the client sent, or null to always send
+     * the bet
+     */
+    private void submitBet(RoutingContext routingContext, Bet bet, String key) {
+        Handler<AsyncResult<PlacedBet>> handler = ar -> {
+            if (ar.succeeded()) {
+                WireFormat format = WireFormat.negotiate(routingContext.request().getHeader("accept"));
+                long start = System.nanoTime();
+                Buffer body = ar.result().encode(format);
+                metrics.encoding().recordSince(start);
+                routingContext.response()
+                        .setStatusCode(201)
+                        .putHeader("content-type", format.contentType())
+                        .putHeader("vary", "Accept")
+                        .end(body);
+            } else if (ar.cause() instanceof UpstreamException) {
+                UpstreamException ue = (UpstreamException) ar.cause();
+                routingContext.response()
+                        .setStatusCode(ue.getStatusCode())
+                        .setStatusMessage(ue.getStatusMessage())
+                        .putHeader("content-type", "application/json; charset=utf-8")
+                        .end(ue.getBody());
+            } else if (ar.cause() instanceof BetRejectedException) {
+                sendError(routingContext, ((BetRejectedException) ar.cause()).getError());
+            } else if (ar.cause() instanceof IdempotencyConflictException) {
+                sendError(routingContext, 422, "Unprocessable Entity");
+            } else if (ar.cause() instanceof IdempotencyCacheFullException) {
+                shed(routingContext);
+            } else if (ar.cause() instanceof DecodeException) {
+                sendError(routingContext, 400, "Bad Request");
+            } else {
+                this.upstreamFailed(routingContext, ar.cause());
+            }
+        };
+        // the bet is validated as part of the first attempt, so a retry of a
+        // placed bet gets its receipt even if the price has since moved
+        Handler<Handler<AsyncResult<PlacedBet>>> place = h -> {
+            JsonError rejected = validate(bet);
+            if (rejected != null) {
+                h.handle(Future.failedFuture(new BetRejectedException(rejected)));
+            } else {
+                placeBet(bet, h);
+            }
+        };
+        if (key == null) {
+            place.handle(handler);
+        } else {
+            placedBets.execute(key, bet, place, handler);
+        }
+    }
+
+    /**
+     *
+     * This method posts a bet in a fractional format to sky /bet service and
+     * converts the receipt into a decimal format. The handler is failed with
+     * an UpstreamException if sky does not return 201 created, with a
+     * DecodeException if the receipt cannot be parsed, or with the connection
+     * error if sky could not be reached.
+     *
+     * @param bet the bet to place
+     * @param handler called with the placed bet in a decimal format
+     */
+    private void placeBet(Bet bet, Handler<AsyncResult<PlacedBet>> handler) {
+        if (blocking) {
+            vertx.executeBlocking(blockingCode -> {
+                try {
+                    blockingCode.complete(placeBetBlocking(bet));
+                } catch (Exception e) {
+                    blockingCode.fail(e);
                 }
-            });
-        }).setChunked(true).putHeader("content-type", "application/json; charset=utf-8").write(fb.toJsonString()).end();
+            }, false, handler);
+            return;
+        }
+        long start = System.nanoTime();
+        upstream.post("/bets", bet.toFractionalJson(), (r, buffer) -> {
+            metrics.upstreamSince("/bets", start);
+            PlacedBet placed;
+            try {
+                placed = toPlacedBet(bet, r.statusCode(), r.statusMessage(), buffer);
+            } catch (UpstreamException | DecodeException e) {
+                handler.handle(Future.failedFuture(e));
+                return;
+            }
+            handler.handle(Future.succeededFuture(placed));
+        }, t -> {
+            metrics.upstreamSince("/bets", start);
+            metrics.upstreamError();
+            handler.handle(Future.failedFuture(t));
+        });
     }
 
     /**
      *
-     * This method expects a response body of events with odds in a fractional
-     * format and converts them into events with odds in a decimal format.
+     * This method is the blocking mode version of placeBet, written as
+     * straight-line code for a worker thread.
      *
+     * @param bet the bet to place
+     * @return the placed bet in a decimal format
+     * @throws Exception if sky could not be reached, did not place the bet or
+     * sent a receipt that could not be parsed, as placeBet fails its handler
+     */
+    private PlacedBet placeBetBlocking(Bet bet) throws Exception {
+        long start = System.nanoTime();
+        BlockingUpstream.Response r;
+        try {
+            r = blockingUpstream.post("/bets", bet.toFractionalJson());
+        } catch (Exception e) {
+            metrics.upstreamError();
+            throw e;
+        } finally {
+            metrics.upstreamSince("/bets", start);
+        }
+        return toPlacedBet(bet, r.getStatusCode(), r.getStatusMessage(), r.getBody());
+    }
+
+    /**
+     *
+     * @param bet the bet that was sent to sky
+     * @param statusCode the status sky answered with
+     * @param statusMessage the status message sky answered with
+     * @param buffer the body sky answered with
+     * @return the receipt converted into a decimal format
+     * @throws UpstreamException if sky did not return 201 created
+     * @throws DecodeException if the receipt cannot be parsed
+     */
+    private PlacedBet toPlacedBet(Bet bet, int statusCode, String statusMessage, Buffer buffer) {
+        if (statusCode != 201) {
+            metrics.upstreamError();
+            throw new UpstreamException(statusCode, statusMessage, buffer);
+        }
+        PlacedBet placed = PlacedBet.fromFractionalJson(buffer, bet);
+        if (placed == null) {
+            throw new DecodeException("no receipt");
+        }
+        return placed;
+    }
+
+    /**
+     *
+     * This method sends an error response when the request to sky could not
+     * be completed, see toJsonError(Throwable).
      *
-     * @param r HttpClientRespose with a body containing available events
      * @param routingContext routingContext Represents the context for the
      * handling of a request
+     * @param cause why the request to sky could not be completed
      */
-    private void getAvailable(HttpClientResponse r, RoutingContext routingContext) {
-        r.bodyHandler(buffer -> {
-            JsonArray t = new JsonArray(buffer.toString("UTF-8"));
-            List<DecimalEvent> result = t.stream()
-                    .map(f -> {
-                        //trycatch the decodeValue
-                        return Json.decodeValue(((JsonObject) f).encode(), FractionalEvent.class);
-                    }).map(f -> {
-                        return DecimalEvent.builder()
-                        .betId(f.getBetId())
-                        .event(f.getEvent())
-                        .name(f.getName())
-                        .odds(OddsConversionUtils.convertFractionToDecimalBet(f.getOdds()))
-                        .build();
-                    }).collect(Collectors.toList());
+    private void upstreamFailed(RoutingContext routingContext, Throwable cause) {
+        if (routingContext.response().ended()) {
+            return;
+        }
+        sendError(routingContext, toJsonError(cause));
+    }
 
-            routingContext.response()
-                    .setStatusCode(200)
-                    .putHeader("content-type", "application/json; charset=utf-8")
-                    .end(Json.encodePrettily(result));
+    /**
+     *
+     * This method sends the available events, or a 304 not modified if the
+     * client already has them. The body is compact json unless the "pretty"
+     * query parameter is given, and is compressed with the coding negotiated
+     * from the Accept-Encoding header. If the "event", "offset" or "limit"
+     * query parameters are given only that page of the events is sent, and
+     * a negative or non numeric offset or limit gets a bad request.
+     *
+     * @param routingContext routingContext Represents the context for the
+     * handling of a request
+     * @param snapshot the available events to send
+     */
+    private void sendAvailable(RoutingContext routingContext, AvailableSnapshot snapshot) {
+        HttpServerRequest request = routingContext.request();
+        String event = request.getParam("event");
+        int offset;
+        int limit;
+        try {
+            offset = intParam(request, "offset", 0);
+            limit = intParam(request, "limit", Integer.MAX_VALUE);
+        } catch (NumberFormatException nfe) {
+            sendError(routingContext, 400, "Bad Request");
+            return;
+        }
+        boolean pretty = prettyParam(request);
+        WireFormat format = WireFormat.negotiate(request.getHeader("accept"));
+        ContentEncoding encoding = ContentEncoding.negotiate(request.getHeader("accept-encoding"));
+        if (notModified(routingContext, snapshot, format, pretty, encoding)) {
+            return;
+        }
+        long start = System.nanoTime();
+        Buffer body;
+        if (event == null && offset == 0 && limit == Integer.MAX_VALUE) {
+            body = snapshot.body(format, pretty, encoding);
+        } else {
+            body = encoding.encode(snapshot.select(event, offset, limit, format, pretty));
+            routingContext.response().putHeader("x-total-count", String.valueOf(snapshot.count(event)));
+        }
+        metrics.encoding().recordSince(start);
+        sendBody(routingContext, format, encoding, body);
+    }
+
+    /**
+     *
+     * This method sends the available event with the bet_id given in the
+     * path, or a 404 not found if there is none. It is encoded as
+     * sendAvailable encodes the whole list.
+     *
+     * @param routingContext routingContext Represents the context for the
+     * handling of a request
+     * @param snapshot the available events to look the event up in
+     */
+    private void sendEvent(RoutingContext routingContext, AvailableSnapshot snapshot) {
+        HttpServerRequest request = routingContext.request();
+        int i;
+        try {
+            i = snapshot.indexOf(Long.parseLong(request.getParam("betId")));
+        } catch (NumberFormatException nfe) {
+            sendError(routingContext, 400, "Bad Request");
+            return;
+        }
+        if (i < 0) {
+            sendError(routingContext, 404, "Not Found");
+            return;
+        }
+        boolean pretty = prettyParam(request);
+        WireFormat format = WireFormat.negotiate(request.getHeader("accept"));
+        ContentEncoding encoding = ContentEncoding.negotiate(request.getHeader("accept-encoding"));
+        if (notModified(routingContext, snapshot, format, pretty, encoding)) {
+            return;
+        }
+        long start = System.nanoTime();
+        Buffer body = encoding.encode(snapshot.event(i, format, pretty));
+        metrics.encoding().recordSince(start);
+        sendBody(routingContext, format, encoding, body);
+    }
+
+    /**
+     *
+     * This method adds the ETag of the snapshot to the response and sends a
+     * 304 not modified if the client already has it. Every response built
+     * from a snapshot carries its ETag, as nothing served from it can change
+     * until the snapshot does.
+     *
+     * @param routingContext routingContext Represents the context for the
+     * handling of a request
+     * @param snapshot the available events the response is built from
+     * @param format the format the response is sent in
+     * @param pretty true if the response is pretty printed
+     * @param encoding the content coding the response is sent with
+     * @return true if a 304 was sent
+     */
+    private boolean notModified(RoutingContext routingContext, AvailableSnapshot snapshot, WireFormat format,
+            boolean pretty, ContentEncoding encoding) {
+        HttpServerResponse response = routingContext.response()
+                .putHeader("etag", snapshot.etag(format, pretty, encoding))
+                .putHeader("vary", "Accept, Accept-Encoding");
+        if (snapshot.matches(routingContext.request().getHeader("if-none-match"), format, pretty, encoding)) {
+            response.setStatusCode(304).end();
+            return true;
+        }
+        return false;
+    }
+
+    private void sendBody(RoutingContext routingContext, WireFormat format, ContentEncoding encoding, Buffer body) {
+        HttpServerResponse response = routingContext.response();
+        if (encoding != ContentEncoding.IDENTITY) {
+            response.putHeader("content-encoding", encoding.token());
+        }
+        response.setStatusCode(200)
+                .putHeader("content-type", format.contentType())
+                .end(body);
+    }
+
+    private static boolean prettyParam(HttpServerRequest request) {
+        String pretty = request.getParam("pretty");
+        return pretty != null && !"false".equalsIgnoreCase(pretty);
+    }
+
+    /**
+     *
+     * @param request the request
+     * @param name the query parameter
+     * @param defaultValue the value if the parameter is not given
+     * @return the value of the parameter
+     * @throws NumberFormatException if the value is not a non negative int
+     */
+    private static int intParam(HttpServerRequest request, String name, int defaultValue) {
+        String value = request.getParam(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        int parsed = Integer.parseInt(value.trim());
+        if (parsed < 0) {
+            throw new NumberFormatException(name + " is negative");
+        }
+        return parsed;
+    }
+
+    /**
+     *
+     * This method sends an error response with a JsonError body.
+     *
+     * @param routingContext routingContext Represents the context for the
+     * handling of a request
+     * @param statusCode the http status code
+     * @param message the status message, also used as the error message
+     */
+    private void sendError(RoutingContext routingContext, int statusCode, String message) {
+        sendError(routingContext, JsonError.builder()
+                .errorCode(statusCode)
+                .errorMessage(message)
+                .build());
+    }
+
+    /**
+     *
+     * This method sends an error response with the JsonError as the body, its
+     * error code as the status code and its message as the status message.
+     *
+     * @param routingContext routingContext Represents the context for the
+     * handling of a request
+     * @param error the error to send
+     */
+    private void sendError(RoutingContext routingContext, JsonError error) {
+        routingContext.response()
+                .setStatusCode(error.getErrorCode())
+                .setStatusMessage(error.getErrorMessage())
+                .putHeader("content-type", "application/json; charset=utf-8")
+                .end(error.toJsonBuffer());
+    }
+
+    /**
+     *
+     * This method requests the available events from sky and completes the
+     * future with the converted snapshot. The changes from the previous
+     * snapshot are published to the odds stream subscribers of every
+     * instance.
+     *
+     * @param future completed with the converted snapshot
+     */
+    private void loadAvailable(Future<AvailableSnapshot> future) {
+        Future<AvailableSnapshot> loaded = Future.future();
+        loaded.setHandler(ar -> {
+            if (ar.succeeded()) {
+                AvailableSnapshot previous = available.peek();
+                if (previous != null && previous != ar.result()) {
+                    String delta = AvailableSnapshot.diff(previous, ar.result());
+                    if (delta != null) {
+                        vertx.eventBus().publish(OddsStreamHub.DELTA_ADDRESS, delta);
+                    }
+                }
+                future.complete(ar.result());
+            } else {
+                future.fail(ar.cause());
+            }
+        });
+        AvailableSnapshot previous = available.peek();
+        if (blocking) {
+            vertx.<AvailableSnapshot>executeBlocking(blockingCode -> {
+                try {
+                    blockingCode.complete(loadAvailableBlocking(previous));
+                } catch (Exception e) {
+                    blockingCode.fail(e);
+                }
+            }, false, ar -> {
+                if (ar.succeeded()) {
+                    loaded.complete(ar.result());
+                } else {
+                    loaded.fail(ar.cause());
+                }
+            });
+            return;
+        }
+        MultiMap headers = conditionalHeaders(previous);
+        long start = System.nanoTime();
+        upstream.getHedged("/available", headers, hedgeDelay(), metrics::hedged, (r, buffer) -> {
+            long handling = System.nanoTime();
+            this.getAvailable(r, buffer, previous, start, loaded);
+            checkBudget("sky /available response", handling);
+        }, t -> {
+            metrics.upstreamSince("/available", start);
+            metrics.upstreamError();
+            loaded.fail(t);
+        });
+    }
+
+    /**
+     *
+     * This method is the blocking mode version of loadAvailable, written as
+     * straight-line code for a worker thread. The payload is converted on the
+     * worker, in parallel chunks if it is over the "offloadThreshold".
+     *
+     * @param previous the snapshot to make the request conditional on, may be
+     * null
+     * @return the converted snapshot, or previous if sky has not changed it
+     * @throws Exception if sky could not be reached, did not answer with a
+     * 200 or the body could not be parsed
+     */
+    private AvailableSnapshot loadAvailableBlocking(AvailableSnapshot previous) throws Exception {
+        long start = System.nanoTime();
+        BlockingUpstream.Response r;
+        try {
+            r = blockingUpstream.get("/available", conditionalHeaders(previous), hedgeDelay(), metrics::hedged);
+        } catch (Exception e) {
+            metrics.upstreamError();
+            throw e;
+        } finally {
+            metrics.upstreamSince("/available", start);
+        }
+        if (r.getStatusCode() == 304 && previous != null) {
+            return previous;
+        }
+        if (r.getStatusCode() != 200) {
+            metrics.upstreamError();
+            throw new UpstreamException(r.getStatusCode(), r.getStatusMessage(), r.getBody());
+        }
+        Buffer buffer = r.getBody();
+        boolean large = buffer.length() >= config().getInteger("offloadThreshold", DEFAULT_OFFLOAD_THRESHOLD);
+        long converting = System.nanoTime();
+        AvailableSnapshot snapshot = AvailableSnapshot.fromFractional(buffer, r.getHeader("etag"),
+                r.getHeader("last-modified"),
+                large ? config().getInteger("conversionParallelism", Runtime.getRuntime().availableProcessors()) : 1);
+        metrics.conversion().recordSince(converting);
+        return snapshot;
+    }
+
+    /**
+     *
+     * @param previous the snapshot sky last sent, may be null
+     * @return the conditional request headers that let sky answer 304 not
+     * modified if the events have not changed since previous
+     */
+    private static MultiMap conditionalHeaders(AvailableSnapshot previous) {
+        MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+        if (previous != null && previous.upstreamEtag() != null) {
+            headers.add("if-none-match", previous.upstreamEtag());
+        }
+        if (previous != null && previous.upstreamLastModified() != null) {
+            headers.add("if-modified-since", previous.upstreamLastModified());
+        }
+        return headers;
+    }
+
+    /**
+     *
+     * @return the time in milliseconds to wait before hedging the /available
+     * request to sky, or 0 if it should not be hedged
+     */
+    private long hedgeDelay() {
+        JsonObject upstreamConfig = config().getJsonObject("upstream", new JsonObject());
+        if (!upstreamConfig.getBoolean("hedgeAvailable", false)) {
+            return 0;
+        }
+        Long fixed = upstreamConfig.getLong("hedgeDelay");
+        if (fixed != null) {
+            return fixed;
+        }
+        WindowedHistogram histogram = metrics.recentUpstream("/available");
+        if (histogram.count() < MIN_HEDGE_SAMPLES) {
+            return 0;
+        }
+        long p95 = histogram.percentile(0.95);
+        return p95 == Long.MAX_VALUE ? 0 : Math.max(MIN_HEDGE_DELAY, TimeUnit.NANOSECONDS.toMillis(p95));
+    }
+
+    /**
+     *
+     * This method expects a response body of events with odds in a fractional
+     * format and converts them into events with odds in a decimal format. The
+     * future is completed with the converted snapshot, or failed if sky did
+     * not return a 200 or the body could not be parsed. If sky returns 304 not
+     * modified the future is completed with the previous snapshot.
+     *
+     * A body of "offloadThreshold" bytes or more is converted on a worker
+     * thread, in parallel chunks, and the future is completed back on the
+     * event loop.
+     *
+     * @param r HttpClientRespose from sky
+     * @param buffer the response body containing available events
+     * @param previous the snapshot the request was made conditional on, may
+     * be null
+     * @param start the System.nanoTime() the request was sent at
+     * @param future completed with the converted events
+     */
+    private void getAvailable(HttpClientResponse r, Buffer buffer, AvailableSnapshot previous, long start,
+            Future<AvailableSnapshot> future) {
+        metrics.upstreamSince("/available", start);
+        if (r.statusCode() == 304 && previous != null) {
+            future.complete(previous);
+            return;
+        }
+        if (r.statusCode() != 200) {
+            metrics.upstreamError();
+            future.fail(r.statusCode() + " " + r.statusMessage());
+            return;
+        }
+        String etag = r.getHeader("etag");
+        String lastModified = r.getHeader("last-modified");
+        if (buffer.length() < config().getInteger("offloadThreshold", DEFAULT_OFFLOAD_THRESHOLD)) {
+            try {
+                long converting = System.nanoTime();
+                AvailableSnapshot snapshot = AvailableSnapshot.fromFractional(buffer, etag, lastModified);
+                metrics.conversion().recordSince(converting);
+                future.complete(snapshot);
+            } catch (DecodeException de) {
+                future.fail(de);
+            }
+            return;
+        }
+        metrics.offloaded();
+        int parallelism = config().getInteger("conversionParallelism", Runtime.getRuntime().availableProcessors());
+        // unordered, so conversions from different refreshes do not queue
+        // behind each other on the worker pool
+        vertx.<AvailableSnapshot>executeBlocking(blocking -> {
+            try {
+                long converting = System.nanoTime();
+                AvailableSnapshot snapshot = AvailableSnapshot.fromFractional(buffer, etag, lastModified,
+                        parallelism);
+                metrics.conversion().recordSince(converting);
+                blocking.complete(snapshot);
+            } catch (DecodeException de) {
+                blocking.fail(de);
+            }
+        }, false, ar -> {
+            if (ar.succeeded()) {
+                future.complete(ar.result());
+            } else {
+                future.fail(ar.cause());
+            }
         });
     }
 }
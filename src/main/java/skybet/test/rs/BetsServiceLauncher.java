@@ -0,0 +1,43 @@
+package skybet.test.rs;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+
+/**
+ * This is the main verticle of the fat jar. It deploys one BetsRestService
+ * instance per event loop so the service uses every core.
+ *
+ * The number of instances is taken from "instances" in the config and
+ * defaults to the number of available processors. The rest of the config,
+ * such as "port" and "upstream", is passed on to each BetsRestService
+ * instance. The config can be given on the command line:
+ * <pre>
+ * java -jar SkyBet-Tech-Test-1.0-SNAPSHOT-fat.jar -conf config.json
+ * </pre>
+ *
+ * @author chrishovey
+ */
+public class BetsServiceLauncher extends AbstractVerticle {
+
+    /**
+     *
+     * This method is called by vertx on startup and deploys the
+     * BetsRestService instances.
+     *
+     * @param startFuture completed once every instance has started
+     */
+    @Override
+    public void start(Future<Void> startFuture) {
+        int instances = config().getInteger("instances", Runtime.getRuntime().availableProcessors());
+        vertx.deployVerticle(BetsRestService.class.getName(), new DeploymentOptions()
+                .setConfig(config())
+                .setInstances(instances), ar -> {
+                    if (ar.succeeded()) {
+                        startFuture.complete();
+                    } else {
+                        startFuture.fail(ar.cause());
+                    }
+                });
+    }
+}
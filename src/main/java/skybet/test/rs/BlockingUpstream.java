@@ -0,0 +1,130 @@
+package skybet.test.rs;
+
+import io.vertx.core.Context;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * This class gives code running on a worker thread a blocking view of an
+ * UpstreamClient, so a call to sky can be written as straight-line code that
+ * returns the response or throws.
+ *
+ * Each call hands the request to the event loop the client belongs to and
+ * parks the calling thread until the response, or the failure, comes back.
+ * The client is only ever touched from its own event loop, and its deadline,
+ * circuit breaker and balancing all still apply. It must not be called on an
+ * event loop, which would then be waiting on itself.
+ *
+ * @author chrishovey
+ */
+public class BlockingUpstream {
+
+    private final Context context;
+    private final UpstreamClient client;
+
+    /**
+     * This class holds an upstream response read in full on the event loop,
+     * so it can be handed to another thread.
+     */
+    public static class Response {
+
+        private final int statusCode;
+        private final String statusMessage;
+        private final MultiMap headers;
+        private final Buffer body;
+
+        Response(int statusCode, String statusMessage, MultiMap headers, Buffer body) {
+            this.statusCode = statusCode;
+            this.statusMessage = statusMessage;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public String getStatusMessage() {
+            return statusMessage;
+        }
+
+        public String getHeader(String name) {
+            return headers.get(name);
+        }
+
+        public Buffer getBody() {
+            return body;
+        }
+    }
+
+    /**
+     *
+     * @param context the event loop context the client was created on
+     * @param client the client to send the requests with
+     */
+    public BlockingUpstream(Context context, UpstreamClient client) {
+        this.context = context;
+        this.client = client;
+    }
+
+    /**
+     *
+     * This method sends a GET request, hedged as UpstreamClient.getHedged
+     * does, and waits for the response.
+     *
+     * @param uri the request uri
+     * @param headers headers to add to the request
+     * @param hedgeDelay time in milliseconds to wait before sending the second
+     * request, or 0 to send a single request
+     * @param hedged called when the second request is sent
+     * @return the first response
+     * @throws Exception if the request fails, times out or is refused by the
+     * circuit breaker
+     */
+    public Response get(String uri, MultiMap headers, long hedgeDelay, Runnable hedged) throws Exception {
+        return await(result -> client.getHedged(uri, headers, hedgeDelay, hedged,
+                (r, body) -> result.complete(new Response(r.statusCode(), r.statusMessage(),
+                        MultiMap.caseInsensitiveMultiMap().addAll(r.headers()), body)),
+                result::completeExceptionally));
+    }
+
+    /**
+     *
+     * This method sends a POST request with a json body and waits for the
+     * response.
+     *
+     * @param uri the request uri
+     * @param body the json request body
+     * @return the response
+     * @throws Exception if the request fails, times out or is refused by the
+     * circuit breaker
+     */
+    public Response post(String uri, Buffer body) throws Exception {
+        return await(result -> client.post(uri, body,
+                (r, buffer) -> result.complete(new Response(r.statusCode(), r.statusMessage(),
+                        MultiMap.caseInsensitiveMultiMap().addAll(r.headers()), buffer)),
+                result::completeExceptionally));
+    }
+
+    private Response await(Consumer<CompletableFuture<Response>> call) throws Exception {
+        if (Context.isOnEventLoopThread()) {
+            throw new IllegalStateException("BlockingUpstream cannot be used on an event loop");
+        }
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        context.runOnContext(v -> call.accept(result));
+        try {
+            return result.get();
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw ee;
+        }
+    }
+}
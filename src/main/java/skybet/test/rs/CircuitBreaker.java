@@ -0,0 +1,99 @@
+package skybet.test.rs;
+
+import io.vertx.core.shareddata.Shareable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class stops requests being sent to the sky bet api while it is
+ * unhealthy.
+ *
+ * After "failureThreshold" requests in a row have failed, timed out or been
+ * answered with a 5xx status the breaker opens and requests are refused
+ * straight away. Once "resetTimeout" milliseconds have passed a single trial
+ * request is let through, if it succeeds the breaker closes again, if it
+ * fails the breaker stays open for another reset timeout. Each request is
+ * reported with the Permit it was let through with, so only the failure of
+ * the trial request itself restarts the reset timeout, not the late failure
+ * of a request sent before the breaker opened.
+ *
+ * One instance is shared between all the verticle instances through a vertx
+ * LocalMap, so it is thread safe.
+ *
+ * @author chrishovey
+ */
+public class CircuitBreaker implements Shareable {
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final long DEFAULT_RESET_TIMEOUT = 5000;
+
+    private final int failureThreshold;
+    private final long resetTimeoutNanos;
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicLong openedAt = new AtomicLong();
+    private final AtomicBoolean trial = new AtomicBoolean();
+
+    /**
+     * This enum is what a request was let through with, or REFUSED if it was
+     * not.
+     */
+    public enum Permit {
+        REFUSED, REQUEST, TRIAL;
+
+        public boolean allowed() {
+            return this != REFUSED;
+        }
+    }
+
+    /**
+     *
+     * @param failureThreshold the number of failures in a row that open the
+     * breaker
+     * @param resetTimeout time in milliseconds the breaker stays open before a
+     * trial request is let through
+     */
+    public CircuitBreaker(int failureThreshold, long resetTimeout) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.resetTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(resetTimeout);
+    }
+
+    /**
+     *
+     * @return REQUEST or TRIAL if a request may be sent, the caller must then
+     * report it with success() or with failure() and the permit, or REFUSED
+     */
+    public Permit allowRequest() {
+        if (failures.get() < failureThreshold) {
+            return Permit.REQUEST;
+        }
+        if (System.nanoTime() - openedAt.get() < resetTimeoutNanos) {
+            return Permit.REFUSED;
+        }
+        return trial.compareAndSet(false, true) ? Permit.TRIAL : Permit.REFUSED;
+    }
+
+    /**
+     * This method closes the breaker, whichever request succeeded.
+     */
+    public void success() {
+        failures.set(0);
+        trial.set(false);
+    }
+
+    /**
+     *
+     * @param permit the permit the request was let through with
+     */
+    public void failure(Permit permit) {
+        int count = failures.incrementAndGet();
+        if (count == failureThreshold || (permit == Permit.TRIAL && trial.compareAndSet(true, false))) {
+            openedAt.set(System.nanoTime());
+        }
+    }
+
+    public boolean isOpen() {
+        return failures.get() >= failureThreshold;
+    }
+}
@@ -0,0 +1,14 @@
+package skybet.test.rs;
+
+/**
+ * This exception is used to fail a request to the sky bet api that was not
+ * sent because the circuit breaker is open.
+ *
+ * @author chrishovey
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    public CircuitOpenException() {
+        super("circuit breaker open", null, false, false);
+    }
+}
@@ -0,0 +1,107 @@
+package skybet.test.rs;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * This class fans the odds stream out to the subscribers connected to one
+ * verticle instance.
+ *
+ * The deltas are worked out once, by whichever instance refreshes the shared
+ * /available snapshot, and published on the event bus at DELTA_ADDRESS. Each
+ * hub passes them on to its own subscribers. While it has subscribers the hub
+ * also polls the snapshot every poll interval so that changes are picked up
+ * even if nobody is calling /available.
+ *
+ * A hub is only used from the event loop of its verticle instance.
+ *
+ * @author chrishovey
+ */
+public class OddsStreamHub {
+
+    public static final String DELTA_ADDRESS = "skybet.test.odds.delta";
+
+    private final Vertx vertx;
+    private final Supplier<AvailableSnapshot> latest;
+    private final Handler<Void> poll;
+    private final long pollInterval;
+    private final Set<OddsSubscriber> subscribers = new LinkedHashSet<>();
+    private final MessageConsumer<String> consumer;
+    private long timerId = -1;
+
+    /**
+     *
+     * @param vertx the vertx instance
+     * @param latest returns the latest snapshot, used to resync stale
+     * subscribers
+     * @param poll called every poll interval while there are subscribers, to
+     * refresh the snapshot if it has expired
+     * @param pollInterval time in milliseconds between polls
+     */
+    public OddsStreamHub(Vertx vertx, Supplier<AvailableSnapshot> latest, Handler<Void> poll, long pollInterval) {
+        this.vertx = vertx;
+        this.latest = latest;
+        this.poll = poll;
+        this.pollInterval = pollInterval;
+        this.consumer = vertx.eventBus().consumer(DELTA_ADDRESS, message -> deliver(message.body()));
+    }
+
+    /**
+     *
+     * This method adds a subscriber and sends it the initial snapshot.
+     *
+     * @param subscriber the new subscriber
+     * @param snapshot the snapshot to start the subscriber from
+     */
+    void subscribe(OddsSubscriber subscriber, AvailableSnapshot snapshot) {
+        subscribers.add(subscriber);
+        subscriber.closeHandler(v -> unsubscribe(subscriber));
+        subscriber.drainHandler(v -> {
+            if (subscriber.isStale()) {
+                subscriber.setStale(false);
+                subscriber.write("snapshot", latest.get().compactJson());
+            }
+        });
+        subscriber.write("snapshot", snapshot.compactJson());
+        if (timerId < 0) {
+            timerId = vertx.setPeriodic(pollInterval, id -> poll.handle(null));
+        }
+    }
+
+    private void unsubscribe(OddsSubscriber subscriber) {
+        subscribers.remove(subscriber);
+        if (subscribers.isEmpty() && timerId >= 0) {
+            vertx.cancelTimer(timerId);
+            timerId = -1;
+        }
+    }
+
+    private void deliver(String delta) {
+        for (OddsSubscriber subscriber : subscribers) {
+            if (subscriber.writeQueueFull()) {
+                subscriber.setStale(true);
+            } else if (!subscriber.isStale()) {
+                subscriber.write("delta", delta);
+            }
+        }
+    }
+
+    public int subscribers() {
+        return subscribers.size();
+    }
+
+    /**
+     * This method stops listening for deltas and polling.
+     */
+    public void close() {
+        consumer.unregister();
+        if (timerId >= 0) {
+            vertx.cancelTimer(timerId);
+            timerId = -1;
+        }
+    }
+}
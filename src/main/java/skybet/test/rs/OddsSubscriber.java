@@ -0,0 +1,113 @@
+package skybet.test.rs;
+
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.ServerWebSocket;
+
+/**
+ * This class is a client subscribed to the odds stream, either over server
+ * sent events or a websocket.
+ *
+ * Messages are either a "snapshot" of every available event or a "delta"
+ * holding the events that changed, see AvailableSnapshot.diff. A subscriber
+ * that cannot keep up is marked stale and sent nothing more until its write
+ * queue drains, at which point it is sent a fresh snapshot in place of the
+ * deltas it missed.
+ *
+ * @author chrishovey
+ */
+abstract class OddsSubscriber {
+
+    private boolean stale;
+
+    /**
+     *
+     * @param type the message type, snapshot or delta
+     * @param json the single line json message body
+     */
+    abstract void write(String type, String json);
+
+    abstract boolean writeQueueFull();
+
+    abstract void drainHandler(Handler<Void> handler);
+
+    abstract void closeHandler(Handler<Void> handler);
+
+    boolean isStale() {
+        return stale;
+    }
+
+    void setStale(boolean stale) {
+        this.stale = stale;
+    }
+
+    /**
+     * This class streams the odds as server sent events.
+     */
+    static class ServerSentEvents extends OddsSubscriber {
+
+        private final HttpServerResponse response;
+
+        ServerSentEvents(HttpServerResponse response, int writeQueueMaxSize) {
+            this.response = response;
+            response.setChunked(true)
+                    .setWriteQueueMaxSize(writeQueueMaxSize)
+                    .putHeader("content-type", "text/event-stream; charset=utf-8")
+                    .putHeader("cache-control", "no-cache");
+        }
+
+        @Override
+        void write(String type, String json) {
+            response.write("event: " + type + "\ndata: " + json + "\n\n", "UTF-8");
+        }
+
+        @Override
+        boolean writeQueueFull() {
+            return response.writeQueueFull();
+        }
+
+        @Override
+        void drainHandler(Handler<Void> handler) {
+            response.drainHandler(handler);
+        }
+
+        @Override
+        void closeHandler(Handler<Void> handler) {
+            response.closeHandler(handler);
+        }
+    }
+
+    /**
+     * This class streams the odds as websocket text frames of the form
+     * {"type":"delta","data":{...}}.
+     */
+    static class WebSocket extends OddsSubscriber {
+
+        private final ServerWebSocket socket;
+
+        WebSocket(ServerWebSocket socket, int writeQueueMaxSize) {
+            this.socket = socket;
+            socket.setWriteQueueMaxSize(writeQueueMaxSize);
+        }
+
+        @Override
+        void write(String type, String json) {
+            socket.writeFinalTextFrame("{\"type\":\"" + type + "\",\"data\":" + json + "}");
+        }
+
+        @Override
+        boolean writeQueueFull() {
+            return socket.writeQueueFull();
+        }
+
+        @Override
+        void drainHandler(Handler<Void> handler) {
+            socket.drainHandler(handler);
+        }
+
+        @Override
+        void closeHandler(Handler<Void> handler) {
+            socket.closeHandler(handler);
+        }
+    }
+}
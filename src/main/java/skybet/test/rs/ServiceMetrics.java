@@ -0,0 +1,311 @@
+package skybet.test.rs;
+
+import io.vertx.core.shareddata.Shareable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import skybet.test.utils.LatencyHistogram;
+import skybet.test.utils.OddsLadder;
+import skybet.test.utils.WindowedHistogram;
+
+/**
+ * This class holds the latency histograms and counters of the service. One
+ * instance is shared between all the verticle instances through a vertx
+ * LocalMap, and it is rendered in the Prometheus text format by /metrics.
+ *
+ * The histograms cover the time to handle each route, to the first event for
+ * the /available/stream route which stays open, the round trip to sky for
+ * each upstream call, the odds conversion and the json encoding of the
+ * responses. The upstream round trips are also kept in a WindowedHistogram of
+ * the last RECENT_WINDOW to two RECENT_WINDOW seconds, for decisions such as
+ * the hedge delay that should follow a change in latency rather than the
+ * whole life of the process. Recording into them is lock free and does not
+ * allocate, so it can be done on the event loop for every request.
+ *
+ * @author chrishovey
+ */
+public class ServiceMetrics implements Shareable {
+
+    public static final String BETS = "/bets";
+    public static final String BETS_BATCH = "/bets/batch";
+    public static final String AVAILABLE = "/available";
+    public static final String AVAILABLE_STREAM = "/available/stream";
+    public static final String AVAILABLE_EVENT = "/available/{betId}";
+    public static final String METRICS = "/metrics";
+    public static final String NOT_IMPLEMENTED = "other";
+    public static final long RECENT_WINDOW = 30;
+
+    private static final String[] ROUTES = {BETS, BETS_BATCH, AVAILABLE, AVAILABLE_STREAM, AVAILABLE_EVENT,
+        METRICS, NOT_IMPLEMENTED};
+    private static final String[] UPSTREAM = {BETS, AVAILABLE};
+
+    private final LatencyHistogram[] routes = new LatencyHistogram[ROUTES.length];
+    private final LatencyHistogram[] upstream = new LatencyHistogram[UPSTREAM.length];
+    private final WindowedHistogram[] recentUpstream = new WindowedHistogram[UPSTREAM.length];
+    private final LatencyHistogram conversion = new LatencyHistogram();
+    private final LatencyHistogram encoding = new LatencyHistogram();
+    private final AtomicLongArray responses = new AtomicLongArray(600);
+    private final AtomicLong upstreamErrors = new AtomicLong();
+    private final AtomicLong hedged = new AtomicLong();
+    private final AtomicLong betsRejected = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+    private final AtomicLong offloaded = new AtomicLong();
+    private final AtomicLong overBudget = new AtomicLong();
+
+    public ServiceMetrics() {
+        for (int i = 0; i < routes.length; i++) {
+            routes[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < upstream.length; i++) {
+            upstream[i] = new LatencyHistogram();
+            recentUpstream[i] = new WindowedHistogram(RECENT_WINDOW, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     *
+     * @param route one of the route constants
+     * @return the histogram of the time taken to handle requests to the route
+     */
+    public LatencyHistogram route(String route) {
+        return routes[indexOf(ROUTES, route)];
+    }
+
+    /**
+     *
+     * @param uri the sky api uri, /bets or /available
+     * @return the histogram of the round trip time of requests to sky
+     */
+    public LatencyHistogram upstream(String uri) {
+        return upstream[indexOf(UPSTREAM, uri)];
+    }
+
+    /**
+     *
+     * @param uri the sky api uri, /bets or /available
+     * @return the histogram of the round trip time of recent requests to sky
+     */
+    public WindowedHistogram recentUpstream(String uri) {
+        return recentUpstream[indexOf(UPSTREAM, uri)];
+    }
+
+    /**
+     *
+     * This method records the round trip time of a request to sky in both the
+     * upstream and the recent upstream histograms.
+     *
+     * @param uri the sky api uri, /bets or /available
+     * @param startNanos the System.nanoTime() the request was sent at
+     */
+    public void upstreamSince(String uri, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        int i = indexOf(UPSTREAM, uri);
+        upstream[i].record(nanos);
+        recentUpstream[i].record(nanos);
+    }
+
+    /**
+     *
+     * @return the histogram of the time taken to convert odds, a single bet
+     * as it is decoded or a whole /available payload
+     */
+    public LatencyHistogram conversion() {
+        return conversion;
+    }
+
+    /**
+     *
+     * @return the histogram of the time taken to encode response bodies
+     */
+    public LatencyHistogram encoding() {
+        return encoding;
+    }
+
+    /**
+     *
+     * @param statusCode the status code of a response that has been sent
+     */
+    public void response(int statusCode) {
+        if (statusCode >= 0 && statusCode < responses.length()) {
+            responses.incrementAndGet(statusCode);
+        }
+    }
+
+    /**
+     * This method counts a request to sky that failed or was not answered
+     * with the expected status.
+     */
+    public void upstreamError() {
+        upstreamErrors.incrementAndGet();
+    }
+
+    /**
+     * This method counts a second, hedged, request sent to sky because the
+     * first was slow.
+     */
+    public void hedged() {
+        hedged.incrementAndGet();
+    }
+
+    /**
+     * This method counts a bet rejected against the cached available events
+     * without being sent to sky.
+     */
+    public void betRejected() {
+        betsRejected.incrementAndGet();
+    }
+
+    /**
+     * This method counts a request refused with 503 because its route was
+     * saturated or its deadline passed before it was admitted.
+     */
+    public void shed() {
+        shed.incrementAndGet();
+    }
+
+    /**
+     * This method counts an /available payload converted on a worker thread
+     * because it was too large to convert on the event loop.
+     */
+    public void offloaded() {
+        offloaded.incrementAndGet();
+    }
+
+    /**
+     * This method counts a handler that held the event loop for longer than
+     * the event loop budget.
+     */
+    public void overBudget() {
+        overBudget.incrementAndGet();
+    }
+
+    /**
+     *
+     * This method renders all the metrics in the Prometheus text format.
+     *
+     * @param stats the shared upstream connection stats
+     * @param maxPoolSize the connection pool size of each upstream client
+     * @param breaker the shared upstream circuit breaker
+     * @param balancer the shared upstream balancer, whose backends are
+     * reported by host:port
+     * @return the metrics
+     */
+    public String toPrometheus(UpstreamStats stats, int maxPoolSize, CircuitBreaker breaker,
+            UpstreamBalancer balancer) {
+        StringBuilder out = new StringBuilder(16 * 1024);
+        out.append("# HELP skybet_request_duration_seconds Time taken to handle a request.\n");
+        out.append("# TYPE skybet_request_duration_seconds histogram\n");
+        for (int i = 0; i < ROUTES.length; i++) {
+            routes[i].writePrometheus(out, "skybet_request_duration_seconds", "route=\"" + ROUTES[i] + "\"");
+        }
+        out.append("# HELP skybet_upstream_duration_seconds Round trip time of requests to sky.\n");
+        out.append("# TYPE skybet_upstream_duration_seconds histogram\n");
+        for (int i = 0; i < UPSTREAM.length; i++) {
+            upstream[i].writePrometheus(out, "skybet_upstream_duration_seconds", "uri=\"" + UPSTREAM[i] + "\"");
+        }
+        out.append("# HELP skybet_backend_duration_seconds Round trip time of requests to each sky backend.\n");
+        out.append("# TYPE skybet_backend_duration_seconds histogram\n");
+        for (int i = 0; i < balancer.size(); i++) {
+            balancer.backend(i).latency().writePrometheus(out, "skybet_backend_duration_seconds",
+                    backendLabel(balancer.backend(i)));
+        }
+        out.append("# HELP skybet_conversion_duration_seconds Time taken to convert odds.\n");
+        out.append("# TYPE skybet_conversion_duration_seconds histogram\n");
+        conversion.writePrometheus(out, "skybet_conversion_duration_seconds", "");
+        out.append("# HELP skybet_encoding_duration_seconds Time taken to encode response bodies.\n");
+        out.append("# TYPE skybet_encoding_duration_seconds histogram\n");
+        encoding.writePrometheus(out, "skybet_encoding_duration_seconds", "");
+
+        out.append("# HELP skybet_responses_total Responses sent by status code.\n");
+        out.append("# TYPE skybet_responses_total counter\n");
+        for (int code = 0; code < responses.length(); code++) {
+            long count = responses.get(code);
+            if (count > 0) {
+                out.append("skybet_responses_total{code=\"").append(code).append("\"} ").append(count).append('\n');
+            }
+        }
+        counter(out, "skybet_upstream_errors_total", "Requests to sky that failed or got an unexpected status.",
+                upstreamErrors.get());
+        counter(out, "skybet_upstream_hedged_total", "Second requests sent to sky because the first was slow.",
+                hedged.get());
+        counter(out, "skybet_bets_rejected_total", "Bets rejected against the cached events without asking sky.",
+                betsRejected.get());
+        counter(out, "skybet_requests_shed_total", "Requests refused because the route was saturated.",
+                shed.get());
+        counter(out, "skybet_conversions_offloaded_total", "Large sky payloads converted off the event loop.",
+                offloaded.get());
+        counter(out, "skybet_event_loop_over_budget_total", "Handlers that held the event loop over budget.",
+                overBudget.get());
+        gauge(out, "skybet_upstream_circuit_open", "1 while the upstream circuit breaker is open.",
+                breaker.isOpen() ? 1 : 0);
+        counter(out, "skybet_upstream_requests_total", "Requests made to sky.", stats.requests());
+        counter(out, "skybet_upstream_failures_total", "Requests to sky that failed before a response.",
+                stats.failures());
+        gauge(out, "skybet_upstream_in_flight", "Requests to sky awaiting a response.", stats.inFlight());
+        gauge(out, "skybet_upstream_peak_in_flight", "Most requests to sky awaiting a response at once.",
+                stats.peakInFlight());
+        gauge(out, "skybet_upstream_max_pool_size", "Connection pool size of each upstream client.", maxPoolSize);
+        long now = System.currentTimeMillis();
+        out.append("# HELP skybet_backend_in_flight Requests to each sky backend awaiting a response.\n");
+        out.append("# TYPE skybet_backend_in_flight gauge\n");
+        for (int i = 0; i < balancer.size(); i++) {
+            backendSample(out, "skybet_backend_in_flight", balancer.backend(i), balancer.backend(i).outstanding());
+        }
+        out.append("# HELP skybet_backend_requests_total Requests made to each sky backend.\n");
+        out.append("# TYPE skybet_backend_requests_total counter\n");
+        for (int i = 0; i < balancer.size(); i++) {
+            backendSample(out, "skybet_backend_requests_total", balancer.backend(i), balancer.backend(i).requests());
+        }
+        out.append("# HELP skybet_backend_failures_total Requests to each sky backend that failed or got a 5xx.\n");
+        out.append("# TYPE skybet_backend_failures_total counter\n");
+        for (int i = 0; i < balancer.size(); i++) {
+            backendSample(out, "skybet_backend_failures_total", balancer.backend(i), balancer.backend(i).failures());
+        }
+        out.append("# HELP skybet_backend_ejected 1 while the sky backend is ejected.\n");
+        out.append("# TYPE skybet_backend_ejected gauge\n");
+        for (int i = 0; i < balancer.size(); i++) {
+            backendSample(out, "skybet_backend_ejected", balancer.backend(i),
+                    balancer.backend(i).ejected(now) ? 1 : 0);
+        }
+        out.append("# HELP skybet_backend_ejections_total Times each sky backend has been ejected.\n");
+        out.append("# TYPE skybet_backend_ejections_total counter\n");
+        for (int i = 0; i < balancer.size(); i++) {
+            backendSample(out, "skybet_backend_ejections_total", balancer.backend(i),
+                    balancer.backend(i).ejections());
+        }
+        counter(out, "skybet_odds_ladder_hits_total", "Odds conversions served from the odds ladder.",
+                OddsLadder.hits());
+        counter(out, "skybet_odds_ladder_misses_total", "Odds conversions not on the odds ladder.",
+                OddsLadder.misses());
+        return out.toString();
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void backendSample(StringBuilder out, String name, UpstreamBackend backend, long value) {
+        out.append(name).append('{').append(backendLabel(backend)).append("} ").append(value).append('\n');
+    }
+
+    private static String backendLabel(UpstreamBackend backend) {
+        return "backend=\"" + backend.name() + "\"";
+    }
+
+    private static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+}
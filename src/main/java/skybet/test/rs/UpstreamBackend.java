@@ -0,0 +1,123 @@
+package skybet.test.rs;
+
+import io.vertx.core.shareddata.Shareable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import skybet.test.utils.LatencyHistogram;
+
+/**
+ * This class tracks one upstream sky api backend: the requests outstanding
+ * against it, their latency and whether it has been ejected.
+ *
+ * A backend that fails "ejectFailures" requests in a row, by not answering,
+ * timing out or answering with a 5xx status, is ejected for "ejectTime"
+ * milliseconds. While ejected the UpstreamBalancer sends it no requests
+ * unless every backend is ejected. The first request after the ejection
+ * ends acts as a trial, a single failure ejects the backend again.
+ *
+ * The counters are atomic and the class is Shareable so the verticle
+ * instances share one view of each backend through the vertx LocalMap.
+ *
+ * @author chrishovey
+ */
+public class UpstreamBackend implements Shareable {
+
+    private final String host;
+    private final int port;
+    private final int ejectFailures;
+    private final long ejectTime;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong ejections = new AtomicLong();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private volatile long ejectedUntil;
+
+    /**
+     *
+     * @param host the backend host
+     * @param port the backend port
+     * @param ejectFailures the failures in a row that eject the backend
+     * @param ejectTime time in milliseconds an ejected backend is left out
+     */
+    public UpstreamBackend(String host, int port, int ejectFailures, long ejectTime) {
+        this.host = host;
+        this.port = port;
+        this.ejectFailures = ejectFailures;
+        this.ejectTime = ejectTime;
+    }
+
+    public String host() {
+        return host;
+    }
+
+    public int port() {
+        return port;
+    }
+
+    /**
+     *
+     * @return host:port of the backend
+     */
+    public String name() {
+        return host + ":" + port;
+    }
+
+    void started() {
+        requests.incrementAndGet();
+        outstanding.incrementAndGet();
+    }
+
+    void succeeded(long startNanos) {
+        outstanding.decrementAndGet();
+        latency.recordSince(startNanos);
+        consecutiveFailures.set(0);
+    }
+
+    void failed(long startNanos) {
+        outstanding.decrementAndGet();
+        latency.recordSince(startNanos);
+        failures.incrementAndGet();
+        if (consecutiveFailures.incrementAndGet() >= ejectFailures) {
+            // leave one failure behind so a failed trial ejects it again
+            consecutiveFailures.set(ejectFailures - 1);
+            ejectedUntil = System.currentTimeMillis() + ejectTime;
+            ejections.incrementAndGet();
+        }
+    }
+
+    /**
+     *
+     * @param now the current time in milliseconds
+     * @return true while the backend is ejected
+     */
+    public boolean ejected(long now) {
+        return now < ejectedUntil;
+    }
+
+    public int outstanding() {
+        return outstanding.get();
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    public long failures() {
+        return failures.get();
+    }
+
+    public long ejections() {
+        return ejections.get();
+    }
+
+    /**
+     *
+     * @return the histogram of the round trip time of requests to the backend
+     */
+    public LatencyHistogram latency() {
+        return latency;
+    }
+}
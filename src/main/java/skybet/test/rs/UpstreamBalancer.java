@@ -0,0 +1,133 @@
+package skybet.test.rs;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class spreads requests over the upstream sky api backends.
+ *
+ * Each request goes to the less loaded of two backends picked at random
+ * (power of two choices), measured by the requests outstanding against them
+ * from every verticle instance. This sends requests away from a slow
+ * backend, whose requests pile up, without the herding that always picking
+ * the least loaded backend causes. Ejected backends are left out, see
+ * UpstreamBackend, unless every backend is ejected in which case all of them
+ * are used rather than failing every request.
+ *
+ * The backends are read from the "backends" array of the upstream config,
+ * or from its "host" and "port" if there is no array:
+ * <pre>
+ * {
+ *   "backends" : [
+ *     { "host" : "sky-1", "port" : 80 },
+ *     { "host" : "sky-2", "port" : 80 }
+ *   ],
+ *   "ejectFailures" : 5,
+ *   "ejectTime" : 10000
+ * }
+ * </pre>
+ *
+ * @author chrishovey
+ */
+public class UpstreamBalancer implements Shareable {
+
+    public static final int DEFAULT_EJECT_FAILURES = 5;
+    public static final long DEFAULT_EJECT_TIME = 10000;
+
+    private final UpstreamBackend[] backends;
+
+    /**
+     *
+     * @param config the upstream configuration, may be empty to use the
+     * default sky host
+     */
+    public UpstreamBalancer(JsonObject config) {
+        int ejectFailures = config.getInteger("ejectFailures", DEFAULT_EJECT_FAILURES);
+        long ejectTime = config.getLong("ejectTime", DEFAULT_EJECT_TIME);
+        JsonArray list = config.getJsonArray("backends");
+        if (list == null || list.isEmpty()) {
+            list = new JsonArray().add(config);
+        }
+        backends = new UpstreamBackend[list.size()];
+        for (int i = 0; i < backends.length; i++) {
+            JsonObject backend = list.getJsonObject(i);
+            backends[i] = new UpstreamBackend(backend.getString("host", UpstreamClient.DEFAULT_HOST),
+                    backend.getInteger("port", UpstreamClient.DEFAULT_PORT), ejectFailures, ejectTime);
+        }
+    }
+
+    /**
+     *
+     * @return the number of backends
+     */
+    public int size() {
+        return backends.length;
+    }
+
+    /**
+     *
+     * @param i the index of the backend
+     * @return the backend
+     */
+    public UpstreamBackend backend(int i) {
+        return backends[i];
+    }
+
+    /**
+     *
+     * This method picks the backend for a request.
+     *
+     * @param exclude the index of a backend to avoid if there is another to
+     * use, such as the backend a hedged request was first sent to, or -1
+     * @return the index of the backend to send the request to
+     */
+    public int choose(int exclude) {
+        if (backends.length == 1) {
+            return 0;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long now = System.currentTimeMillis();
+        int[] picked = pick(exclude, now, random);
+        if (picked == null) {
+            // every other backend is ejected, use them all rather than none
+            picked = pick(exclude, Long.MAX_VALUE, random);
+        }
+        int a = picked[0];
+        int b = picked[1];
+        if (b < 0) {
+            return a;
+        }
+        int difference = backends[a].outstanding() - backends[b].outstanding();
+        return difference < 0 || (difference == 0 && random.nextBoolean()) ? a : b;
+    }
+
+    // picks two backends at random from those that are not excluded or
+    // ejected, reading each backend once so a concurrent ejection cannot
+    // change the candidates part way through, b is -1 if there is only one
+    private int[] pick(int exclude, long now, ThreadLocalRandom random) {
+        int a = -1;
+        int b = -1;
+        int seen = 0;
+        for (int i = 0; i < backends.length; i++) {
+            if (i == exclude || backends[i].ejected(now)) {
+                continue;
+            }
+            seen++;
+            if (seen == 1) {
+                a = i;
+            } else if (seen == 2) {
+                b = i;
+            } else {
+                int r = random.nextInt(seen);
+                if (r == 0) {
+                    a = i;
+                } else if (r == 1) {
+                    b = i;
+                }
+            }
+        }
+        return seen == 0 ? null : new int[]{a, b};
+    }
+}
@@ -0,0 +1,319 @@
+package skybet.test.rs;
+
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This class wraps the long lived HttpClients a verticle uses to talk to the
+ * sky bet api, one for each upstream backend.
+ *
+ * Each client keeps a pool of keep-alive connections to its backend so that
+ * /available and /bets requests reuse open sockets rather than opening a new
+ * connection per request. Idle connections are closed after the configured
+ * idle timeout. The backend for each request is chosen by the
+ * UpstreamBalancer, and a hedged request goes to a different backend from the
+ * request it hedges when there is one.
+ *
+ * Every request has a deadline of "requestTimeout" milliseconds covering the
+ * whole exchange, including reading the response body. A request that misses
+ * it is failed with a TimeoutException. Vert.x 3.1 gives no way to close the
+ * connection of a request that missed its deadline without losing its pool
+ * slot for good, so a stalled connection holds its slot until the
+ * configured idle timeout closes it, and a warning is logged when the idle
+ * timeout is longer than the deadline. Requests are refused with a
+ * CircuitOpenException while the circuit breaker is open, see
+ * CircuitBreaker.
+ *
+ * The pools are configured from the "upstream" object of the verticle config,
+ * with either a single "host" and "port" or a list of "backends":
+ * <pre>
+ * {
+ *   "backends" : [
+ *     { "host" : "sky-1", "port" : 80 },
+ *     { "host" : "sky-2", "port" : 80 }
+ *   ],
+ *   "ejectFailures" : 5,
+ *   "ejectTime" : 10000,
+ *   "maxPoolSize" : 20,
+ *   "keepAlive" : true,
+ *   "pipelining" : false,
+ *   "idleTimeout" : 30,
+ *   "requestTimeout" : 5000,
+ *   "failureThreshold" : 5,
+ *   "resetTimeout" : 5000
+ * }
+ * </pre>
+ *
+ * @author chrishovey
+ */
+public class UpstreamClient {
+
+    public static final String DEFAULT_HOST = "skybettechtestapi.herokuapp.com";
+    public static final int DEFAULT_PORT = 80;
+    public static final int DEFAULT_MAX_POOL_SIZE = 20;
+    public static final int DEFAULT_IDLE_TIMEOUT = 30;
+    public static final long DEFAULT_REQUEST_TIMEOUT = 5000;
+
+    private static final Logger LOG = LoggerFactory.getLogger(UpstreamClient.class);
+
+    private final Vertx vertx;
+    private final HttpClient[] clients;
+    private final int maxPoolSize;
+    private final long requestTimeout;
+    private final UpstreamStats stats;
+    private final CircuitBreaker breaker;
+    private final UpstreamBalancer balancer;
+
+    /**
+     * This interface is called with an upstream response once its whole body
+     * has been read.
+     */
+    @FunctionalInterface
+    public interface ResponseHandler {
+
+        void handle(HttpClientResponse response, Buffer body);
+    }
+
+    /**
+     *
+     * @param vertx the vertx instance the client is bound to
+     * @param config the upstream configuration, may be empty to use defaults
+     * @param stats the counters to record requests against, may be shared
+     * with other clients
+     * @param breaker the circuit breaker guarding the upstream host, may be
+     * shared with other clients
+     * @param balancer chooses the backend for each request, may be shared
+     * with other clients
+     */
+    public UpstreamClient(Vertx vertx, JsonObject config, UpstreamStats stats, CircuitBreaker breaker,
+            UpstreamBalancer balancer) {
+        this.vertx = vertx;
+        this.stats = stats;
+        this.breaker = breaker;
+        this.balancer = balancer;
+        this.maxPoolSize = config.getInteger("maxPoolSize", DEFAULT_MAX_POOL_SIZE);
+        this.requestTimeout = config.getLong("requestTimeout", DEFAULT_REQUEST_TIMEOUT);
+        int idleTimeout = config.getInteger("idleTimeout", DEFAULT_IDLE_TIMEOUT);
+        if (idleTimeout <= 0 || idleTimeout * 1000L > requestTimeout) {
+            LOG.warn(idleTimeout <= 0
+                    ? "upstream idleTimeout is off, a stalled request holds its pooled connection for good"
+                    : "upstream idleTimeout of " + idleTimeout + "s is longer than the requestTimeout of "
+                    + requestTimeout + "ms, a stalled request holds its pooled connection until it closes");
+        }
+        this.clients = new HttpClient[balancer.size()];
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = vertx.createHttpClient(new HttpClientOptions()
+                    .setDefaultHost(balancer.backend(i).host())
+                    .setDefaultPort(balancer.backend(i).port())
+                    .setMaxPoolSize(maxPoolSize)
+                    .setKeepAlive(config.getBoolean("keepAlive", true))
+                    .setPipelining(config.getBoolean("pipelining", false))
+                    .setIdleTimeout(idleTimeout));
+        }
+    }
+
+    /**
+     *
+     * This method sends a GET request to the upstream host.
+     *
+     * @param uri the request uri
+     * @param responseHandler called with the upstream response and its body
+     * @param exceptionHandler called if the request fails, times out or is
+     * refused by the circuit breaker
+     */
+    public void get(String uri, ResponseHandler responseHandler, Handler<Throwable> exceptionHandler) {
+        send(HttpMethod.GET, uri, null, null, responseHandler, exceptionHandler);
+    }
+
+    /**
+     *
+     * This method sends a GET request with extra headers, such as the
+     * conditional request headers, to the upstream host.
+     *
+     * @param uri the request uri
+     * @param headers headers to add to the request
+     * @param responseHandler called with the upstream response and its body
+     * @param exceptionHandler called if the request fails, times out or is
+     * refused by the circuit breaker
+     */
+    public void get(String uri, MultiMap headers, ResponseHandler responseHandler,
+            Handler<Throwable> exceptionHandler) {
+        send(HttpMethod.GET, uri, headers, null, responseHandler, exceptionHandler);
+    }
+
+    /**
+     *
+     * This method sends a hedged GET request to the upstream host. If no
+     * response has arrived after the hedge delay a second identical request
+     * is sent, and whichever response arrives first is passed to the handler.
+     * It must only be used for idempotent requests. The exception handler is
+     * only called once every request sent has failed.
+     *
+     * @param uri the request uri
+     * @param headers headers to add to the request
+     * @param hedgeDelay time in milliseconds to wait before sending the second
+     * request, or 0 to send a single request
+     * @param hedged called when the second request is sent
+     * @param responseHandler called with the first upstream response and its
+     * body
+     * @param exceptionHandler called if the requests fail, time out or are
+     * refused by the circuit breaker
+     */
+    public void getHedged(String uri, MultiMap headers, long hedgeDelay, Runnable hedged,
+            ResponseHandler responseHandler, Handler<Throwable> exceptionHandler) {
+        if (hedgeDelay <= 0) {
+            get(uri, headers, responseHandler, exceptionHandler);
+            return;
+        }
+        // all the handlers run on the caller's event loop, so plain arrays
+        // are enough to share the state between the two requests
+        boolean[] answered = {false};
+        int[] outstanding = {1};
+        long[] timer = {-1};
+        int[] backend = {-1};
+        ResponseHandler first = (r, body) -> {
+            if (!answered[0]) {
+                answered[0] = true;
+                vertx.cancelTimer(timer[0]);
+                responseHandler.handle(r, body);
+            }
+        };
+        Handler<Throwable> failed = t -> {
+            outstanding[0]--;
+            if (!answered[0] && outstanding[0] == 0) {
+                answered[0] = true;
+                vertx.cancelTimer(timer[0]);
+                exceptionHandler.handle(t);
+            }
+        };
+        timer[0] = vertx.setTimer(hedgeDelay, id -> {
+            if (answered[0]) {
+                return;
+            }
+            CircuitBreaker.Permit permit = breaker.allowRequest();
+            if (permit.allowed()) {
+                outstanding[0]++;
+                hedged.run();
+                dispatch(HttpMethod.GET, uri, headers, null, backend[0], permit, first, failed);
+            }
+        });
+        backend[0] = send(HttpMethod.GET, uri, headers, null, first, failed);
+    }
+
+    /**
+     *
+     * This method sends a POST request with a json body to the upstream host.
+     *
+     * @param uri the request uri
+     * @param body the json request body
+     * @param responseHandler called with the upstream response and its body
+     * @param exceptionHandler called if the request fails, times out or is
+     * refused by the circuit breaker
+     */
+    public void post(String uri, Buffer body, ResponseHandler responseHandler,
+            Handler<Throwable> exceptionHandler) {
+        send(HttpMethod.POST, uri, null, body, responseHandler, exceptionHandler);
+    }
+
+    // returns the index of the backend the request was sent to, or -1 if the
+    // circuit breaker refused it
+    private int send(HttpMethod method, String uri, MultiMap headers, Buffer body,
+            ResponseHandler responseHandler, Handler<Throwable> exceptionHandler) {
+        CircuitBreaker.Permit permit = breaker.allowRequest();
+        if (!permit.allowed()) {
+            exceptionHandler.handle(new CircuitOpenException());
+            return -1;
+        }
+        return dispatch(method, uri, headers, body, -1, permit, responseHandler, exceptionHandler);
+    }
+
+    // sends a request the circuit breaker has already allowed with permit to
+    // a backend other than exclude if there is one, returning the backend's
+    // index
+    private int dispatch(HttpMethod method, String uri, MultiMap headers, Buffer body, int exclude,
+            CircuitBreaker.Permit permit, ResponseHandler responseHandler, Handler<Throwable> exceptionHandler) {
+        int index = balancer.choose(exclude);
+        UpstreamBackend backend = balancer.backend(index);
+        long startNanos = System.nanoTime();
+        stats.requestStarted();
+        backend.started();
+        // the response, an exception and the deadline can all fire for the
+        // same request, only the first one counts
+        boolean[] done = {false};
+        long[] deadline = {-1};
+        Handler<Throwable> failed = t -> {
+            if (!done[0]) {
+                done[0] = true;
+                vertx.cancelTimer(deadline[0]);
+                stats.requestFinished();
+                stats.requestFailed();
+                breaker.failure(permit);
+                backend.failed(startNanos);
+                exceptionHandler.handle(t);
+            }
+        };
+        HttpClientRequest request = clients[index].request(method, uri, r -> {
+            r.exceptionHandler(failed);
+            r.bodyHandler(buffer -> {
+                if (!done[0]) {
+                    done[0] = true;
+                    vertx.cancelTimer(deadline[0]);
+                    stats.requestFinished();
+                    if (r.statusCode() >= 500) {
+                        breaker.failure(permit);
+                        backend.failed(startNanos);
+                    } else {
+                        breaker.success();
+                        backend.succeeded(startNanos);
+                    }
+                    responseHandler.handle(r, buffer);
+                }
+            });
+        }).exceptionHandler(failed);
+        deadline[0] = vertx.setTimer(requestTimeout, id -> failed.handle(
+                new TimeoutException(method + " " + uri + " exceeded " + requestTimeout + "ms")));
+        if (headers != null) {
+            request.headers().addAll(headers);
+        }
+        if (body == null) {
+            request.end();
+        } else {
+            request.putHeader("content-type", "application/json; charset=utf-8")
+                    .end(body);
+        }
+        return index;
+    }
+
+    /**
+     *
+     * @return a json object describing the pool size and usage of the
+     * upstream clients
+     */
+    public JsonObject stats() {
+        return stats.toJson(maxPoolSize);
+    }
+
+    public int maxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * This method closes the clients and all pooled connections.
+     */
+    public void close() {
+        for (HttpClient client : clients) {
+            client.close();
+        }
+    }
+}
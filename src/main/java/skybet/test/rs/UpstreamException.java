@@ -0,0 +1,36 @@
+package skybet.test.rs;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * This exception is used to fail a request to the sky bet api that returned
+ * an unexpected status. It keeps the status and body so they can be passed
+ * back to the client.
+ *
+ * @author chrishovey
+ */
+public class UpstreamException extends RuntimeException {
+
+    private final int statusCode;
+    private final String statusMessage;
+    private final Buffer body;
+
+    public UpstreamException(int statusCode, String statusMessage, Buffer body) {
+        super(statusCode + " " + statusMessage, null, false, false);
+        this.statusCode = statusCode;
+        this.statusMessage = statusMessage;
+        this.body = body;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getStatusMessage() {
+        return statusMessage;
+    }
+
+    public Buffer getBody() {
+        return body;
+    }
+}
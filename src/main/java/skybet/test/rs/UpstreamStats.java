@@ -0,0 +1,64 @@
+package skybet.test.rs;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class counts the requests made to the sky bet api. One instance is
+ * shared between all the verticle instances through a vertx LocalMap, so the
+ * numbers cover every upstream client in the process.
+ *
+ * @author chrishovey
+ */
+public class UpstreamStats implements Shareable {
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    void requestStarted() {
+        requests.incrementAndGet();
+        peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+    }
+
+    void requestFinished() {
+        inFlight.decrementAndGet();
+    }
+
+    void requestFailed() {
+        failures.incrementAndGet();
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    public long failures() {
+        return failures.get();
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public int peakInFlight() {
+        return peakInFlight.get();
+    }
+
+    /**
+     *
+     * @param maxPoolSize the connection pool size of each upstream client
+     * @return a json object describing the pool size and usage
+     */
+    public JsonObject toJson(int maxPoolSize) {
+        return new JsonObject()
+                .put("maxPoolSize", maxPoolSize)
+                .put("inFlight", inFlight())
+                .put("peakInFlight", peakInFlight())
+                .put("requests", requests())
+                .put("failures", failures());
+    }
+}
@@ -0,0 +1,162 @@
+package skybet.test.utils;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.Shareable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class limits the number of requests handled at once, holding any
+ * more in a bounded queue until a running request is released.
+ *
+ * A request arriving while the queue is full is refused straight away, so
+ * under overload the caller can shed it cheaply rather than let every request
+ * slow down. A queued request can be cancelled, for example once its
+ * deadline has passed, which takes it out of the queue so the queue never
+ * holds more than the maximum however many requests are cancelled.
+ *
+ * The limiter is lock free and Shareable so one instance can be put in a
+ * vertx LocalMap and used by verticle instances on different event loops.
+ * Queued requests are admitted on their own context.
+ *
+ * @author chrishovey
+ */
+public class AdmissionLimiter implements Shareable {
+
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Queue<Ticket> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     *
+     * @param maxInFlight the most requests admitted at once
+     * @param maxQueued the most requests waiting to be admitted
+     */
+    public AdmissionLimiter(int maxInFlight, int maxQueued) {
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     *
+     * This method admits a request now if there is a free slot, otherwise
+     * queues it. Every admitted request must be released once it has been
+     * handled.
+     *
+     * @param admitted called once the request is admitted, straight away if
+     * there is a free slot
+     * @return a ticket that can cancel the request while it is queued, or
+     * null if the queue is full and the request was refused
+     */
+    public Ticket admit(Handler<Void> admitted) {
+        Ticket ticket = new Ticket(Vertx.currentContext(), admitted);
+        for (int current = inFlight.get(); current < maxInFlight; current = inFlight.get()) {
+            if (inFlight.compareAndSet(current, current + 1)) {
+                ticket.state.set(true);
+                admitted.handle(null);
+                return ticket;
+            }
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            return null;
+        }
+        queue.add(ticket);
+        // a slot may have been released before the ticket was queued
+        drain();
+        return ticket;
+    }
+
+    /**
+     * This method releases the slot of an admitted request, admitting the
+     * next queued request if there is one.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public int queued() {
+        return queued.get();
+    }
+
+    /**
+     *
+     * @return the number of tickets in the queue, which unlike queued() is
+     * counted by walking it
+     */
+    int waiting() {
+        return queue.size();
+    }
+
+    private void drain() {
+        while (!queue.isEmpty()) {
+            int current = inFlight.get();
+            if (current >= maxInFlight) {
+                return;
+            }
+            if (!inFlight.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            Ticket next = queue.poll();
+            if (next == null || !next.state.compareAndSet(false, true)) {
+                // nothing left to admit or the ticket was cancelled, give the
+                // slot back
+                inFlight.decrementAndGet();
+                continue;
+            }
+            queued.decrementAndGet();
+            next.dispatch();
+        }
+    }
+
+    /**
+     * This class is a request waiting for, or holding, a slot.
+     */
+    public class Ticket {
+
+        private final Context context;
+        private final Handler<Void> admitted;
+        // set once the ticket is admitted or cancelled, whichever is first
+        private final AtomicBoolean state = new AtomicBoolean();
+
+        private Ticket(Context context, Handler<Void> admitted) {
+            this.context = context;
+            this.admitted = admitted;
+        }
+
+        /**
+         *
+         * @return true if the request was still queued and will not be
+         * admitted, false if it has already been admitted
+         */
+        public boolean cancel() {
+            if (state.compareAndSet(false, true)) {
+                // the ticket holds on to the request, so it is not left for
+                // drain to skip, which may not happen until a slot frees up
+                queue.remove(this);
+                queued.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        private void dispatch() {
+            if (context == null || context == Vertx.currentContext()) {
+                admitted.handle(null);
+            } else {
+                context.runOnContext(admitted);
+            }
+        }
+    }
+}
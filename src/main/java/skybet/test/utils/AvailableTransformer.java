@@ -0,0 +1,341 @@
+package skybet.test.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ *
+ * This class converts the sky /available payload, a json array of events with
+ * fractional odds, into the json array of events with decimal odds this
+ * service returns.
+ * <p>
+ * The payload is converted in a single pass with the Jackson streaming api.
+ * The bet_id, event, name and odds of each event are read into locals and
+ * the event is written out with writeEvent, in the DecimalEvent field order
+ * whatever order sky sent them in. No intermediate FractionalEvent or
+ * DecimalEvent objects are created and the output is written straight into
+ * the returned Buffer. Any other fields are dropped so the output matches
+ * the DecimalEvent format. writeEvent is also how AvailableSnapshot writes
+ * its other representations of the events, so they all agree.
+ * <p>
+ * An EventListener can be passed in to be told about each converted event as
+ * it is written, for example to index the events without parsing the output
+ * again.
+ * <p>
+ * A large payload can be converted in parallel with toDecimalParallel. The
+ * array is split into chunks of whole events by a scan of the raw bytes, each
+ * chunk is converted as above on the common fork join pool and the outputs
+ * are joined back into one array.
+ *
+ * @author chrishovey
+ */
+public class AvailableTransformer {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final byte[] OPEN = "[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CLOSE = "]".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * The odds an EventListener is told about for an event whose odds were
+     * null, or had a 0 denominator. It is not a packed rational, as its
+     * denominator is 0.
+     */
+    public static final long NO_ODDS = 0;
+
+    /**
+     * The bet_id an EventListener is told about for an event whose bet_id was
+     * missing or not a whole number.
+     */
+    public static final long NO_BET_ID = Long.MIN_VALUE;
+
+    /**
+     * This interface is told about each event as it is converted.
+     */
+    public interface EventListener {
+
+        /**
+         *
+         * @param betId the bet_id of the event, or NO_BET_ID
+         * @param event the event name, may be null
+         * @param name the selection name, may be null
+         * @param odds the fractional odds sky sent packed into a long, see
+         * PackedRational, or NO_ODDS
+         */
+        void event(long betId, String event, String name, long odds);
+    }
+
+    /**
+     *
+     * @param fractional buffer holding a json array of fractional events
+     * @param pretty true to pretty print the output
+     * @return buffer holding a json array of decimal events
+     * @throws DecodeException if the payload is not an array of events
+     */
+    public static Buffer toDecimal(Buffer fractional, boolean pretty) {
+        return toDecimal(fractional, pretty, null);
+    }
+
+    /**
+     *
+     * @param fractional buffer holding a json array of fractional events
+     * @param pretty true to pretty print the output
+     * @param listener told about each event as it is converted, may be null
+     * @return buffer holding a json array of decimal events
+     * @throws DecodeException if the payload is not an array of events
+     */
+    public static Buffer toDecimal(Buffer fractional, boolean pretty, EventListener listener) {
+        ByteBuf out = Unpooled.buffer(fractional.length());
+        try (JsonParser p = FACTORY.createParser(new ByteBufInputStream(fractional.getByteBuf()));
+                JsonGenerator g = FACTORY.createGenerator(new ByteBufOutputStream(out))) {
+            if (pretty) {
+                g.useDefaultPrettyPrinter();
+            }
+            expect(p.nextToken(), JsonToken.START_ARRAY);
+            g.writeStartArray();
+            while (p.nextToken() == JsonToken.START_OBJECT) {
+                writeEvent(p, g, listener);
+            }
+            expect(p.getCurrentToken(), JsonToken.END_ARRAY);
+            g.writeEndArray();
+        } catch (IOException | IllegalArgumentException e) {
+            throw new DecodeException("Failed to decode available events: " + e.getMessage());
+        }
+        return Buffer.buffer(out);
+    }
+
+    /**
+     *
+     * This method converts the payload in up to one chunk per listener, in
+     * parallel on the common fork join pool. It blocks until every chunk has
+     * been converted so it must not be called on an event loop.
+     *
+     * @param fractional buffer holding a json array of fractional events
+     * @param listeners the listener for each chunk, told about the events of
+     * that chunk in order, so reading the listeners in order gives every event
+     * in payload order
+     * @return buffer holding a single line json array of decimal events
+     * @throws DecodeException if the payload is not an array of events
+     */
+    public static Buffer toDecimalParallel(Buffer fractional, EventListener[] listeners) {
+        int[] bounds = split(fractional, listeners.length);
+        if (bounds == null || bounds.length <= 2) {
+            return toDecimal(fractional, false, listeners.length == 0 ? null : listeners[0]);
+        }
+        Buffer[] chunks = new Buffer[bounds.length - 1];
+        IntStream.range(0, chunks.length).parallel().forEach(i -> {
+            // wrap the chunk in brackets so it converts as an array of its own,
+            // the slices share the payload's bytes rather than copying them
+            ByteBuf chunk = Unpooled.wrappedBuffer(Unpooled.wrappedBuffer(OPEN),
+                    fractional.getByteBuf().slice(bounds[i], bounds[i + 1] - bounds[i] - 1),
+                    Unpooled.wrappedBuffer(CLOSE));
+            chunks[i] = toDecimal(Buffer.buffer(chunk), false, listeners[i]);
+        });
+        int length = 0;
+        for (Buffer chunk : chunks) {
+            // only a stray comma in the payload gives an empty chunk
+            if (chunk.length() <= 2) {
+                throw new DecodeException("Failed to decode available events: missing array element");
+            }
+            length += chunk.length();
+        }
+        ByteBuf out = Unpooled.buffer(length);
+        out.writeBytes(OPEN);
+        for (int i = 0; i < chunks.length; i++) {
+            if (i > 0) {
+                out.writeByte(',');
+            }
+            // copy the events without the chunk's own brackets
+            out.writeBytes(chunks[i].getByteBuf(), 1, chunks[i].length() - 2);
+        }
+        out.writeBytes(CLOSE);
+        return Buffer.buffer(out);
+    }
+
+    /**
+     *
+     * This method finds where to split a json array into chunks of whole
+     * elements of roughly equal size, by tracking the nesting depth and
+     * strings in a single scan of the bytes.
+     *
+     * @param json buffer holding a json array
+     * @param chunks the number of chunks wanted
+     * @return the offsets the chunks start at followed by the offset one past
+     * the end of the last chunk, so chunk i runs from bounds[i] to
+     * bounds[i + 1] - 1 and the byte at bounds[i + 1] - 1 is the comma or the
+     * closing bracket that ends it, or null if the buffer is not a json array
+     * that can be split
+     */
+    static int[] split(Buffer json, int chunks) {
+        int length = json.length();
+        int start = skipWhitespace(json, 0, length);
+        if (start == length || json.getByte(start) != '[') {
+            return null;
+        }
+        int[] bounds = new int[Math.max(1, chunks) + 1];
+        bounds[0] = start + 1;
+        int count = 1;
+        long target = next(start, length, 1, bounds.length - 1);
+        int depth = 0;
+        boolean string = false;
+        for (int i = start; i < length; i++) {
+            byte c = json.getByte(i);
+            if (string) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    string = false;
+                }
+            } else if (c == '"') {
+                string = true;
+            } else if (c == '[' || c == '{') {
+                depth++;
+            } else if (c == ']' || c == '}') {
+                if (--depth == 0) {
+                    if (skipWhitespace(json, i + 1, length) != length) {
+                        return null;
+                    }
+                    bounds[count++] = i + 1;
+                    return Arrays.copyOf(bounds, count);
+                }
+            } else if (c == ',' && depth == 1 && i >= target && count < bounds.length - 1) {
+                bounds[count++] = i + 1;
+                target = next(start, length, count, bounds.length - 1);
+            }
+        }
+        return null;
+    }
+
+    // the offset the k'th of n equal chunks of the bytes from start should
+    // end at
+    private static long next(int start, int length, int k, int n) {
+        return start + (long) (length - start) * k / n;
+    }
+
+    private static int skipWhitespace(Buffer json, int from, int to) {
+        while (from < to) {
+            byte c = json.getByte(from);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                break;
+            }
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     *
+     * This method writes an event in the DecimalEvent format, with a null
+     * bet_id for NO_BET_ID and null odds for NO_ODDS.
+     *
+     * @param g the generator to write the event with
+     * @param betId the bet_id of the event, or NO_BET_ID
+     * @param event the event name, may be null
+     * @param name the selection name, may be null
+     * @param odds the fractional odds packed into a long, see PackedRational,
+     * or NO_ODDS
+     * @throws IOException if the generator fails
+     */
+    public static void writeEvent(JsonGenerator g, long betId, String event, String name, long odds)
+            throws IOException {
+        g.writeStartObject();
+        if (betId == NO_BET_ID) {
+            g.writeNullField("bet_id");
+        } else {
+            g.writeNumberField("bet_id", betId);
+        }
+        g.writeStringField("event", event);
+        g.writeStringField("name", name);
+        if (odds == NO_ODDS) {
+            g.writeNullField("odds");
+        } else {
+            g.writeNumberField("odds", OddsConversionUtils.convertFractionToDecimalBet(
+                    PackedRational.numerator(odds), PackedRational.denominator(odds)));
+        }
+        g.writeEndObject();
+    }
+
+    private static void writeEvent(JsonParser p, JsonGenerator g, EventListener listener) throws IOException {
+        long betId = NO_BET_ID;
+        String event = null;
+        String name = null;
+        long odds = NO_ODDS;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case "bet_id":
+                    betId = value == JsonToken.VALUE_NUMBER_INT ? p.getLongValue() : NO_BET_ID;
+                    break;
+                case "event":
+                    event = value == JsonToken.VALUE_STRING ? p.getText() : null;
+                    break;
+                case "name":
+                    name = value == JsonToken.VALUE_STRING ? p.getText() : null;
+                    break;
+                case "odds":
+                    odds = readOdds(p, value);
+                    break;
+                default:
+                    break;
+            }
+            p.skipChildren();
+        }
+        expect(p.getCurrentToken(), JsonToken.END_OBJECT);
+        writeEvent(g, betId, event, name, odds);
+        if (listener != null) {
+            listener.event(betId, event, name, odds);
+        }
+    }
+
+    // returns the fractional odds packed, so the price is kept exactly
+    // rather than as the rounded decimal
+    private static long readOdds(JsonParser p, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return NO_ODDS;
+        }
+        expect(value, JsonToken.START_OBJECT);
+        int numerator = 0;
+        int denominator = 0;
+        boolean hasNumerator = false;
+        boolean hasDenominator = false;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            if ("numerator".equals(field)) {
+                numerator = p.getIntValue();
+                hasNumerator = true;
+            } else if ("denominator".equals(field)) {
+                denominator = p.getIntValue();
+                hasDenominator = true;
+            } else {
+                p.skipChildren();
+            }
+        }
+        if (!hasNumerator || !hasDenominator) {
+            throw new IOException("odds must have a numerator and denominator");
+        }
+        try {
+            return PackedRational.of(numerator, denominator);
+        } catch (ArithmeticException ae) {
+            return NO_ODDS;
+        }
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("expected " + expected + " but was " + actual);
+        }
+    }
+}
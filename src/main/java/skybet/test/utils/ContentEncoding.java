@@ -0,0 +1,100 @@
+package skybet.test.utils;
+
+import io.vertx.core.buffer.Buffer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ *
+ * This enum holds the content codings a response body can be sent with, and
+ * picks one from an Accept-Encoding request header.
+ *
+ * @author chrishovey
+ */
+public enum ContentEncoding {
+
+    IDENTITY(null),
+    GZIP("gzip"),
+    DEFLATE("deflate");
+
+    private final String token;
+
+    private ContentEncoding(String token) {
+        this.token = token;
+    }
+
+    /**
+     *
+     * @return the Content-Encoding header value, or null for identity
+     */
+    public String token() {
+        return token;
+    }
+
+    /**
+     *
+     * This method picks the coding to send a response with. gzip is preferred
+     * over deflate when the client accepts both with the same quality.
+     *
+     * @param acceptEncoding the Accept-Encoding request header, may be null
+     * @return the coding with the highest quality the client accepts, or
+     * IDENTITY if it accepts neither gzip nor deflate
+     */
+    public static ContentEncoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return IDENTITY;
+        }
+        ContentEncoding best = IDENTITY;
+        double bestQuality = 0;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim().toLowerCase();
+            double quality = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException nfe) {
+                        quality = 0;
+                    }
+                }
+            }
+            ContentEncoding candidate;
+            if ("gzip".equals(coding) || "x-gzip".equals(coding) || "*".equals(coding)) {
+                candidate = GZIP;
+            } else if ("deflate".equals(coding)) {
+                candidate = DEFLATE;
+            } else {
+                continue;
+            }
+            if (quality > bestQuality || (quality == bestQuality && candidate == GZIP && quality > 0)) {
+                best = candidate;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    /**
+     *
+     * @param body the body to compress
+     * @return the body encoded with this coding
+     */
+    public Buffer encode(Buffer body) {
+        if (this == IDENTITY) {
+            return body;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, body.length() / 4));
+        try (OutputStream out = this == GZIP ? new GZIPOutputStream(bytes) : new DeflaterOutputStream(bytes)) {
+            out.write(body.getBytes());
+        } catch (IOException e) {
+            // cannot happen writing to memory
+            throw new IllegalStateException(e);
+        }
+        return Buffer.buffer(bytes.toByteArray());
+    }
+}
@@ -0,0 +1,222 @@
+package skybet.test.utils;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.Shareable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * This class runs an action at most once per idempotency key, so a request
+ * that is retried with the same key is answered with the result of the
+ * first attempt rather than being repeated.
+ *
+ * A retry that arrives while the first attempt is still running waits for
+ * it, one that arrives after it has completed is handed the cached result
+ * straight away. Successful results are always kept, failures only if the
+ * retain predicate accepts them, so a retry after a transient failure runs
+ * the action again.
+ *
+ * The cache is bounded: keys are forgotten once they are older than the
+ * time to live, or oldest first once there are more than the maximum size.
+ * A key whose first attempt is still running is never forgotten, as that
+ * would let a retry place the bet a second time, so if every key is in
+ * flight a new key is failed with an IdempotencyCacheFullException rather
+ * than run. Keys dropped after a transient failure count towards the maximum
+ * size until the eviction queue is next walked past them, so the queue stays
+ * bounded however many attempts fail.
+ *
+ * The cache is thread safe and Shareable so one instance can be put in a
+ * vertx LocalMap and used by verticle instances on different event loops.
+ * Waiters are called back on their own context.
+ *
+ * @author chrishovey
+ * @param <T> the type of the result, must be safe to share between threads
+ */
+public class IdempotencyCache<T> implements Shareable {
+
+    private final int maxSize;
+    private final long ttl;
+    private final Predicate<Throwable> retainFailure;
+    private final ConcurrentHashMap<String, Entry<T>> entries = new ConcurrentHashMap<>();
+    // entries in the order they were created, the oldest is evicted first
+    private final Queue<Entry<T>> order = new ConcurrentLinkedQueue<>();
+    // the length of order, which ConcurrentLinkedQueue cannot tell cheaply
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /**
+     *
+     * @param maxSize the most keys to remember
+     * @param ttl time in milliseconds a key is remembered for
+     * @param retainFailure returns true for failures that should be cached
+     * like a result, rather than letting a retry run the action again
+     */
+    public IdempotencyCache(int maxSize, long ttl, Predicate<Throwable> retainFailure) {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.retainFailure = retainFailure;
+    }
+
+    /**
+     *
+     * This method runs the action for the first request with a key, and
+     * passes its result to the handler of every request with that key.
+     *
+     * @param key the idempotency key
+     * @param request the request the key was sent with, a later request with
+     * the same key must be equal to it
+     * @param action called with the handler to complete with the result, if
+     * this is the first request with the key
+     * @param handler called with the result, failed with an
+     * IdempotencyConflictException if the key was first sent with a
+     * different request, or with an IdempotencyCacheFullException if every
+     * key in the cache is in flight
+     * @return true if the action was run, false if the result of an earlier
+     * request is being reused or the key could not be remembered
+     */
+    public boolean execute(String key, Object request, Handler<Handler<AsyncResult<T>>> action,
+            Handler<AsyncResult<T>> handler) {
+        long now = System.currentTimeMillis();
+        Entry<T> created = new Entry<>(key, request, now);
+        Entry<T> entry = entries.compute(key,
+                (k, e) -> e == null || (now - e.createdAt >= ttl && e.isDone()) ? created : e);
+        if (entry != created) {
+            if (!entry.request.equals(request)) {
+                handler.handle(Future.failedFuture(new IdempotencyConflictException(key)));
+            } else {
+                entry.join(new Waiter<>(Vertx.currentContext(), handler));
+            }
+            return false;
+        }
+        order.add(created);
+        queued.incrementAndGet();
+        evict(now);
+        created.join(new Waiter<>(Vertx.currentContext(), handler));
+        if (queued.get() > maxSize && order.remove(created)) {
+            queued.decrementAndGet();
+            entries.remove(key, created);
+            created.complete(Future.failedFuture(new IdempotencyCacheFullException(maxSize)));
+            return false;
+        }
+        try {
+            action.handle(ar -> complete(created, ar));
+        } catch (RuntimeException e) {
+            complete(created, Future.failedFuture(e));
+        }
+        return true;
+    }
+
+    /**
+     *
+     * @return the number of keys remembered
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     *
+     * @return the number of keys waiting to be evicted, including those
+     * dropped after a failure
+     */
+    int queued() {
+        return queued.get();
+    }
+
+    private void complete(Entry<T> entry, AsyncResult<T> ar) {
+        if (ar.failed() && !retainFailure.test(ar.cause())) {
+            entries.remove(entry.key, entry);
+        }
+        entry.complete(ar);
+    }
+
+    private void evict(long now) {
+        Iterator<Entry<T>> it = order.iterator();
+        while (it.hasNext()) {
+            Entry<T> oldest = it.next();
+            boolean dropped = entries.get(oldest.key) != oldest;
+            if (!dropped && now - oldest.createdAt < ttl && queued.get() <= maxSize) {
+                return;
+            }
+            // an entry still in flight is stepped over, not evicted
+            if ((dropped || oldest.isDone()) && order.remove(oldest)) {
+                queued.decrementAndGet();
+                entries.remove(oldest.key, oldest);
+            }
+        }
+    }
+
+    private static class Entry<T> {
+
+        private final String key;
+        private final Object request;
+        private final long createdAt;
+        private List<Waiter<T>> waiters = new ArrayList<>(1);
+        private AsyncResult<T> result;
+
+        Entry(String key, Object request, long createdAt) {
+            this.key = key;
+            this.request = request;
+            this.createdAt = createdAt;
+        }
+
+        synchronized boolean isDone() {
+            return result != null;
+        }
+
+        void join(Waiter<T> waiter) {
+            AsyncResult<T> ar;
+            synchronized (this) {
+                if (result == null) {
+                    waiters.add(waiter);
+                    return;
+                }
+                ar = result;
+            }
+            waiter.handle(ar);
+        }
+
+        void complete(AsyncResult<T> ar) {
+            List<Waiter<T>> completed;
+            synchronized (this) {
+                if (result != null) {
+                    return;
+                }
+                result = ar;
+                completed = waiters;
+                waiters = null;
+            }
+            for (Waiter<T> waiter : completed) {
+                waiter.handle(ar);
+            }
+        }
+    }
+
+    private static class Waiter<T> {
+
+        private final Context context;
+        private final Handler<AsyncResult<T>> handler;
+
+        Waiter(Context context, Handler<AsyncResult<T>> handler) {
+            this.context = context;
+            this.handler = handler;
+        }
+
+        void handle(AsyncResult<T> ar) {
+            if (context == null || context == Vertx.currentContext()) {
+                handler.handle(ar);
+            } else {
+                context.runOnContext(v -> handler.handle(ar));
+            }
+        }
+    }
+}
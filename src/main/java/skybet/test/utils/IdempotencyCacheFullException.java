@@ -0,0 +1,15 @@
+package skybet.test.utils;
+
+/**
+ * This exception is used to fail a request whose idempotency key could not
+ * be remembered because every key in the cache is still in flight, see
+ * IdempotencyCache.
+ *
+ * @author chrishovey
+ */
+public class IdempotencyCacheFullException extends RuntimeException {
+
+    public IdempotencyCacheFullException(int maxSize) {
+        super("all " + maxSize + " idempotency keys are in flight", null, false, false);
+    }
+}
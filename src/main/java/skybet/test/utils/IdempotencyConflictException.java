@@ -0,0 +1,14 @@
+package skybet.test.utils;
+
+/**
+ * This exception is used to fail a request whose idempotency key was first
+ * sent with a different request, see IdempotencyCache.
+ *
+ * @author chrishovey
+ */
+public class IdempotencyConflictException extends RuntimeException {
+
+    public IdempotencyConflictException(String key) {
+        super("idempotency key " + key + " was used for a different request", null, false, false);
+    }
+}
@@ -0,0 +1,192 @@
+package skybet.test.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *
+ * This class is a lock free latency histogram with fixed buckets.
+ * <p>
+ * The bucket bounds written out in the Prometheus text format follow a 1,
+ * 2.5, 5 series from 50 microseconds to 10 seconds. Those are too coarse to
+ * take a percentile from, so each latency is also counted in a log-linear
+ * bucket: every power of two is split into 16 equal sub-buckets, and a
+ * percentile is never more than 1/16 above the latency it stands for.
+ * Recording a latency finds its buckets with a binary search and a few bit
+ * operations and increments atomic counters, so it can be called from any
+ * thread and does not allocate.
+ *
+ * @author chrishovey
+ */
+public class LatencyHistogram {
+
+    // bucket upper bounds in nanoseconds
+    private static final long[] BOUNDS = {
+        50_000L, 100_000L, 250_000L, 500_000L,
+        1_000_000L, 2_500_000L, 5_000_000L,
+        10_000_000L, 25_000_000L, 50_000_000L,
+        100_000_000L, 250_000_000L, 500_000_000L,
+        1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L
+    };
+
+    private static final String[] LE = new String[BOUNDS.length];
+
+    static {
+        for (int i = 0; i < BOUNDS.length; i++) {
+            LE[i] = Double.toString(BOUNDS[i] / 1e9);
+        }
+    }
+
+    // log2 of the number of sub-buckets each power of two is split into
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    // the highest bit of the largest latency given a sub-bucket, ~17 seconds
+    private static final int MAX_BIT = 63 - Long.numberOfLeadingZeros(BOUNDS[BOUNDS.length - 1]);
+    private static final int FINE = (MAX_BIT - SUB_BITS + 2) * SUB;
+
+    // the last bucket counts everything above the largest bound
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+    // the log-linear sub-buckets, the last counts everything above them
+    private final AtomicLongArray fine = new AtomicLongArray(FINE + 1);
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos) {
+        int i = Arrays.binarySearch(BOUNDS, nanos);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        buckets.incrementAndGet(i);
+        fine.incrementAndGet(fineIndex(nanos));
+        sum.addAndGet(nanos);
+    }
+
+    // latencies below 2 * SUB nanoseconds have a sub-bucket each, above that
+    // the top SUB_BITS bits after the highest one pick the sub-bucket
+    static int fineIndex(long nanos) {
+        if (nanos < 2 * SUB) {
+            return (int) Math.max(nanos, 0);
+        }
+        int bit = 63 - Long.numberOfLeadingZeros(nanos);
+        if (bit > MAX_BIT) {
+            return FINE;
+        }
+        int shift = bit - SUB_BITS;
+        return (shift + 1) * SUB + (int) (nanos >> shift) - SUB;
+    }
+
+    // the largest latency counted in a sub-bucket
+    static long fineUpperBound(int index) {
+        if (index < 2 * SUB) {
+            return index;
+        }
+        int shift = index / SUB - 1;
+        return ((long) (SUB + index % SUB + 1) << shift) - 1;
+    }
+
+    /**
+     *
+     * @param startNanos the System.nanoTime() the timed operation started at
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     *
+     * @return the number of latencies recorded
+     */
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     *
+     * @param quantile the quantile wanted, between 0 and 1
+     * @return the upper bound in nanoseconds of the sub-bucket holding the
+     * quantile, Long.MAX_VALUE if it is above the largest sub-bucket or 0 if
+     * nothing has been recorded
+     */
+    public long percentile(double quantile) {
+        return percentile(quantile, this);
+    }
+
+    /**
+     *
+     * @param quantile the quantile wanted, between 0 and 1
+     * @param histograms the histograms to take the quantile of as if they
+     * were one
+     * @return the upper bound in nanoseconds of the sub-bucket holding the
+     * quantile, Long.MAX_VALUE if it is above the largest sub-bucket or 0 if
+     * nothing has been recorded
+     */
+    static long percentile(double quantile, LatencyHistogram... histograms) {
+        long count = 0;
+        for (LatencyHistogram histogram : histograms) {
+            count += histogram.count();
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * count);
+        long cumulative = 0;
+        for (int i = 0; i < FINE; i++) {
+            for (LatencyHistogram histogram : histograms) {
+                cumulative += histogram.fine.get(i);
+            }
+            if (cumulative >= rank) {
+                return fineUpperBound(i);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * This method empties the histogram. A latency recorded while it runs may
+     * be lost, so it is only used where an estimate will do, see
+     * WindowedHistogram.
+     */
+    void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        for (int i = 0; i < fine.length(); i++) {
+            fine.set(i, 0);
+        }
+        sum.set(0);
+    }
+
+    /**
+     *
+     * This method appends the histogram in the Prometheus text format, with
+     * the latencies in seconds.
+     *
+     * @param out the output to append to
+     * @param name the metric name
+     * @param labels the labels of the metric without braces, for example
+     * route="/bets", or an empty string
+     */
+    public void writePrometheus(StringBuilder out, String name, String labels) {
+        String separator = labels.isEmpty() ? "" : ",";
+        long cumulative = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            cumulative += buckets.get(i);
+            out.append(name).append("_bucket{").append(labels).append(separator)
+                    .append("le=\"").append(LE[i]).append("\"} ").append(cumulative).append('\n');
+        }
+        cumulative += buckets.get(BOUNDS.length);
+        out.append(name).append("_bucket{").append(labels).append(separator)
+                .append("le=\"+Inf\"} ").append(cumulative).append('\n');
+        String braces = labels.isEmpty() ? "" : "{" + labels + "}";
+        out.append(name).append("_sum").append(braces).append(' ').append(sum.get() / 1e9).append('\n');
+        out.append(name).append("_count").append(braces).append(' ').append(cumulative).append('\n');
+    }
+}
@@ -14,39 +14,116 @@ import skybet.test.pojo.FractionalOdds;
  */
 public class OddsConversionUtils {
 
+    // largest power of ten that still fits in an int denominator
+    private static final int MAX_DECIMALS = 9;
+    // a continued fraction of a double has fewer terms than this before its
+    // convergents overflow an int
+    private static final int MAX_TERMS = 64;
+
     /**
      *
-     * This method accepts the bet as a decimal format subtracts 1 for the stake
-     * calls the convertDecimalToFraction method and returns a fractional odds
-     * object.
+     * This method accepts the bet as a decimal format and returns a fractional
+     * odds object.
      *
      * @param odds this represents bet odds, 1 will be subtracted for the stake.
      * @return FractionalOdds pojo object.
+     * @throws IllegalArgumentException if the odds are null or cannot be
+     * represented as a fraction of two ints
      */
     public static FractionalOdds convertDecimalBetToFraction(Double odds) {
         if (odds == null) {
             throw new IllegalArgumentException();
         }
-        BigDecimal x = new BigDecimal(odds.toString()).subtract(new BigDecimal(1));
-        int[] numDen = convertDecimalToFraction(x);
+        long r = convertDecimalBetToPackedFraction(odds);
         return FractionalOdds.builder()
-                .numerator(numDen[0])
-                .denominator(numDen[1])
+                .numerator(PackedRational.numerator(r))
+                .denominator(PackedRational.denominator(r))
                 .build();
     }
 
     /**
      *
-     * @param x this represents the bet in a big decimal format
-     * @return an int array containing numerator and denominator representing
-     * the decimal bet as a fraction.
+     * This method accepts the bet as a decimal format and returns the
+     * fractional odds packed into a long, see PackedRational. Odds on the
+     * standard ladder are looked up in the OddsLadder. Anything else is
+     * scaled by the smallest power of ten that makes it a whole number, 1 is
+     * subtracted for the stake and the fraction reduced, all without
+     * allocating. Odds with more decimal places than an int denominator can
+     * hold, such as the 1.7142857142857144 that 5/7 is served as, fall back
+     * to the simplest fraction within 1 ulp of them, see
+     * convertDecimalToNearestFraction.
+     *
+     * @param odds this represents bet odds, 1 will be subtracted for the stake.
+     * @return the packed fractional odds
+     * @throws IllegalArgumentException if the odds cannot be represented as a
+     * fraction of two ints
+     */
+    public static long convertDecimalBetToPackedFraction(double odds) {
+        int i = OddsLadder.indexOf(odds);
+        if (i >= 0) {
+            return PackedRational.of(OddsLadder.numerator(i), OddsLadder.denominator(i));
+        }
+        try {
+            long scale = 1;
+            for (int k = 0; k <= MAX_DECIMALS; k++, scale *= 10) {
+                double scaled = odds * scale;
+                if (Double.isNaN(scaled) || Math.abs(scaled) >= (1L << 53)) {
+                    break;
+                }
+                long n = Math.round(scaled);
+                if ((double) n / scale == odds) {
+                    return PackedRational.of(n - scale, scale);
+                }
+            }
+            return convertDecimalToNearestFraction(odds);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Odds cannot be converted to a fraction: " + odds, e);
+        }
+    }
+
+    /**
+     *
+     * This method walks the convergents of the continued fraction of the odds
+     * less the stake, which are the best rational approximations of it, and
+     * returns the first whose decimal odds are within 1 ulp of the odds. It
+     * turns the decimal odds of any fraction of two ints back into that
+     * fraction.
+     *
+     * @param odds this represents bet odds, 1 will be subtracted for the stake.
+     * @return the packed fractional odds
+     * @throws ArithmeticException if no fraction of two ints is within 1 ulp
+     * of the odds
      */
-    private static int[] convertDecimalToFraction(BigDecimal x) {
-        BigDecimal den = BigDecimal.TEN.pow(getNumberOfDecimals(x)); // denominator
-        BigDecimal num = (den.multiply(x)); // numerator
-        Rational r = new Rational(num.intValue(), den.intValue());
-        int[] rf = {r.numerator(), r.denominator()};
-        return rf;
+    private static long convertDecimalToNearestFraction(double odds) {
+        double r = odds - 1;
+        // the two previous convergents p0/q0 and p1/q1
+        long p0 = 0;
+        long q0 = 1;
+        long p1 = 1;
+        long q1 = 0;
+        for (int k = 0; k < MAX_TERMS; k++) {
+            double a = Math.floor(r);
+            if (!(Math.abs(a) <= Integer.MAX_VALUE)) {
+                break;
+            }
+            long p = (long) a * p1 + p0;
+            long q = (long) a * q1 + q0;
+            if (p != (int) p || q != (int) q) {
+                break;
+            }
+            if (Math.abs(convertFractionToDecimalBet((int) p, (int) q) - odds) <= Math.ulp(odds)) {
+                return PackedRational.of(p, q);
+            }
+            if (r == a) {
+                break;
+            }
+            r = 1 / (r - a);
+            p0 = p1;
+            q0 = q1;
+            p1 = p;
+            q1 = q;
+        }
+        throw new ArithmeticException("No fraction within 1 ulp of " + odds);
     }
 
     /**
@@ -57,7 +134,19 @@ public class OddsConversionUtils {
      * @return double representing a bet in a decimal format.
      */
     public static double convertFractionToDecimalBet(FractionalOdds fo) {
-        return (double) fo.getNumerator() / fo.getDenominator() + 1;
+        return convertFractionToDecimalBet(fo.getNumerator(), fo.getDenominator());
+    }
+
+    /**
+     * This method converts fractional odds into bet odds represented in
+     * decimal format.
+     *
+     * @param numerator numerator of the fractional odds
+     * @param denominator denominator of the fractional odds
+     * @return double representing a bet in a decimal format.
+     */
+    public static double convertFractionToDecimalBet(int numerator, int denominator) {
+        return (double) numerator / denominator + 1;
     }
 
     /**
@@ -0,0 +1,155 @@
+package skybet.test.utils;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * This class is an immutable index of the standard fractional odds ladder
+ * (1/100 ... evens ... 11/10, 6/4, 100/30 ... 1000/1).
+ * <p>
+ * Almost every price offered comes from this ladder, so decimal odds can be
+ * looked up in a precomputed open addressing table keyed on the bits of the
+ * double rather than being worked out with BigDecimal and Rational. Lookups
+ * return the position of the price on the ladder, or -1 if it is not on the
+ * ladder, and never allocate.
+ * <p>
+ * Fractions are held in lowest terms, so 6/4 is held as 3/2 and 100/30 as
+ * 10/3, matching the output of the general conversion.
+ *
+ * @author chrishovey
+ */
+public final class OddsLadder {
+
+    private static final int[][] LADDER = {
+        {1, 100}, {1, 66}, {1, 50}, {1, 40}, {1, 33}, {1, 25}, {1, 20}, {1, 16},
+        {1, 14}, {1, 12}, {1, 11}, {1, 10}, {1, 9}, {1, 8}, {2, 15}, {1, 7},
+        {1, 6}, {2, 11}, {1, 5}, {2, 9}, {1, 4}, {2, 7}, {3, 10}, {1, 3},
+        {4, 11}, {2, 5}, {5, 12}, {4, 9}, {1, 2}, {8, 15}, {4, 7}, {8, 13},
+        {2, 3}, {8, 11}, {4, 5}, {5, 6}, {10, 11}, {1, 1}, {21, 20}, {11, 10},
+        {6, 5}, {5, 4}, {11, 8}, {7, 5}, {3, 2}, {13, 8}, {8, 5}, {7, 4},
+        {9, 5}, {15, 8}, {2, 1}, {17, 8}, {11, 5}, {9, 4}, {12, 5}, {5, 2},
+        {13, 5}, {11, 4}, {14, 5}, {3, 1}, {16, 5}, {10, 3}, {7, 2}, {4, 1},
+        {9, 2}, {5, 1}, {11, 2}, {6, 1}, {13, 2}, {7, 1}, {15, 2}, {8, 1},
+        {17, 2}, {9, 1}, {10, 1}, {11, 1}, {12, 1}, {14, 1}, {16, 1}, {18, 1},
+        {20, 1}, {22, 1}, {25, 1}, {28, 1}, {33, 1}, {40, 1}, {50, 1}, {66, 1},
+        {80, 1}, {100, 1}, {125, 1}, {150, 1}, {200, 1}, {250, 1}, {300, 1},
+        {400, 1}, {500, 1}, {750, 1}, {1000, 1}
+    };
+
+    private static final int[] NUMERATORS = new int[LADDER.length];
+    private static final int[] DENOMINATORS = new int[LADDER.length];
+    private static final double[] DECIMALS = new double[LADDER.length];
+
+    // open addressing tables, a slot holds the ladder position + 1, 0 is empty
+    private static final int MASK = 255;
+    private static final int[] BY_DECIMAL = new int[MASK + 1];
+    private static final int[] BY_FRACTION = new int[MASK + 1];
+
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+
+    static {
+        for (int i = 0; i < LADDER.length; i++) {
+            NUMERATORS[i] = LADDER[i][0];
+            DENOMINATORS[i] = LADDER[i][1];
+            DECIMALS[i] = OddsConversionUtils.convertFractionToDecimalBet(NUMERATORS[i], DENOMINATORS[i]);
+            insert(BY_DECIMAL, hash(Double.doubleToLongBits(DECIMALS[i])), i);
+            insert(BY_FRACTION, hash(pack(NUMERATORS[i], DENOMINATORS[i])), i);
+        }
+    }
+
+    private OddsLadder() {
+    }
+
+    /**
+     *
+     * @param decimal bet odds in a decimal format
+     * @return the position of the odds on the ladder or -1 if they are not on
+     * the ladder
+     */
+    public static int indexOf(double decimal) {
+        long key = Double.doubleToLongBits(decimal);
+        for (int slot = hash(key);; slot = (slot + 1) & MASK) {
+            int i = BY_DECIMAL[slot] - 1;
+            if (i < 0) {
+                MISSES.increment();
+                return -1;
+            }
+            if (Double.doubleToLongBits(DECIMALS[i]) == key) {
+                HITS.increment();
+                return i;
+            }
+        }
+    }
+
+    /**
+     *
+     * @param numerator numerator of the fractional odds
+     * @param denominator denominator of the fractional odds
+     * @return the position of the odds on the ladder or -1 if they are not on
+     * the ladder
+     */
+    public static int indexOf(int numerator, int denominator) {
+        long key = pack(numerator, denominator);
+        for (int slot = hash(key);; slot = (slot + 1) & MASK) {
+            int i = BY_FRACTION[slot] - 1;
+            if (i < 0) {
+                MISSES.increment();
+                return -1;
+            }
+            if (pack(NUMERATORS[i], DENOMINATORS[i]) == key) {
+                HITS.increment();
+                return i;
+            }
+        }
+    }
+
+    public static int numerator(int index) {
+        return NUMERATORS[index];
+    }
+
+    public static int denominator(int index) {
+        return DENOMINATORS[index];
+    }
+
+    public static double decimal(int index) {
+        return DECIMALS[index];
+    }
+
+    public static int size() {
+        return LADDER.length;
+    }
+
+    /**
+     *
+     * @return number of lookups that found the odds on the ladder
+     */
+    public static long hits() {
+        return HITS.sum();
+    }
+
+    /**
+     *
+     * @return number of lookups that had to fall back to the general
+     * conversion
+     */
+    public static long misses() {
+        return MISSES.sum();
+    }
+
+    private static long pack(int numerator, int denominator) {
+        return ((long) numerator << 32) | (denominator & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 56) & MASK;
+    }
+
+    private static void insert(int[] table, int slot, int index) {
+        while (table[slot] != 0) {
+            slot = (slot + 1) & MASK;
+        }
+        table[slot] = index + 1;
+    }
+}
@@ -0,0 +1,133 @@
+package skybet.test.utils;
+
+/**
+ *
+ * This class provides rational number arithmetic on primitive longs so that
+ * the odds conversion hot path does not allocate.
+ * <p>
+ * A rational is packed into a single long with the numerator in the high 32
+ * bits and the denominator in the low 32 bits. Packed values hold the same
+ * invariants as Rational:
+ * <ul>
+ * <li>gcd(num, den) = 1, the rational number is in reduced form</li>
+ * <li>den &gt;= 1, the denominator is always a positive integer</li>
+ * <li>0/1 is the unique representation of 0</li>
+ * </ul>
+ * Intermediate results are worked out in long arithmetic and reduced before
+ * being packed. If the reduced result still does not fit in an int an
+ * ArithmeticException is thrown rather than the value silently overflowing.
+ *
+ * @author chrishovey
+ */
+public final class PackedRational {
+
+    public static final long ZERO = of(0, 1);
+    public static final long ONE = of(1, 1);
+
+    private PackedRational() {
+    }
+
+    /**
+     *
+     * @param numerator the numerator
+     * @param denominator the denominator, must not be 0
+     * @return the packed, reduced rational numerator / denominator
+     * @throws ArithmeticException if the denominator is 0 or the reduced
+     * fraction does not fit in two ints
+     */
+    public static long of(long numerator, long denominator) {
+        if (denominator == 0) {
+            throw new ArithmeticException("Denominator is zero");
+        }
+        long g = gcd(numerator, denominator);
+        long num = numerator / g;
+        long den = denominator / g;
+        if (den < 0) {
+            den = -den;
+            num = -num;
+        }
+        if (num != (int) num || den != (int) den) {
+            throw new ArithmeticException("Rational overflow: " + num + "/" + den);
+        }
+        return (num << 32) | (den & 0xFFFFFFFFL);
+    }
+
+    public static int numerator(long r) {
+        return (int) (r >> 32);
+    }
+
+    public static int denominator(long r) {
+        return (int) r;
+    }
+
+    public static double toDouble(long r) {
+        return (double) numerator(r) / denominator(r);
+    }
+
+    // return a * b
+    public static long times(long a, long b) {
+        return of((long) numerator(a) * numerator(b), (long) denominator(a) * denominator(b));
+    }
+
+    // return a + b
+    public static long plus(long a, long b) {
+        long num = (long) numerator(a) * denominator(b) + (long) numerator(b) * denominator(a);
+        return of(num, (long) denominator(a) * denominator(b));
+    }
+
+    // return -a
+    public static long negate(long a) {
+        return of(-(long) numerator(a), denominator(a));
+    }
+
+    // return a - b
+    public static long minus(long a, long b) {
+        return plus(a, negate(b));
+    }
+
+    // return 1 / a
+    public static long reciprocal(long a) {
+        return of(denominator(a), numerator(a));
+    }
+
+    // return a / b
+    public static long divides(long a, long b) {
+        return times(a, reciprocal(b));
+    }
+
+    // return { -1, 0, +1 } if a < b, a = b, or a > b
+    public static int compare(long a, long b) {
+        return Long.compare((long) numerator(a) * denominator(b), (long) numerator(b) * denominator(a));
+    }
+
+    /**
+     *
+     * This method returns gcd(|m|, |n|) using the binary gcd algorithm.
+     *
+     * @param m first value
+     * @param n second value
+     * @return the greatest common divisor, or 1 if both values are 0
+     */
+    public static long gcd(long m, long n) {
+        m = Math.abs(m);
+        n = Math.abs(n);
+        if (m == 0) {
+            return n == 0 ? 1 : n;
+        }
+        if (n == 0) {
+            return m;
+        }
+        int shift = Long.numberOfTrailingZeros(m | n);
+        m >>= Long.numberOfTrailingZeros(m);
+        do {
+            n >>= Long.numberOfTrailingZeros(n);
+            if (m > n) {
+                long t = n;
+                n = m;
+                m = t;
+            }
+            n -= m;
+        } while (n != 0);
+        return m << shift;
+    }
+}
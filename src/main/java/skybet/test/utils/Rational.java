@@ -22,6 +22,9 @@ package skybet.test.utils;
  *  We employ some tricks to stave of overflow, but if you
  *  need arbitrary precision rationals, use BigRational.java.
  *
+ *  For allocation free arithmetic with overflow detection see
+ *  PackedRational.
+ *
  ******************************************************************************/
 
 public class Rational implements Comparable<Rational> {
@@ -82,7 +85,7 @@ public class Rational implements Comparable<Rational> {
 
     // hashCode consistent with equals() and compareTo()
     public int hashCode() {
-        return this.toString().hashCode();
+        return 31 * num + den;
     }
 
 
@@ -95,8 +98,12 @@ public class Rational implements Comparable<Rational> {
     private static int gcd(int m, int n) {
         if (m < 0) m = -m;
         if (n < 0) n = -n;
-        if (0 == n) return m;
-        else return gcd(n, m % n);
+        while (n != 0) {
+            int t = m % n;
+            m = n;
+            n = t;
+        }
+        return m;
     }
 
     // return lcm(|m|, |n|)
@@ -0,0 +1,130 @@
+package skybet.test.utils;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.Shareable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class holds a single cached value which is refreshed once it is older
+ * than the configured time to live.
+ *
+ * Only one refresh is ever running at a time. Callers that arrive while the
+ * cache is empty wait for that refresh, callers that arrive while the value is
+ * stale are handed the stale value straight away and the refresh is run in
+ * the background.
+ *
+ * The cache is thread safe and Shareable so one instance can be put in a vertx
+ * LocalMap and used by verticle instances on different event loops. The
+ * refresh runs on the context of the caller that triggered it, waiters are
+ * called back on their own context.
+ *
+ * @author chrishovey
+ * @param <T> the type of the cached value, must be safe to share between
+ * threads
+ */
+public class SnapshotCache<T> implements Shareable {
+
+    private final long ttl;
+    private final Queue<Waiter<T>> waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private volatile T value;
+    private volatile long loadedAt;
+
+    /**
+     *
+     * @param ttl time in milliseconds a loaded value is considered fresh
+     */
+    public SnapshotCache(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     *
+     * This method passes the cached value to the handler, loading it first if
+     * nothing has been cached yet.
+     *
+     * @param loader called with a future that must be completed with a newly
+     * loaded value or failed, if a refresh is needed
+     * @param handler called with the cached value or the load failure
+     */
+    public void get(Handler<Future<T>> loader, Handler<AsyncResult<T>> handler) {
+        T current = value;
+        if (current == null) {
+            waiters.add(new Waiter<>(Vertx.currentContext(), handler));
+            refresh(loader);
+            return;
+        }
+        if (System.currentTimeMillis() - loadedAt >= ttl) {
+            refresh(loader);
+        }
+        handler.handle(Future.succeededFuture(current));
+    }
+
+    /**
+     *
+     * @return the last loaded value or null if nothing has been loaded yet
+     */
+    public T peek() {
+        return value;
+    }
+
+    /**
+     *
+     * @return time in milliseconds since the cached value was loaded, or
+     * Long.MAX_VALUE if nothing has been loaded yet
+     */
+    public long age() {
+        return value == null ? Long.MAX_VALUE : System.currentTimeMillis() - loadedAt;
+    }
+
+    private void refresh(Handler<Future<T>> loader) {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        Future<T> future = Future.future();
+        future.setHandler(ar -> {
+            if (ar.succeeded()) {
+                loadedAt = System.currentTimeMillis();
+                value = ar.result();
+            }
+            refreshing.set(false);
+            Waiter<T> w;
+            while ((w = waiters.poll()) != null) {
+                w.handle(ar);
+            }
+        });
+        try {
+            loader.handle(future);
+        } catch (RuntimeException e) {
+            if (!future.isComplete()) {
+                future.fail(e);
+            }
+        }
+    }
+
+    private static class Waiter<T> {
+
+        private final Context context;
+        private final Handler<AsyncResult<T>> handler;
+
+        Waiter(Context context, Handler<AsyncResult<T>> handler) {
+            this.context = context;
+            this.handler = handler;
+        }
+
+        void handle(AsyncResult<T> ar) {
+            if (context == null || context == Vertx.currentContext()) {
+                handler.handle(ar);
+            } else {
+                context.runOnContext(v -> handler.handle(ar));
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package skybet.test.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * This class is a latency histogram of recent latencies only.
+ * <p>
+ * It keeps two LatencyHistograms, the current window and the one before it.
+ * Once a window has passed the older histogram is emptied and becomes the
+ * current one, so the histogram always holds between one and two windows of
+ * latencies and its percentiles follow a change in latency within a window
+ * or two, however long the process has been running. Recording is lock free
+ * and does not allocate, as with LatencyHistogram.
+ *
+ * @author chrishovey
+ */
+public class WindowedHistogram {
+
+    private final long windowNanos;
+    private final LatencyHistogram[] histograms = {new LatencyHistogram(), new LatencyHistogram()};
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private volatile int current;
+
+    /**
+     *
+     * @param window the length of a window
+     * @param unit the unit of the window
+     */
+    public WindowedHistogram(long window, TimeUnit unit) {
+        this.windowNanos = unit.toNanos(window);
+    }
+
+    /**
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos) {
+        rotate();
+        histograms[current].record(nanos);
+    }
+
+    /**
+     *
+     * @return the number of latencies recorded in the last one to two windows
+     */
+    public long count() {
+        rotate();
+        return histograms[0].count() + histograms[1].count();
+    }
+
+    /**
+     *
+     * @param quantile the quantile wanted, between 0 and 1
+     * @return the upper bound in nanoseconds of the bucket holding the
+     * quantile of the last one to two windows, Long.MAX_VALUE if it is above
+     * the largest bound or 0 if nothing has been recorded
+     */
+    public long percentile(double quantile) {
+        rotate();
+        return LatencyHistogram.percentile(quantile, histograms);
+    }
+
+    // starts a new window once the current one has passed, only the thread
+    // that moves the window start on empties the older histogram
+    private void rotate() {
+        long start = windowStart.get();
+        long now = System.nanoTime();
+        long elapsed = now - start;
+        if (elapsed < windowNanos || !windowStart.compareAndSet(start, now)) {
+            return;
+        }
+        int older = current ^ 1;
+        histograms[older].reset();
+        if (elapsed >= 2 * windowNanos) {
+            // nothing recorded in the current window is recent any more
+            histograms[current].reset();
+        }
+        current = older;
+    }
+}
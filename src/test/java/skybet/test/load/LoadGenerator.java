@@ -0,0 +1,184 @@
+package skybet.test.load;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import skybet.test.pojo.DecimalBet;
+import skybet.test.utils.LatencyHistogram;
+
+/**
+ * This verticle drives the bets service at a fixed request rate and reports
+ * the throughput and latency percentiles it saw.
+ *
+ * The load is open loop: requests are sent on a fixed schedule whether or not
+ * earlier requests have been answered, and each latency is measured from the
+ * time the request was due to be sent. A slow service therefore shows up as
+ * high latency rather than as a lower request rate, which a closed loop
+ * generator would hide.
+ *
+ * Before starting it reads /available once and then sends a mix of GET
+ * /available and, for "betRatio" of the requests, POST /bets for a random
+ * available event at its current odds. After "warmup" seconds the results are
+ * reset, after a further "duration" seconds the report is printed and vertx
+ * is closed:
+ * <pre>
+ * mvn -Pload-test test-compile exec:exec -Dverticle=skybet.test.load.LoadGenerator -Dconf=load.json
+ *
+ * {
+ *   "host" : "localhost",
+ *   "port" : 8080,
+ *   "rps" : 1000,
+ *   "warmup" : 5,
+ *   "duration" : 30,
+ *   "connections" : 64,
+ *   "betRatio" : 0.1
+ * }
+ * </pre>
+ *
+ * @author chrishovey
+ */
+public class LoadGenerator extends AbstractVerticle {
+
+    public static final int DEFAULT_RPS = 1000;
+    public static final int DEFAULT_WARMUP = 5;
+    public static final int DEFAULT_DURATION = 30;
+    public static final int DEFAULT_CONNECTIONS = 64;
+    public static final double DEFAULT_BET_RATIO = 0.1;
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private HttpClient client;
+    private double rps;
+    private double betRatio;
+    private Buffer[] bets;
+
+    private LatencyHistogram latency = new LatencyHistogram();
+    private Map<Integer, Long> statusCodes = new TreeMap<>();
+    private long errors;
+    private long sent;
+    private long measuredFrom;
+
+    /**
+     *
+     * This method is called by vertx on startup, reads the available events
+     * and starts the load.
+     *
+     * @param startFuture completed once the load has started
+     */
+    @Override
+    public void start(Future<Void> startFuture) {
+        rps = config().getDouble("rps", (double) DEFAULT_RPS);
+        betRatio = config().getDouble("betRatio", DEFAULT_BET_RATIO);
+        client = vertx.createHttpClient(new HttpClientOptions()
+                .setDefaultHost(config().getString("host", "localhost"))
+                .setDefaultPort(config().getInteger("port", 8080))
+                .setMaxPoolSize(config().getInteger("connections", DEFAULT_CONNECTIONS))
+                .setKeepAlive(true));
+        client.getNow("/available", r -> r.bodyHandler(body -> {
+            if (r.statusCode() != 200) {
+                startFuture.fail("GET /available returned " + r.statusCode());
+                return;
+            }
+            JsonArray events = new JsonArray(body.toString("UTF-8"));
+            bets = new Buffer[events.size()];
+            for (int i = 0; i < bets.length; i++) {
+                JsonObject event = events.getJsonObject(i);
+                bets[i] = DecimalBet.builder()
+                        .betId(event.getLong("bet_id"))
+                        .odds(event.getDouble("odds"))
+                        .stake(1)
+                        .build()
+                        .toJsonBuffer();
+            }
+            run();
+            startFuture.complete();
+        }));
+    }
+
+    private void run() {
+        long start = System.nanoTime();
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rps);
+        long warmup = TimeUnit.SECONDS.toNanos(config().getInteger("warmup", DEFAULT_WARMUP));
+        long end = warmup + TimeUnit.SECONDS.toNanos(config().getInteger("duration", DEFAULT_DURATION));
+        boolean[] warm = {false};
+        vertx.setPeriodic(1, id -> {
+            long now = System.nanoTime();
+            if (!warm[0] && now - start >= warmup) {
+                warm[0] = true;
+                reset(now);
+            }
+            if (now - start >= end) {
+                vertx.cancelTimer(id);
+                // give outstanding requests a moment to finish
+                vertx.setTimer(1000, t -> report(now));
+                return;
+            }
+            // send every request that has fallen due, each timed from when
+            // it was due rather than when the timer fired
+            long due = (now - start) / interval;
+            for (; sent <= due; sent++) {
+                send(start + sent * interval);
+            }
+        });
+    }
+
+    private void send(long scheduled) {
+        boolean bet = bets.length > 0 && ThreadLocalRandom.current().nextDouble() < betRatio;
+        HttpClientRequest request = client.request(bet ? HttpMethod.POST : HttpMethod.GET,
+                bet ? "/bets" : "/available", r -> r.bodyHandler(body -> completed(scheduled, r.statusCode())))
+                .exceptionHandler(t -> {
+                    if (scheduled >= measuredFrom) {
+                        errors++;
+                    }
+                });
+        if (bet) {
+            request.putHeader("content-type", "application/json; charset=utf-8")
+                    .end(bets[ThreadLocalRandom.current().nextInt(bets.length)]);
+        } else {
+            request.end();
+        }
+    }
+
+    private void completed(long scheduled, int statusCode) {
+        if (scheduled < measuredFrom) {
+            return;
+        }
+        latency.recordSince(scheduled);
+        statusCodes.merge(statusCode, 1L, Long::sum);
+    }
+
+    private void reset(long now) {
+        measuredFrom = now;
+        latency = new LatencyHistogram();
+        statusCodes = new TreeMap<>();
+        errors = 0;
+    }
+
+    private void report(long now) {
+        double seconds = (now - measuredFrom) / 1e9;
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("target   %.0f req/s%n", rps));
+        out.append(String.format("achieved %.0f req/s over %.1fs%n", latency.count() / seconds, seconds));
+        for (Map.Entry<Integer, Long> status : statusCodes.entrySet()) {
+            out.append(String.format("status %d: %d%n", status.getKey(), status.getValue()));
+        }
+        out.append(String.format("errors   %d%n", errors));
+        for (double p : PERCENTILES) {
+            long nanos = latency.percentile(p);
+            out.append(String.format("p%-6s <= %s%n", p * 100, nanos == Long.MAX_VALUE
+                    ? "overflow" : String.format("%.3fms", nanos / 1e6)));
+        }
+        System.out.print(out);
+        vertx.close();
+    }
+}
@@ -0,0 +1,82 @@
+package skybet.test.mock;
+
+import io.vertx.core.json.JsonObject;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class samples the latency the mock sky api adds to a response.
+ *
+ * It is configured with a json object naming the distribution and its
+ * parameters, all in milliseconds:
+ * <pre>
+ * { "distribution" : "fixed", "value" : 10 }
+ * { "distribution" : "uniform", "min" : 5, "max" : 50 }
+ * { "distribution" : "exponential", "mean" : 20 }
+ * { "distribution" : "lognormal", "median" : 20, "sigma" : 0.5 }
+ * </pre>
+ * The lognormal distribution gives the long tail real services tend to have.
+ * No config means no added latency.
+ *
+ * @author chrishovey
+ */
+public class Latency {
+
+    private final String distribution;
+    private final double a;
+    private final double b;
+
+    /**
+     *
+     * @param config the distribution, may be null for no latency
+     * @throws IllegalArgumentException if the distribution is not known
+     */
+    public Latency(JsonObject config) {
+        if (config == null) {
+            config = new JsonObject();
+        }
+        this.distribution = config.getString("distribution", "fixed");
+        switch (distribution) {
+            case "fixed":
+                a = config.getDouble("value", 0.0);
+                b = 0;
+                break;
+            case "uniform":
+                a = config.getDouble("min", 0.0);
+                b = config.getDouble("max", a);
+                break;
+            case "exponential":
+                a = config.getDouble("mean", 0.0);
+                b = 0;
+                break;
+            case "lognormal":
+                a = Math.log(Math.max(config.getDouble("median", 1.0), Double.MIN_NORMAL));
+                b = config.getDouble("sigma", 0.0);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown latency distribution: " + distribution);
+        }
+    }
+
+    /**
+     *
+     * @return a latency in milliseconds, 0 for none
+     */
+    public long sample() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double millis;
+        switch (distribution) {
+            case "uniform":
+                millis = a + (b - a) * random.nextDouble();
+                break;
+            case "exponential":
+                millis = -a * Math.log(1 - random.nextDouble());
+                break;
+            case "lognormal":
+                millis = Math.exp(a + b * random.nextGaussian());
+                break;
+            default:
+                millis = a;
+        }
+        return Math.max(0, Math.round(millis));
+    }
+}
@@ -0,0 +1,249 @@
+package skybet.test.mock;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import skybet.test.pojo.FractionalBet;
+import skybet.test.pojo.FractionalEvent;
+import skybet.test.pojo.FractionalOdds;
+import skybet.test.pojo.FractionalPlacedBet;
+import skybet.test.pojo.JsonSerialisable;
+
+/**
+ * This verticle stands in for the sky bet api so the service can be tested
+ * and load tested without the live host.
+ *
+ * GET /available returns "events" (default 100) events with fractional odds,
+ * grouped "selectionsPerEvent" (default 10) to an event. bet_id 1 has odds of
+ * 10/1, as it does on the live api. Some events are priced in sevenths, so
+ * their decimal odds do not terminate.
+ *
+ * It is sent with an ETag that changes whenever the odds do, and a request
+ * whose If-None-Match holds the current ETag is answered with 304 not
+ * modified and no body.
+ *
+ * POST /bets accepts a fractional bet and returns 201 created with a receipt,
+ * 418 with {"error":"Incorrect Odds"} if the odds do not match the event,
+ * 404 if there is no event with the bet_id and 400 if the body cannot be
+ * read.
+ *
+ * With "oddsDriftInterval" set, every that many milliseconds the odds of
+ * the next event in turn are lengthened, so the odds change as they do on
+ * the live api and the service has deltas to stream. odds(betId) gives the
+ * odds before any drift.
+ *
+ * "availableLatency" and "betsLatency" delay each response by a latency
+ * drawn from a distribution, see Latency, and "errorRate" (default 0) is the
+ * fraction of requests answered with a 500 internal server error. The server
+ * listens on "port" (default 8090):
+ * <pre>
+ * mvn -Pload-test test-compile exec:exec -Dverticle=skybet.test.mock.MockSkyApi -Dconf=mock.json
+ *
+ * {
+ *   "port" : 8090,
+ *   "events" : 10000,
+ *   "selectionsPerEvent" : 10,
+ *   "availableLatency" : { "distribution" : "lognormal", "median" : 20, "sigma" : 0.5 },
+ *   "betsLatency" : { "distribution" : "uniform", "min" : 5, "max" : 50 },
+ *   "errorRate" : 0.01
+ * }
+ * </pre>
+ *
+ * @author chrishovey
+ */
+public class MockSkyApi extends AbstractVerticle {
+
+    public static final int DEFAULT_PORT = 8090;
+    public static final int DEFAULT_EVENTS = 100;
+    public static final int DEFAULT_SELECTIONS_PER_EVENT = 10;
+
+    private final AtomicLong transactionIds = new AtomicLong(1000);
+    private final AtomicLong notModified = new AtomicLong();
+
+    private FractionalEvent[] events;
+    private Buffer available;
+    private String etag;
+    private long version;
+    private Latency availableLatency;
+    private Latency betsLatency;
+    private double errorRate;
+
+    /**
+     *
+     * This method is called by vertx on startup, builds the events and starts
+     * the http server.
+     *
+     * @param startFuture completed once the http server is listening
+     */
+    @Override
+    public void start(Future<Void> startFuture) {
+        events = events(config().getInteger("events", DEFAULT_EVENTS),
+                Math.max(1, config().getInteger("selectionsPerEvent", DEFAULT_SELECTIONS_PER_EVENT)));
+        available = JsonSerialisable.toJsonBuffer(events);
+        etag = "\"v" + version + "\"";
+        availableLatency = new Latency(config().getJsonObject("availableLatency"));
+        betsLatency = new Latency(config().getJsonObject("betsLatency"));
+        errorRate = config().getDouble("errorRate", 0.0);
+        long driftInterval = config().getLong("oddsDriftInterval", 0L);
+        if (driftInterval > 0) {
+            int[] next = {0};
+            vertx.setPeriodic(driftInterval, id -> {
+                drift(events[next[0]]);
+                next[0] = (next[0] + 1) % events.length;
+                available = JsonSerialisable.toJsonBuffer(events);
+                etag = "\"v" + ++version + "\"";
+            });
+        }
+
+        vertx.createHttpServer().requestHandler(request -> {
+            if (request.method() == HttpMethod.GET && "/available".equals(request.path())) {
+                delay(availableLatency, () -> {
+                    if (failed(request)) {
+                        return;
+                    }
+                    if (etag.equals(request.getHeader("if-none-match"))) {
+                        notModified.incrementAndGet();
+                        request.response().setStatusCode(304).putHeader("etag", etag).end();
+                    } else {
+                        request.response().putHeader("etag", etag);
+                        send(request, 200, "OK", available);
+                    }
+                });
+            } else if (request.method() == HttpMethod.POST && "/bets".equals(request.path())) {
+                request.bodyHandler(body -> delay(betsLatency, () -> {
+                    if (!failed(request)) {
+                        placeBet(request, body);
+                    }
+                }));
+            } else {
+                sendError(request, 404, "Not Found", "Not Found");
+            }
+        }).listen(config().getInteger("port", DEFAULT_PORT), ar -> {
+            if (ar.succeeded()) {
+                startFuture.complete();
+            } else {
+                startFuture.fail(ar.cause());
+            }
+        });
+    }
+
+    /**
+     *
+     * @return the number of /available requests answered with 304 not
+     * modified
+     */
+    public long notModified() {
+        return notModified.get();
+    }
+
+    /**
+     *
+     * @param count the number of events
+     * @param selectionsPerEvent the number of selections in each event
+     * @return the events, bet_id n is at index n - 1
+     */
+    private static FractionalEvent[] events(int count, int selectionsPerEvent) {
+        FractionalEvent[] events = new FractionalEvent[count];
+        for (int i = 0; i < count; i++) {
+            long betId = i + 1;
+            events[i] = FractionalEvent.builder()
+                    .betId(betId)
+                    .event("Event " + (i / selectionsPerEvent + 1))
+                    .name("Selection " + betId)
+                    .odds(odds(betId))
+                    .build();
+        }
+        return events;
+    }
+
+    /**
+     *
+     * @param betId the bet_id of an event
+     * @return the odds the event is given
+     */
+    public static FractionalOdds odds(long betId) {
+        return FractionalOdds.builder()
+                .numerator((int) (betId * 9 % 20) + 1)
+                .denominator(betId % 4 == 0 ? 2 : betId % 7 == 0 ? 7 : 1)
+                .build();
+    }
+
+    // lengthens the odds of the event by one, going back to evens after 20/1
+    private static void drift(FractionalEvent event) {
+        FractionalOdds odds = event.getOdds();
+        event.setOdds(FractionalOdds.builder()
+                .numerator(odds.getNumerator() % (20 * odds.getDenominator()) + 1)
+                .denominator(odds.getDenominator())
+                .build());
+    }
+
+    private void placeBet(HttpServerRequest request, Buffer body) {
+        FractionalBet bet;
+        try {
+            bet = FractionalBet.fromJson(body);
+        } catch (DecodeException de) {
+            bet = null;
+        }
+        if (bet == null || bet.getBetId() == null || bet.getOdds() == null
+                || bet.getOdds().getNumerator() == null || bet.getOdds().getDenominator() == null) {
+            sendError(request, 400, "Bad Request", "Bad Request");
+            return;
+        }
+        long betId = bet.getBetId();
+        if (betId < 1 || betId > events.length) {
+            sendError(request, 404, "Not Found", "Invalid Bet ID");
+            return;
+        }
+        FractionalEvent event = events[(int) betId - 1];
+        // compare the fractions by value, 20/2 is the same price as 10/1
+        if ((long) event.getOdds().getNumerator() * bet.getOdds().getDenominator()
+                != (long) bet.getOdds().getNumerator() * event.getOdds().getDenominator()) {
+            sendError(request, 418, "I'm a teapot", "Incorrect Odds");
+            return;
+        }
+        send(request, 201, "Created", FractionalPlacedBet.builder()
+                .betId(betId)
+                .event(event.getEvent())
+                .name(event.getName())
+                .odds(event.getOdds())
+                .stake(bet.getStake())
+                .transactionId(transactionIds.incrementAndGet())
+                .build()
+                .toJsonBuffer());
+    }
+
+    private void delay(Latency latency, Runnable action) {
+        long millis = latency.sample();
+        if (millis == 0) {
+            action.run();
+        } else {
+            vertx.setTimer(millis, id -> action.run());
+        }
+    }
+
+    private boolean failed(HttpServerRequest request) {
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            sendError(request, 500, "Internal Server Error", "Internal Server Error");
+            return true;
+        }
+        return false;
+    }
+
+    private static void sendError(HttpServerRequest request, int statusCode, String statusMessage, String error) {
+        send(request, statusCode, statusMessage, Buffer.buffer(new JsonObject().put("error", error).encode()));
+    }
+
+    private static void send(HttpServerRequest request, int statusCode, String statusMessage, Buffer body) {
+        request.response()
+                .setStatusCode(statusCode)
+                .setStatusMessage(statusMessage)
+                .putHeader("content-type", "application/json")
+                .end(body);
+    }
+}
@@ -0,0 +1,93 @@
+package skybet.test.pojo;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class BetTest {
+
+    private static Bet decode(String json) {
+        return Bet.decodeDecimal(Buffer.buffer(json), WireFormat.JSON);
+    }
+
+    @Test
+    public void decodeExactOddsTest(TestContext context) {
+        Bet bet = decode("{\"bet_id\":1,\"odds\":11.0,\"stake\":10}");
+        context.assertEquals(1L, bet.getBetId());
+        context.assertEquals(10, bet.numerator());
+        context.assertEquals(1, bet.denominator());
+        context.assertEquals(10, bet.getStake());
+        context.assertEquals(11.0, bet.decimalOdds());
+
+        bet = decode("{\"bet_id\":2,\"odds\":2.375,\"stake\":5}");
+        context.assertEquals(11, bet.numerator());
+        context.assertEquals(8, bet.denominator());
+        context.assertEquals(Bet.of(2, 11, 8, 5), bet);
+    }
+
+    @Test
+    public void fractionalJsonTest(TestContext context) {
+        FractionalBet fb = FractionalBet.builder()
+                .betId(1l)
+                .odds(FractionalOdds.builder().numerator(11).denominator(8).build())
+                .stake(10)
+                .build();
+        context.assertEquals(new JsonObject(fb.toJsonBuffer().toString("UTF-8")),
+                new JsonObject(Bet.of(1, 11, 8, 10).toFractionalJson().toString("UTF-8")));
+    }
+
+    @Test
+    public void missingFieldsTest(TestContext context) {
+        String[] bodies = {
+            "{\"odds\":11.0,\"stake\":10}",
+            "{\"bet_id\":1,\"stake\":10}",
+            "{\"bet_id\":1,\"odds\":11.0}",
+            "{\"bet_id\":null,\"odds\":11.0,\"stake\":10}",
+            "{\"bet_id\":1,\"odds\":1e300,\"stake\":10}"
+        };
+        for (String body : bodies) {
+            try {
+                decode(body);
+                context.fail(body);
+            } catch (DecodeException de) {
+                // expected
+            }
+        }
+        context.assertNull(decode("null"));
+    }
+
+    @Test
+    public void decodeArrayTest(TestContext context) {
+        Bet[] bets = Bet.decodeDecimalArray(Buffer.buffer(
+                "[{\"bet_id\":1,\"odds\":11.0,\"stake\":10},{\"bet_id\":2},{\"bet_id\":3,\"odds\":2.0,\"stake\":1}]"),
+                WireFormat.JSON);
+        context.assertEquals(3, bets.length);
+        context.assertEquals(Bet.of(1, 10, 1, 10), bets[0]);
+        context.assertNull(bets[1]);
+        context.assertEquals(Bet.of(3, 1, 1, 1), bets[2]);
+    }
+
+    @Test
+    public void placedBetTest(TestContext context) {
+        Bet bet = Bet.of(1, 11, 8, 10);
+        PlacedBet placed = PlacedBet.fromFractionalJson(Buffer.buffer("{\"bet_id\":1,\"event\":\"World Cup 2018\","
+                + "\"name\":\"England\",\"odds\":{\"numerator\":11,\"denominator\":8},\"stake\":10,"
+                + "\"transaction_id\":123456}"), bet);
+        DecimalPlacedBet expected = DecimalPlacedBet.builder().betId(1l).event("World Cup 2018").name("England")
+                .odds(2.375).stake(10).transactionId(123456l).build();
+        context.assertEquals(new JsonObject(expected.toJsonBuffer().toString("UTF-8")),
+                new JsonObject(placed.toJsonBuffer().toString("UTF-8")));
+
+        try {
+            PlacedBet.fromFractionalJson(Buffer.buffer("{\"bet_id\":1,\"stake\":10}"), bet);
+            context.fail();
+        } catch (DecodeException de) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package skybet.test.pojo;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class JsonCodecTest {
+
+    private static final FractionalOdds ODDS = FractionalOdds.builder().numerator(10).denominator(1).build();
+
+    @Test
+    public void encodeMatchesJacksonTest(TestContext context) {
+        JsonSerialisable[] values = {
+            DecimalBet.builder().betId(1l).odds(11.0).stake(10).build(),
+            DecimalEvent.builder().betId(1l).event("World Cup 2018").name("England \"A\"").odds(11.0).build(),
+            DecimalPlacedBet.builder().betId(1l).event("World Cup 2018").name("England")
+            .odds(11.0).stake(10).transactionId(123456l).build(),
+            FractionalBet.builder().betId(1l).odds(ODDS).stake(10).build(),
+            FractionalEvent.builder().betId(1l).event("World Cup 2018").name("England").build(),
+            FractionalPlacedBet.builder().betId(1l).event("World Cup 2018").name("England")
+            .odds(ODDS).stake(10).transactionId(123456l).build(),
+            JsonError.builder().errorCode(400).errorMessage("Bad Request").build(),
+            JsonError.builder().errorCode(418).errorMessage("Incorrect Odds").currentOdds(11.0).build()
+        };
+        for (JsonSerialisable value : values) {
+            context.assertEquals(new JsonObject(Json.encode(value)),
+                    new JsonObject(value.toJsonBuffer().toString("UTF-8")));
+        }
+        context.assertEquals(new JsonArray(Json.encode(values)),
+                new JsonArray(JsonSerialisable.toJsonBuffer(values).toString("UTF-8")));
+    }
+
+    @Test
+    public void decodeRoundTripTest(TestContext context) {
+        DecimalPlacedBet placed = DecimalPlacedBet.builder().betId(1l).event("World Cup 2018").name("England")
+                .odds(11.0).stake(10).transactionId(123456l).build();
+        context.assertEquals(placed, DecimalPlacedBet.fromJson(placed.toJsonBuffer()));
+        FractionalPlacedBet fractional = FractionalPlacedBet.builder().betId(1l).event("World Cup 2018")
+                .name("England").odds(ODDS).stake(10).transactionId(123456l).build();
+        context.assertEquals(fractional, FractionalPlacedBet.fromJson(fractional.toJsonBuffer()));
+        JsonError error = JsonError.builder().errorCode(502).errorMessage("Bad Gateway").build();
+        context.assertEquals(error, JsonError.fromJson(error.toJsonBuffer()));
+        JsonError stale = JsonError.builder().errorCode(418).errorMessage("Incorrect Odds").currentOdds(2.5).build();
+        context.assertEquals(stale, JsonError.fromJson(stale.toJsonBuffer()));
+    }
+
+    @Test
+    public void decodeFollowsObjectMapperRulesTest(TestContext context) {
+        DecimalBet bet = DecimalBet.fromJson(Buffer.buffer("{\"bet_id\":\"7\",\"odds\":2,\"stake\":10.9}"));
+        context.assertEquals(DecimalBet.builder().betId(7l).odds(2.0).stake(10).build(), bet);
+        context.assertNull(DecimalBet.fromJson(Buffer.buffer("null")));
+        try {
+            DecimalBet.fromJson(Buffer.buffer("{\"bet_id\":1,\"odds\":2.0,\"stake\":10,\"extra\":1}"));
+            context.fail("unknown field accepted");
+        } catch (DecodeException de) {
+            // expected
+        }
+        try {
+            DecimalBet.fromJson(Buffer.buffer("{\"bet_id\":1,\"odds\":{}}"));
+            context.fail("object accepted as odds");
+        } catch (DecodeException de) {
+            // expected
+        }
+        try {
+            DecimalBet.fromJson(Buffer.buffer(""));
+            context.fail("empty body accepted");
+        } catch (DecodeException de) {
+            // expected
+        }
+    }
+
+    @Test
+    public void decodeArrayKeepsGoodElementsTest(TestContext context) {
+        DecimalBet[] bets = DecimalBet.fromJsonArray(Buffer.buffer(
+                "[{\"bet_id\":1,\"odds\":2.0,\"stake\":10},{\"odds\":{\"a\":[1]},\"bet_id\":2},"
+                + "\"bet\",null,{\"bet_id\":3,\"odds\":3.0,\"stake\":5}]"));
+        context.assertEquals(5, bets.length);
+        context.assertEquals(1l, bets[0].getBetId());
+        context.assertNull(bets[1]);
+        context.assertNull(bets[2]);
+        context.assertNull(bets[3]);
+        context.assertEquals(3l, bets[4].getBetId());
+    }
+}
@@ -0,0 +1,57 @@
+package skybet.test.pojo;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import java.io.IOException;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class WireFormatTest {
+
+    @Test
+    public void negotiateTest(TestContext context) {
+        context.assertEquals(WireFormat.JSON, WireFormat.negotiate(null));
+        context.assertEquals(WireFormat.JSON, WireFormat.negotiate("*/*"));
+        context.assertEquals(WireFormat.JSON, WireFormat.negotiate("application/json, application/cbor"));
+        context.assertEquals(WireFormat.CBOR, WireFormat.negotiate("application/cbor"));
+        context.assertEquals(WireFormat.CBOR, WireFormat.negotiate("application/cbor, */*;q=0.1"));
+        context.assertEquals(WireFormat.CBOR, WireFormat.fromContentType("application/cbor"));
+        context.assertEquals(WireFormat.JSON, WireFormat.fromContentType("application/json; charset=utf-8"));
+        context.assertEquals(WireFormat.JSON, WireFormat.fromContentType(null));
+    }
+
+    @Test
+    public void cborRoundTripTest(TestContext context) {
+        DecimalBet bet = DecimalBet.builder().betId(1l).odds(11.0).stake(10).build();
+        context.assertEquals(bet, DecimalBet.decode(bet.encode(WireFormat.CBOR), WireFormat.CBOR));
+        DecimalEvent event = DecimalEvent.builder().betId(1l).event("World Cup 2018").name("England").odds(11.0).build();
+        context.assertEquals(event, DecimalEvent.decode(event.encode(WireFormat.CBOR), WireFormat.CBOR));
+        DecimalPlacedBet placed = DecimalPlacedBet.builder().betId(1l).event("World Cup 2018").name("England")
+                .odds(11.0).stake(10).transactionId(123456l).build();
+        Buffer cbor = placed.encode(WireFormat.CBOR);
+        context.assertTrue(cbor.length() < placed.toJsonBuffer().length());
+        context.assertEquals(placed, DecimalPlacedBet.decode(cbor, WireFormat.CBOR));
+
+        DecimalBet[] bets = DecimalBet.decodeArray(
+                JsonSerialisable.encode(new JsonSerialisable[]{bet, null, bet}, WireFormat.CBOR), WireFormat.CBOR);
+        context.assertEquals(3, bets.length);
+        context.assertNull(bets[1]);
+        context.assertEquals(bet, bets[2]);
+    }
+
+    @Test
+    public void cborReadableByOtherClientsTest(TestContext context) throws IOException {
+        DecimalPlacedBet placed = DecimalPlacedBet.builder().betId(1l).event("World Cup 2018").name("England")
+                .odds(11.0).stake(10).transactionId(123456l).build();
+        Map<?, ?> map = new ObjectMapper(new CBORFactory()).readValue(placed.encode(WireFormat.CBOR).getBytes(), Map.class);
+        context.assertEquals(1, ((Number) map.get("bet_id")).intValue());
+        context.assertEquals("England", map.get("name"));
+        context.assertEquals(11.0, map.get("odds"));
+        context.assertEquals(123456, ((Number) map.get("transaction_id")).intValue());
+    }
+}
@@ -0,0 +1,186 @@
+package skybet.test.rs;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import skybet.test.pojo.DecimalEvent;
+import skybet.test.pojo.WireFormat;
+import skybet.test.utils.AvailableTransformer;
+import skybet.test.utils.ContentEncoding;
+import skybet.test.utils.PackedRational;
+
+@RunWith(VertxUnitRunner.class)
+public class AvailableSnapshotTest {
+
+    private static final String AVAILABLE = "[{\"bet_id\":1,\"event\":\"World Cup 2018\",\"name\":\"England\","
+            + "\"odds\":{\"numerator\":10,\"denominator\":1}},"
+            + "{\"bet_id\":2,\"event\":\"Euro 2020\",\"name\":\"France\","
+            + "\"odds\":{\"numerator\":3,\"denominator\":1}},"
+            + "{\"bet_id\":3,\"event\":\"World Cup 2018\",\"name\":\"Brazil\","
+            + "\"odds\":{\"numerator\":1,\"denominator\":4}}]";
+
+    @Test
+    public void selectByEventTest(TestContext context) {
+        AvailableSnapshot snapshot = AvailableSnapshot.fromFractional(Buffer.buffer(AVAILABLE));
+
+        context.assertEquals(2, snapshot.count("World Cup 2018"));
+        context.assertEquals(0, snapshot.count("Ashes"));
+        context.assertEquals(3, snapshot.count(null));
+
+        JsonArray worldCup = new JsonArray(snapshot.select("World Cup 2018", 0, Integer.MAX_VALUE,
+                WireFormat.JSON, false).toString("UTF-8"));
+        context.assertEquals(2, worldCup.size());
+        context.assertEquals(1, worldCup.getJsonObject(0).getInteger("bet_id"));
+        context.assertEquals(3, worldCup.getJsonObject(1).getInteger("bet_id"));
+
+        JsonArray page = new JsonArray(snapshot.select(null, 1, 1, WireFormat.JSON, false).toString("UTF-8"));
+        context.assertEquals(1, page.size());
+        context.assertEquals(2, page.getJsonObject(0).getInteger("bet_id"));
+
+        context.assertEquals(0, new JsonArray(snapshot.select("World Cup 2018", 5, 10, WireFormat.JSON, false)
+                .toString("UTF-8")).size());
+        context.assertEquals(0, new JsonArray(snapshot.select("Ashes", 0, 10, WireFormat.JSON, false)
+                .toString("UTF-8")).size());
+    }
+
+    @Test
+    public void eventByBetIdTest(TestContext context) {
+        AvailableSnapshot snapshot = AvailableSnapshot.fromFractional(Buffer.buffer(AVAILABLE));
+
+        context.assertEquals(-1, snapshot.indexOf(4));
+        int i = snapshot.indexOf(3);
+        context.assertEquals(new JsonObject().put("bet_id", 3).put("event", "World Cup 2018").put("name", "Brazil")
+                .put("odds", 1.25), new JsonObject(snapshot.event(i, WireFormat.JSON, false).toString("UTF-8")));
+        context.assertEquals(DecimalEvent.builder().betId(3l).event("World Cup 2018").name("Brazil").odds(1.25).build(),
+                DecimalEvent.decode(snapshot.event(i, WireFormat.CBOR, false), WireFormat.CBOR));
+    }
+
+    @Test
+    public void missingBetIdNotIndexedTest(TestContext context) {
+        AvailableSnapshot snapshot = AvailableSnapshot.fromFractional(Buffer.buffer(
+                "[{\"event\":\"World Cup 2018\",\"name\":\"England\","
+                + "\"odds\":{\"numerator\":10,\"denominator\":1}},"
+                + "{\"bet_id\":\"two\",\"event\":\"World Cup 2018\",\"name\":\"Brazil\","
+                + "\"odds\":{\"numerator\":1,\"denominator\":4}},"
+                + "{\"bet_id\":0,\"event\":\"Euro 2020\",\"name\":\"France\","
+                + "\"odds\":{\"numerator\":3,\"denominator\":1}}]"));
+
+        // neither event without a whole number bet_id is taken for bet_id 0
+        context.assertEquals(3, snapshot.size());
+        context.assertEquals(2, snapshot.indexOf(0));
+        context.assertEquals(AvailableTransformer.NO_BET_ID, snapshot.betId(0));
+        context.assertEquals(AvailableTransformer.NO_BET_ID, snapshot.betId(1));
+        context.assertNull(new JsonArray(snapshot.body().toString("UTF-8")).getJsonObject(1).getValue("bet_id"));
+    }
+
+    @Test
+    public void representationsAgreeTest(TestContext context) {
+        // fields out of order, an unknown field and a 0 denominator
+        AvailableSnapshot snapshot = AvailableSnapshot.fromFractional(Buffer.buffer(
+                "[{\"odds\":{\"denominator\":1,\"numerator\":10},\"name\":\"England\",\"bet_id\":1,"
+                + "\"event\":\"World Cup 2018\",\"extra\":[1,{\"a\":2}]},"
+                + "{\"bet_id\":2,\"event\":\"World Cup 2018\",\"name\":\"Brazil\","
+                + "\"odds\":{\"numerator\":1,\"denominator\":0}}]"));
+
+        Buffer compact = snapshot.body();
+        context.assertEquals("[{\"bet_id\":1,\"event\":\"World Cup 2018\",\"name\":\"England\",\"odds\":11.0},"
+                + "{\"bet_id\":2,\"event\":\"World Cup 2018\",\"name\":\"Brazil\",\"odds\":null}]",
+                compact.toString("UTF-8"));
+        context.assertEquals(compact, snapshot.select(null, 0, Integer.MAX_VALUE, WireFormat.JSON, false));
+        context.assertEquals(compact, snapshot.select("World Cup 2018", 0, 2, WireFormat.JSON, false));
+        JsonArray pretty = new JsonArray(snapshot.body(WireFormat.JSON, true, ContentEncoding.IDENTITY)
+                .toString("UTF-8"));
+        context.assertEquals(new JsonArray(compact.toString("UTF-8")), pretty);
+        context.assertEquals(pretty.getJsonObject(1), new JsonObject(snapshot.event(1, WireFormat.JSON, false)
+                .toString("UTF-8")));
+    }
+
+    @Test
+    public void exactOddsTest(TestContext context) {
+        AvailableSnapshot snapshot = AvailableSnapshot.fromFractional(Buffer.buffer(
+                "[{\"bet_id\":1,\"event\":\"World Cup 2018\",\"name\":\"England\","
+                + "\"odds\":{\"numerator\":20,\"denominator\":2}},"
+                + "{\"bet_id\":2,\"event\":\"World Cup 2018\",\"name\":\"Brazil\","
+                + "\"odds\":{\"numerator\":1,\"denominator\":3}},"
+                + "{\"bet_id\":3,\"event\":\"Euro 2020\",\"name\":\"France\",\"odds\":null}]"));
+
+        // the price sky sent is kept as a reduced fraction, not a rounded
+        // decimal
+        context.assertEquals(PackedRational.of(10, 1), snapshot.odds(0));
+        context.assertEquals(11.0, snapshot.decimalOdds(0));
+        context.assertEquals(PackedRational.of(1, 3), snapshot.odds(1));
+        context.assertEquals(1.0 / 3 + 1, snapshot.decimalOdds(1));
+        context.assertEquals(AvailableTransformer.NO_ODDS, snapshot.odds(2));
+        context.assertTrue(Double.isNaN(snapshot.decimalOdds(2)));
+        context.assertNull(new JsonObject(snapshot.event(2, WireFormat.JSON, false).toString("UTF-8"))
+                .getValue("odds"));
+    }
+
+    @Test
+    public void diffTest(TestContext context) {
+        AvailableSnapshot previous = AvailableSnapshot.fromFractional(Buffer.buffer(AVAILABLE));
+        AvailableSnapshot next = AvailableSnapshot.fromFractional(Buffer.buffer(
+                "[{\"bet_id\":1,\"event\":\"World Cup 2018\",\"name\":\"England\","
+                + "\"odds\":{\"numerator\":10,\"denominator\":1}},"
+                + "{\"bet_id\":3,\"event\":\"World Cup 2018\",\"name\":\"Brazil\","
+                + "\"odds\":{\"numerator\":1,\"denominator\":2}},"
+                + "{\"bet_id\":4,\"event\":\"Euro 2020\",\"name\":\"Spain\","
+                + "\"odds\":{\"numerator\":5,\"denominator\":1}}]"));
+
+        // bet_id 3 changed odds, 4 is new, 2 was removed and 1 is unchanged
+        JsonObject delta = new JsonObject(AvailableSnapshot.diff(previous, next));
+        JsonArray updated = delta.getJsonArray("updated");
+        context.assertEquals(2, updated.size());
+        context.assertEquals(new JsonObject().put("bet_id", 3).put("event", "World Cup 2018").put("name", "Brazil")
+                .put("odds", 1.5), updated.getJsonObject(0));
+        context.assertEquals(4, updated.getJsonObject(1).getInteger("bet_id"));
+        context.assertEquals(new JsonArray().add(2), delta.getJsonArray("removed"));
+
+        context.assertNull(AvailableSnapshot.diff(previous, AvailableSnapshot.fromFractional(Buffer.buffer(AVAILABLE))));
+        JsonObject all = new JsonObject(AvailableSnapshot.diff(null, previous));
+        context.assertEquals(3, all.getJsonArray("updated").size());
+        context.assertEquals(0, all.getJsonArray("removed").size());
+    }
+
+    @Test
+    public void matchesTest(TestContext context) {
+        AvailableSnapshot snapshot = AvailableSnapshot.fromFractional(Buffer.buffer(AVAILABLE));
+        String etag = snapshot.etag();
+        context.assertTrue(matches(snapshot, etag));
+        context.assertTrue(matches(snapshot, "W/" + etag));
+        context.assertTrue(matches(snapshot, "\"a\", " + etag + " ,\"b\""));
+        context.assertTrue(matches(snapshot, "*"));
+        context.assertFalse(matches(snapshot, null));
+        context.assertFalse(matches(snapshot, "\"a\", W/\"b\""));
+        context.assertFalse(matches(snapshot, etag.substring(1, etag.length() - 1)));
+    }
+
+    @Test
+    public void matchesRepresentationTest(TestContext context) {
+        AvailableSnapshot snapshot = AvailableSnapshot.fromFractional(Buffer.buffer(AVAILABLE));
+        String json = snapshot.etag();
+        String cbor = snapshot.etag(WireFormat.CBOR, false, ContentEncoding.IDENTITY);
+        String gzip = snapshot.etag(WireFormat.JSON, false, ContentEncoding.GZIP);
+        context.assertNotEquals(json, cbor);
+        context.assertNotEquals(json, gzip);
+
+        // a client holding the json is sent the cbor in full, and the other
+        // way round
+        context.assertFalse(snapshot.matches(json, WireFormat.CBOR, false, ContentEncoding.IDENTITY));
+        context.assertTrue(snapshot.matches(cbor, WireFormat.CBOR, false, ContentEncoding.IDENTITY));
+        context.assertFalse(snapshot.matches(cbor, WireFormat.JSON, false, ContentEncoding.IDENTITY));
+        context.assertFalse(snapshot.matches(json, WireFormat.JSON, true, ContentEncoding.IDENTITY));
+        context.assertFalse(snapshot.matches(json, WireFormat.JSON, false, ContentEncoding.GZIP));
+        context.assertTrue(snapshot.matches(gzip, WireFormat.JSON, false, ContentEncoding.GZIP));
+        // pretty is ignored for cbor, so is its tag
+        context.assertTrue(snapshot.matches(cbor, WireFormat.CBOR, true, ContentEncoding.IDENTITY));
+    }
+
+    private static boolean matches(AvailableSnapshot snapshot, String ifNoneMatch) {
+        return snapshot.matches(ifNoneMatch, WireFormat.JSON, false, ContentEncoding.IDENTITY);
+    }
+}
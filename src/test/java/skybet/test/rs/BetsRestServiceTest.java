@@ -1,21 +1,41 @@
 package skybet.test.rs;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Verticle;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClientRequest;
 import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import skybet.test.mock.MockSkyApi;
 import skybet.test.pojo.DecimalBet;
 import skybet.test.pojo.DecimalPlacedBet;
 import skybet.test.pojo.FractionalBet;
 import skybet.test.pojo.FractionalOdds;
 import skybet.test.pojo.JsonError;
+import skybet.test.pojo.WireFormat;
+import skybet.test.utils.OddsConversionUtils;
 
 /**
  * This is our JUnit test for our verticle. The test uses vertx-unit, so we
@@ -26,6 +46,8 @@ public class BetsRestServiceTest {
 
     private Vertx vertx;
     private Integer port;
+    private int mockPort;
+    private final List<Vertx> others = new ArrayList<>();
 
     /**
      * Before executing our test, let's deploy our verticle.
@@ -41,30 +63,38 @@ public class BetsRestServiceTest {
         vertx = Vertx.vertx();
 
         // Let's configure the verticle to listen on the 'test' port (randomly picked).
-        // We create deployment options and set the _configuration_ json object:
-//        ServerSocket socket = new ServerSocket(0);
-//        port = socket.getLocalPort();
-//        socket.close();
-        // DeploymentOptions options = new DeploymentOptions();
-        // We pass the options as the second parameter of the deployVerticle method.
-        vertx.deployVerticle(BetsRestService.class.getName(), context.asyncAssertSuccess());
+        port = freePort();
+        mockPort = freePort();
+        // The service talks to the mock sky api rather than the live one.
+        deploy(context, vertx, new MockSkyApi(), new JsonObject().put("port", mockPort));
+        vertx.deployVerticle(BetsRestService.class.getName(), new DeploymentOptions()
+                .setConfig(new JsonObject()
+                        .put("port", port)
+                        .put("upstream", new JsonObject()
+                                .put("host", "localhost")
+                                .put("port", mockPort))),
+                context.asyncAssertSuccess());
     }
 
     /**
      * This method, called after our test, just cleanup everything by closing
-     * the vert.x instance
+     * the vert.x instance and any the test started of its own, whether the
+     * test passed or not.
      *
      * @param context the test context
      */
     @After
     public void tearDown(TestContext context) {
+        for (Vertx other : others) {
+            other.close(context.asyncAssertSuccess());
+        }
         vertx.close(context.asyncAssertSuccess());
     }
 
     @Test
     public void checkAvailable(TestContext context) {
         Async async = context.async();
-        vertx.createHttpClient().getNow(8080, "localhost", "/available", response -> {
+        vertx.createHttpClient().getNow(port, "localhost", "/available", response -> {
             context.assertEquals(response.statusCode(), 200);
             context.assertEquals(response.headers().get("content-type"), "application/json; charset=utf-8");
             async.complete();
@@ -72,6 +102,268 @@ public class BetsRestServiceTest {
 
     }
 
+    @Test
+    public void checkAvailableNotModified(TestContext context) {
+        Async async = context.async();
+        vertx.createHttpClient().getNow(port, "localhost", "/available", r -> {
+            context.assertEquals(200, r.statusCode());
+            String etag = r.getHeader("etag");
+            context.assertNotNull(etag);
+            String[] matching = {etag, "W/" + etag, "\"other\", " + etag, "*"};
+            for (String ifNoneMatch : matching) {
+                Async checked = context.async();
+                vertx.createHttpClient().get(port, "localhost", "/available", nm -> {
+                    context.assertEquals(304, nm.statusCode());
+                    context.assertEquals(etag, nm.getHeader("etag"));
+                    nm.bodyHandler(b -> {
+                        context.assertEquals(0, b.length());
+                        checked.complete();
+                    });
+                }).putHeader("if-none-match", ifNoneMatch).end();
+            }
+            Async modified = context.async();
+            vertx.createHttpClient().get(port, "localhost", "/available", m -> {
+                context.assertEquals(200, m.statusCode());
+                modified.complete();
+            }).putHeader("if-none-match", "\"other\"").end();
+            async.complete();
+        });
+    }
+
+    @Test
+    public void checkAvailableCompressed(TestContext context) {
+        Async async = context.async();
+        vertx.createHttpClient().getNow(port, "localhost", "/available", r -> r.bodyHandler(identity -> {
+            context.assertNull(r.getHeader("content-encoding"));
+            String[] codings = {"gzip", "deflate"};
+            for (String coding : codings) {
+                Async decoded = context.async();
+                vertx.createHttpClient().get(port, "localhost", "/available", c -> c.bodyHandler(b -> {
+                    context.assertEquals(200, c.statusCode());
+                    context.assertEquals(coding, c.getHeader("content-encoding"));
+                    context.assertTrue(c.getHeader("vary").contains("Accept-Encoding"));
+                    context.assertTrue(b.length() < identity.length());
+                    context.assertEquals(identity, inflate(coding, b));
+                    decoded.complete();
+                })).putHeader("accept-encoding", coding).end();
+            }
+            async.complete();
+        }));
+    }
+
+    @Test
+    public void checkAvailableCbor(TestContext context) {
+        Async async = context.async();
+        vertx.createHttpClient().getNow(port, "localhost", "/available", r -> r.bodyHandler(json -> {
+            JsonArray events = new JsonArray(json.toString("UTF-8"));
+            vertx.createHttpClient().get(port, "localhost", "/available", c -> c.bodyHandler(b -> {
+                context.assertEquals(200, c.statusCode());
+                context.assertEquals("application/cbor", c.getHeader("content-type"));
+                context.assertTrue(b.length() < json.length());
+                JsonNode cbor = readCbor(b);
+                context.assertEquals(events.size(), cbor.size());
+                for (int i = 0; i < events.size(); i++) {
+                    JsonObject event = events.getJsonObject(i);
+                    context.assertEquals(event.getLong("bet_id"), cbor.get(i).get("bet_id").asLong());
+                    context.assertEquals(event.getString("event"), cbor.get(i).get("event").asText());
+                    context.assertEquals(event.getString("name"), cbor.get(i).get("name").asText());
+                    context.assertEquals(event.getDouble("odds"), cbor.get(i).get("odds").asDouble());
+                }
+                async.complete();
+            })).putHeader("accept", "application/cbor").end();
+        }));
+    }
+
+    @Test
+    public void checkAvailableEvent(TestContext context) {
+        Async async = context.async();
+        get(port, "/available", (r, all) -> {
+            JsonObject first = new JsonArray(all.toString("UTF-8")).getJsonObject(0);
+            get(port, "/available/" + first.getLong("bet_id"), (e, event) -> {
+                context.assertEquals(200, e.statusCode());
+                context.assertEquals(first, new JsonObject(event.toString("UTF-8")));
+                get(port, "/available/abc", (n, nonNumeric) -> {
+                    context.assertEquals(400, n.statusCode());
+                    context.assertEquals(error(400, "Bad Request"), new JsonObject(nonNumeric.toString("UTF-8")));
+                    get(port, "/available/" + (MockSkyApi.DEFAULT_EVENTS + 1), (u, unknown) -> {
+                        context.assertEquals(404, u.statusCode());
+                        context.assertEquals(error(404, "Not Found"), new JsonObject(unknown.toString("UTF-8")));
+                        async.complete();
+                    });
+                });
+            });
+        });
+    }
+
+    @Test
+    public void checkAvailablePage(TestContext context) {
+        Async async = context.async();
+        get(port, "/available", (r, all) -> {
+            List<Object> events = new ArrayList<>();
+            for (Object event : new JsonArray(all.toString("UTF-8"))) {
+                if ("Event 2".equals(((JsonObject) event).getString("event"))) {
+                    events.add(event);
+                }
+            }
+            get(port, "/available?event=Event%202&offset=2&limit=3", (p, page) -> {
+                context.assertEquals(200, p.statusCode());
+                context.assertEquals(String.valueOf(events.size()), p.getHeader("x-total-count"));
+                context.assertEquals(new JsonArray(events.subList(2, 5)), new JsonArray(page.toString("UTF-8")));
+                get(port, "/available?limit=3", (l, limited) -> {
+                    context.assertEquals(String.valueOf(MockSkyApi.DEFAULT_EVENTS), l.getHeader("x-total-count"));
+                    context.assertEquals(3, new JsonArray(limited.toString("UTF-8")).size());
+                    get(port, "/available?limit=-1", (n, negative) -> {
+                        context.assertEquals(400, n.statusCode());
+                        context.assertEquals(error(400, "Bad Request"), new JsonObject(negative.toString("UTF-8")));
+                        get(port, "/available?offset=abc", (o, nonNumeric) -> {
+                            context.assertEquals(400, o.statusCode());
+                            context.assertNull(o.getHeader("x-total-count"));
+                            async.complete();
+                        });
+                    });
+                });
+            });
+        });
+    }
+
+    @Test
+    public void checkAvailableConditionalUpstream(TestContext context) {
+        int servicePort = freePort();
+        int skyPort = freePort();
+        Vertx other = other();
+        MockSkyApi mock = new MockSkyApi();
+        deploy(context, other, mock, new JsonObject().put("port", skyPort));
+        deploy(context, other, new BetsRestService(), new JsonObject()
+                .put("port", servicePort)
+                .put("availableCacheTtl", 0)
+                .put("upstream", new JsonObject()
+                        .put("host", "localhost")
+                        .put("port", skyPort)));
+        Async async = context.async();
+        other.createHttpClient().getNow(servicePort, "localhost", "/available", first -> {
+            String etag = first.getHeader("etag");
+            // the snapshot is stale at once, so this refresh is sent to sky
+            // with the ETag sky gave and answered with a 304
+            other.createHttpClient().getNow(servicePort, "localhost", "/available", second -> {
+                other.setPeriodic(10, id -> {
+                    if (mock.notModified() == 0) {
+                        return;
+                    }
+                    other.cancelTimer(id);
+                    other.createHttpClient().getNow(servicePort, "localhost", "/available", third -> {
+                        context.assertEquals(200, third.statusCode());
+                        context.assertEquals(etag, third.getHeader("etag"));
+                        third.bodyHandler(b -> {
+                            context.assertEquals(MockSkyApi.DEFAULT_EVENTS, new JsonArray(b.toString("UTF-8")).size());
+                            async.complete();
+                        });
+                    });
+                });
+            });
+        });
+    }
+
+    @Test
+    public void checkAvailableHedged(TestContext context) {
+        int skyPort = freePort();
+        int servicePort = freePort();
+        Vertx other = other();
+        deploy(context, other, new MockSkyApi(), new JsonObject()
+                .put("port", skyPort)
+                .put("availableLatency", new JsonObject().put("distribution", "fixed").put("value", 200)));
+        deploy(context, other, new BetsRestService(), new JsonObject()
+                .put("port", servicePort)
+                .put("upstream", new JsonObject()
+                        .put("host", "localhost")
+                        .put("port", skyPort)
+                        .put("hedgeAvailable", true)
+                        .put("hedgeDelay", 50)));
+        Async async = context.async();
+        // sky is slower than the hedge delay, so a second request is sent
+        // and the first answer is used
+        other.createHttpClient().getNow(servicePort, "localhost", "/available", r -> r.bodyHandler(b -> {
+            context.assertEquals(200, r.statusCode());
+            context.assertEquals(MockSkyApi.DEFAULT_EVENTS, new JsonArray(b.toString("UTF-8")).size());
+            other.createHttpClient().getNow(servicePort, "localhost", "/metrics", m -> m.bodyHandler(text -> {
+                context.assertTrue(text.toString("UTF-8").contains("skybet_upstream_hedged_total 1\n"));
+                async.complete();
+            }));
+        }));
+    }
+
+    @Test
+    public void checkAvailableUpstreamTimeout(TestContext context) {
+        int skyPort = freePort();
+        int servicePort = freePort();
+        Vertx other = other();
+        deploy(context, other, new MockSkyApi(), new JsonObject()
+                .put("port", skyPort)
+                .put("availableLatency", new JsonObject().put("distribution", "fixed").put("value", 500)));
+        deploy(context, other, new BetsRestService(), new JsonObject()
+                .put("port", servicePort)
+                .put("upstream", new JsonObject()
+                        .put("host", "localhost")
+                        .put("port", skyPort)
+                        .put("requestTimeout", 100)
+                        .put("failureThreshold", 1)
+                        .put("resetTimeout", 60000)));
+        Async async = context.async();
+        // sky misses the deadline, which opens the breaker, so the next
+        // request is refused without asking sky
+        other.createHttpClient().getNow(servicePort, "localhost", "/available", r -> r.bodyHandler(b -> {
+            context.assertEquals(504, r.statusCode());
+            context.assertEquals(error(504, "Gateway Timeout"), new JsonObject(b.toString("UTF-8")));
+            other.createHttpClient().getNow(servicePort, "localhost", "/available", a -> a.bodyHandler(c -> {
+                context.assertEquals(503, a.statusCode());
+                context.assertEquals(error(503, "Service Unavailable"), new JsonObject(c.toString("UTF-8")));
+                async.complete();
+            }));
+        }));
+    }
+
+    @Test
+    public void checkAvailableOffloaded(TestContext context) {
+        int skyPort = freePort();
+        int offloadedPort = freePort();
+        int inPlacePort = freePort();
+        // each service has its own vertx so they do not share a snapshot, one
+        // converts the large sky payload on a worker in chunks and the other
+        // on the event loop, with a budget every handler goes over
+        Vertx offloading = other();
+        Vertx inPlace = other();
+        deploy(context, offloading, new MockSkyApi(), new JsonObject()
+                .put("port", skyPort)
+                .put("events", 5000));
+        JsonObject upstream = new JsonObject().put("host", "localhost").put("port", skyPort);
+        deploy(context, offloading, new BetsRestService(), new JsonObject()
+                .put("port", offloadedPort)
+                .put("upstream", upstream));
+        deploy(context, inPlace, new BetsRestService(), new JsonObject()
+                .put("port", inPlacePort)
+                .put("offloadThreshold", Integer.MAX_VALUE)
+                .put("eventLoopBudget", -1)
+                .put("upstream", upstream));
+        Async async = context.async();
+        get(offloadedPort, "/available", (o, offloaded) -> {
+            context.assertEquals(200, o.statusCode());
+            context.assertTrue(offloaded.length() >= BetsRestService.DEFAULT_OFFLOAD_THRESHOLD);
+            get(inPlacePort, "/available", (i, converted) -> {
+                context.assertEquals(200, i.statusCode());
+                context.assertEquals(converted, offloaded);
+                context.assertEquals(i.getHeader("etag"), o.getHeader("etag"));
+                get(offloadedPort, "/metrics", (m, text) -> {
+                    context.assertTrue(text.toString("UTF-8").contains("skybet_conversions_offloaded_total 1\n"));
+                    get(inPlacePort, "/metrics", (n, inPlaceText) -> {
+                        String metrics = inPlaceText.toString("UTF-8");
+                        context.assertTrue(metrics.contains("skybet_conversions_offloaded_total 0\n"));
+                        context.assertFalse(metrics.contains("skybet_event_loop_over_budget_total 0\n"));
+                        async.complete();
+                    });
+                });
+            });
+        });
+    }
+
     @Test
     public void checkBetsBadRequest(TestContext context) {
         Async async = context.async();
@@ -83,7 +375,7 @@ public class BetsRestServiceTest {
                         .build())
                 .stake(10)
                 .build();
-        vertx.createHttpClient().post(8080, "localhost", "/bets", r -> {
+        vertx.createHttpClient().post(port, "localhost", "/bets", r -> {
             context.assertEquals(r.statusCode(), 400);
             context.assertEquals(r.headers().get("content-type"), "application/json; charset=utf-8");
             context.assertEquals(r.statusMessage(), "Bad Request");
@@ -108,7 +400,7 @@ public class BetsRestServiceTest {
                 .odds(null)
                 .stake(10)
                 .build();
-        vertx.createHttpClient().post(8080, "localhost", "/bets", r -> {
+        vertx.createHttpClient().post(port, "localhost", "/bets", r -> {
             context.assertEquals(r.statusCode(), 400);
             context.assertEquals(r.headers().get("content-type"), "application/json; charset=utf-8");
             context.assertEquals(r.statusMessage(), "Bad Request");
@@ -133,7 +425,7 @@ public class BetsRestServiceTest {
                 .odds(9.0)
                 .stake(10)
                 .build();
-        vertx.createHttpClient().post(8080, "localhost", "/bets", r -> {
+        vertx.createHttpClient().post(port, "localhost", "/bets", r -> {
             context.assertEquals(r.statusCode(), 418);
             context.assertEquals(r.headers().get("content-type"), "application/json; charset=utf-8");
             context.assertEquals(r.statusMessage(), "I'm a teapot");
@@ -154,7 +446,7 @@ public class BetsRestServiceTest {
                 .odds(11.0)
                 .stake(10)
                 .build();
-        vertx.createHttpClient().post(8080, "localhost", "/bets", r -> {
+        vertx.createHttpClient().post(port, "localhost", "/bets", r -> {
             context.assertEquals(r.statusCode(), 201);
             context.assertEquals(r.headers().get("content-type"), "application/json; charset=utf-8");
             context.assertEquals(r.statusMessage(), "Created");
@@ -166,4 +458,587 @@ public class BetsRestServiceTest {
 
     }
 
+    @Test
+    public void checkBetsCbor(TestContext context) {
+        Async async = context.async();
+        DecimalBet db = DecimalBet.builder()
+                .betId(1l)
+                .odds(11.0)
+                .stake(10)
+                .build();
+        vertx.createHttpClient().post(port, "localhost", "/bets", r -> r.bodyHandler(b -> {
+            context.assertEquals(201, r.statusCode());
+            context.assertEquals("application/cbor", r.getHeader("content-type"));
+            DecimalPlacedBet placed = DecimalPlacedBet.decode(b, WireFormat.CBOR);
+            context.assertEquals(1L, placed.getBetId());
+            context.assertEquals(11.0, placed.getOdds());
+            context.assertNotNull(placed.getTransactionId());
+            async.complete();
+        })).putHeader("content-type", "application/cbor")
+                .putHeader("accept", "application/cbor")
+                .end(db.encode(WireFormat.CBOR));
+    }
+
+    @Test
+    public void checkBetsAvailableOdds(TestContext context) {
+        Async async = context.async();
+        vertx.createHttpClient().getNow(port, "localhost", "/available", r -> r.bodyHandler(b -> {
+            // every price served can be bet on as it was served, including
+            // the sevenths whose decimal odds do not terminate
+            JsonArray events = new JsonArray(b.toString("UTF-8"));
+            int[] placed = {0};
+            for (int i = 0; i < events.size(); i++) {
+                JsonObject event = events.getJsonObject(i);
+                double odds = event.getDouble("odds");
+                post(port, "/bets", Buffer.buffer(bet(event.getLong("bet_id"), odds).encode()), (p, c) -> {
+                    context.assertEquals(201, p.statusCode());
+                    context.assertEquals(odds, new JsonObject(c.toString("UTF-8")).getDouble("odds"));
+                    if (++placed[0] == events.size()) {
+                        async.complete();
+                    }
+                });
+            }
+        }));
+    }
+
+    @Test
+    public void checkBetsIdempotent(TestContext context) {
+        Async async = context.async();
+        Buffer placed = Buffer.buffer(bet(1, odds(1)).encode());
+        post(vertx, port, "/bets", "key-1", placed, (r, receipt) -> {
+            context.assertEquals(201, r.statusCode());
+            // the retry is answered with the first receipt, not placed again
+            post(vertx, port, "/bets", "key-1", placed, (p, replayed) -> {
+                context.assertEquals(201, p.statusCode());
+                context.assertEquals(receipt, replayed);
+                Buffer other = Buffer.buffer(bet(1, odds(1)).put("stake", 20).encode());
+                post(vertx, port, "/bets", "key-1", other, (c, conflict) -> {
+                    context.assertEquals(422, c.statusCode());
+                    context.assertEquals(error(422, "Unprocessable Entity"), new JsonObject(conflict.toString("UTF-8")));
+                    async.complete();
+                });
+            });
+        });
+    }
+
+    @Test
+    public void checkBetsIdempotencyKeyInvalid(TestContext context) {
+        Async async = context.async();
+        Buffer placed = Buffer.buffer(bet(1, odds(1)).encode());
+        char[] tooLong = new char[BetsRestService.MAX_IDEMPOTENCY_KEY_LENGTH + 1];
+        Arrays.fill(tooLong, 'k');
+        post(vertx, port, "/bets", "", placed, (r, empty) -> {
+            context.assertEquals(400, r.statusCode());
+            context.assertEquals(error(400, "Bad Request"), new JsonObject(empty.toString("UTF-8")));
+            post(vertx, port, "/bets", new String(tooLong), placed, (l, longer) -> {
+                context.assertEquals(400, l.statusCode());
+                context.assertEquals(error(400, "Bad Request"), new JsonObject(longer.toString("UTF-8")));
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void checkBetsIdempotencyCacheFull(TestContext context) {
+        int skyPort = freePort();
+        int servicePort = freePort();
+        Vertx other = other();
+        deploy(context, other, new MockSkyApi(), new JsonObject()
+                .put("port", skyPort)
+                .put("betsLatency", new JsonObject().put("distribution", "fixed").put("value", 300)));
+        deploy(context, other, new BetsRestService(), new JsonObject()
+                .put("port", servicePort)
+                .put("idempotencyCacheSize", 1)
+                .put("upstream", new JsonObject().put("host", "localhost").put("port", skyPort)));
+        Async async = context.async();
+        Async placed = context.async();
+        Buffer body = Buffer.buffer(bet(1, odds(1)).encode());
+        // the only key is still waiting on sky, so a new key cannot be
+        // remembered and is shed rather than placed without protection
+        post(other, servicePort, "/bets", "key-1", body, (r, receipt) -> {
+            context.assertEquals(201, r.statusCode());
+            placed.complete();
+        });
+        other.setTimer(100, t -> post(other, servicePort, "/bets", "key-2", body, (r, shed) -> {
+            context.assertEquals(503, r.statusCode());
+            context.assertNotNull(r.getHeader("retry-after"));
+            context.assertEquals(error(503, "Service Unavailable"), new JsonObject(shed.toString("UTF-8")));
+            async.complete();
+        }));
+    }
+
+    @Test
+    public void checkBlockingMode(TestContext context) {
+        int servicePort = freePort();
+        // a vertx of its own so /available is loaded through the blocking
+        // upstream rather than served from the snapshot the default instance
+        // shares
+        Vertx other = other();
+        deploy(context, other, new BetsRestService(), new JsonObject()
+                .put("port", servicePort)
+                .put("executionMode", BetsRestService.BLOCKING_MODE)
+                .put("upstream", new JsonObject()
+                        .put("host", "localhost")
+                        .put("port", mockPort)));
+
+        Async async = context.async();
+        DecimalBet db = DecimalBet.builder()
+                .betId(1l)
+                .odds(11.0)
+                .stake(10)
+                .build();
+        other.createHttpClient().getNow(servicePort, "localhost", "/available", r -> {
+            context.assertEquals(r.statusCode(), 200);
+            r.bodyHandler(b -> {
+                context.assertEquals(MockSkyApi.DEFAULT_EVENTS, new JsonArray(b.toString("UTF-8")).size());
+                other.createHttpClient().post(servicePort, "localhost", "/bets", p -> {
+                    context.assertEquals(p.statusCode(), 201);
+                    p.bodyHandler(c -> {
+                        context.assertNotNull(Json.decodeValue(c.toString("UTF-8"), DecimalPlacedBet.class)
+                                .getTransactionId());
+                        async.complete();
+                    });
+                }).putHeader("content-type", "application/json; charset=utf-8").end(db.toJsonString());
+            });
+        });
+    }
+
+    @Test
+    public void checkBetsTooLarge(TestContext context) {
+        int servicePort = freePort();
+        // a vertx of its own so the response counters only cover this bet
+        Vertx other = other();
+        deploy(context, other, new BetsRestService(), new JsonObject()
+                .put("port", servicePort)
+                .put("upstream", new JsonObject()
+                        .put("host", "localhost")
+                        .put("port", mockPort)));
+        Async async = context.async();
+        JsonObject bet = bet(1, odds(1));
+        StringBuilder padding = new StringBuilder();
+        while (padding.length() <= BetsRestService.DEFAULT_MAX_BET_BODY_SIZE) {
+            padding.append("padding ");
+        }
+        bet.put("padding", padding.toString());
+        post(servicePort, "/bets", Buffer.buffer(bet.encode()), (r, b) -> {
+            context.assertEquals(413, r.statusCode());
+            context.assertEquals(error(413, "Request Entity Too Large"), new JsonObject(b.toString("UTF-8")));
+            other.createHttpClient().getNow(servicePort, "localhost", "/metrics", m -> m.bodyHandler(text -> {
+                context.assertTrue(text.toString("UTF-8").contains("skybet_responses_total{code=\"413\"} 1\n"));
+                async.complete();
+            }));
+        });
+    }
+
+    @Test
+    public void checkUnknownExecutionMode(TestContext context) {
+        int servicePort = freePort();
+        vertx.deployVerticle(BetsRestService.class.getName(), new DeploymentOptions()
+                .setConfig(new JsonObject().put("port", servicePort).put("executionMode", "threads")),
+                context.asyncAssertFailure());
+    }
+
+    @Test
+    public void checkBatch(TestContext context) {
+        Async async = context.async();
+        JsonArray bets = new JsonArray()
+                .add(bet(1, odds(1)))
+                .add(new JsonObject().put("bet_id", 2))
+                .add(bet(3, odds(3) + 1))
+                .add(bet(4, odds(4)))
+                .add(bet(1000, 2.0));
+        post(port, "/bets/batch", Buffer.buffer(bets.encode()), (r, b) -> {
+            context.assertEquals(200, r.statusCode());
+            JsonArray results = new JsonArray(b.toString("UTF-8"));
+            context.assertEquals(5, results.size());
+            context.assertEquals(1L, results.getJsonObject(0).getLong("bet_id"));
+            context.assertEquals(odds(1), results.getJsonObject(0).getDouble("odds"));
+            context.assertNotNull(results.getJsonObject(0).getLong("transaction_id"));
+            context.assertEquals(error(400, "Bad Request"), results.getJsonObject(1));
+            context.assertEquals(error(418, "Incorrect Odds"), results.getJsonObject(2));
+            context.assertEquals(4L, results.getJsonObject(3).getLong("bet_id"));
+            context.assertEquals(odds(4), results.getJsonObject(3).getDouble("odds"));
+            context.assertEquals(error(404, "Invalid Bet ID"), results.getJsonObject(4));
+            async.complete();
+        });
+    }
+
+    @Test
+    public void checkBatchTooLarge(TestContext context) {
+        Async async = context.async();
+        JsonArray bets = new JsonArray();
+        for (int i = 0; i < BetsRestService.DEFAULT_MAX_BATCH_SIZE + 1; i++) {
+            bets.add(bet(1, odds(1)));
+        }
+        post(port, "/bets/batch", Buffer.buffer(bets.encode()), (r, b) -> {
+            context.assertEquals(400, r.statusCode());
+            context.assertEquals(error(400, "Bad Request"), new JsonObject(b.toString("UTF-8")));
+            async.complete();
+        });
+    }
+
+    @Test
+    public void checkBatchNotArray(TestContext context) {
+        Async async = context.async();
+        post(port, "/bets/batch", Buffer.buffer(bet(1, odds(1)).encode()), (r, b) -> {
+            context.assertEquals(400, r.statusCode());
+            async.complete();
+        });
+    }
+
+    @Test
+    public void checkBatchConcurrency(TestContext context) {
+        int servicePort = freePort();
+        // a vertx of its own so the upstream counters only cover this batch
+        Vertx other = other();
+        deploy(context, other, new BetsRestService(), new JsonObject()
+                .put("port", servicePort)
+                .put("batchConcurrency", 2)
+                .put("upstream", new JsonObject()
+                        .put("host", "localhost")
+                        .put("port", mockPort)));
+
+        Async async = context.async();
+        JsonArray bets = new JsonArray();
+        for (int i = 1; i <= 6; i++) {
+            bets.add(bet(i, odds(i)));
+        }
+        post(servicePort, "/bets/batch", Buffer.buffer(bets.encode()), (r, b) -> {
+            JsonArray results = new JsonArray(b.toString("UTF-8"));
+            for (int i = 0; i < results.size(); i++) {
+                context.assertEquals(i + 1L, results.getJsonObject(i).getLong("bet_id"));
+            }
+            other.createHttpClient().getNow(servicePort, "localhost", "/metrics", m -> m.bodyHandler(text -> {
+                context.assertTrue(text.toString("UTF-8").contains("skybet_upstream_requests_total 6\n"));
+                context.assertTrue(text.toString("UTF-8").contains("skybet_upstream_peak_in_flight 2\n"));
+                async.complete();
+            }));
+        });
+    }
+
+    @Test
+    public void checkBetsQueued(TestContext context) {
+        int servicePort = freePort();
+        int skyPort = freePort();
+        // one bet in flight at a time against a slow sky, so the second bet
+        // is queued with its body unread until the first is answered
+        Vertx other = other();
+        deploy(context, other, new MockSkyApi(), new JsonObject()
+                .put("port", skyPort)
+                .put("betsLatency", new JsonObject().put("distribution", "fixed").put("value", 200)));
+        deploy(context, other, new BetsRestService(), new JsonObject()
+                .put("port", servicePort)
+                .put("admission", new JsonObject().put(ServiceMetrics.BETS, new JsonObject()
+                        .put("maxInFlight", 1)
+                        .put("maxQueued", 1)))
+                .put("upstream", new JsonObject()
+                        .put("host", "localhost")
+                        .put("port", skyPort)));
+        Async async = context.async();
+        int[] placed = {0};
+        for (long betId = 1; betId <= 2; betId++) {
+            long expected = betId;
+            post(servicePort, "/bets", Buffer.buffer(bet(betId, odds(betId)).encode()), (r, b) -> {
+                context.assertEquals(201, r.statusCode());
+                context.assertEquals(expected, new JsonObject(b.toString("UTF-8")).getLong("bet_id"));
+                if (++placed[0] == 2) {
+                    async.complete();
+                }
+            });
+        }
+    }
+
+    @Test
+    public void checkBetsShed(TestContext context) {
+        int servicePort = freePort();
+        int skyPort = freePort();
+        // one bet in flight and no queue, so a second bet is shed at once
+        Vertx other = other();
+        deploy(context, other, new MockSkyApi(), new JsonObject()
+                .put("port", skyPort)
+                .put("betsLatency", new JsonObject().put("distribution", "fixed").put("value", 500)));
+        deploy(context, other, new BetsRestService(), new JsonObject()
+                .put("port", servicePort)
+                .put("retryAfter", 3)
+                .put("admission", new JsonObject().put(ServiceMetrics.BETS, new JsonObject()
+                        .put("maxInFlight", 1)
+                        .put("maxQueued", 0)))
+                .put("upstream", new JsonObject()
+                        .put("host", "localhost")
+                        .put("port", skyPort)));
+        Async async = context.async();
+        Async first = context.async();
+        boolean[] placed = {false};
+        post(servicePort, "/bets", Buffer.buffer(bet(1, odds(1)).encode()), (r, b) -> {
+            context.assertEquals(201, r.statusCode());
+            placed[0] = true;
+            first.complete();
+        });
+        vertx.setTimer(100, t -> post(servicePort, "/bets", Buffer.buffer(bet(2, odds(2)).encode()), (r, b) -> {
+            context.assertFalse(placed[0]);
+            context.assertEquals(503, r.statusCode());
+            context.assertEquals("3", r.getHeader("retry-after"));
+            context.assertEquals(error(503, "Service Unavailable"), new JsonObject(b.toString("UTF-8")));
+            async.complete();
+        }));
+    }
+
+    @Test
+    public void checkBetsQueueDeadline(TestContext context) {
+        int servicePort = freePort();
+        int skyPort = freePort();
+        // the second bet is queued behind a slow one, and its deadline passes
+        // long before a slot frees up
+        Vertx other = other();
+        deploy(context, other, new MockSkyApi(), new JsonObject()
+                .put("port", skyPort)
+                .put("betsLatency", new JsonObject().put("distribution", "fixed").put("value", 1000)));
+        deploy(context, other, new BetsRestService(), new JsonObject()
+                .put("port", servicePort)
+                .put("admission", new JsonObject().put(ServiceMetrics.BETS, new JsonObject()
+                        .put("maxInFlight", 1)
+                        .put("maxQueued", 1)))
+                .put("upstream", new JsonObject()
+                        .put("host", "localhost")
+                        .put("port", skyPort)));
+        Async async = context.async();
+        Async first = context.async();
+        boolean[] placed = {false};
+        post(servicePort, "/bets", Buffer.buffer(bet(1, odds(1)).encode()), (r, b) -> {
+            context.assertEquals(201, r.statusCode());
+            placed[0] = true;
+            first.complete();
+        });
+        vertx.setTimer(100, t -> {
+            long sent = System.currentTimeMillis();
+            vertx.createHttpClient().post(servicePort, "localhost", "/bets", r -> r.bodyHandler(b -> {
+                context.assertFalse(placed[0]);
+                context.assertTrue(System.currentTimeMillis() - sent >= 200);
+                context.assertEquals(503, r.statusCode());
+                context.assertEquals(String.valueOf(BetsRestService.DEFAULT_RETRY_AFTER), r.getHeader("retry-after"));
+                context.assertEquals(error(503, "Service Unavailable"), new JsonObject(b.toString("UTF-8")));
+                async.complete();
+            })).putHeader("content-type", "application/json; charset=utf-8")
+                    .putHeader("x-request-timeout", "200")
+                    .end(bet(2, odds(2)).encode());
+        });
+    }
+
+    @Test
+    public void checkValidateBets(TestContext context) {
+        int servicePort = freePort();
+        Vertx other = validating(context, servicePort, BetsRestService.DEFAULT_VALIDATE_MAX_AGE);
+        Async async = context.async();
+        other.createHttpClient().getNow(servicePort, "localhost", "/available", r -> r.bodyHandler(events -> {
+            // an unknown bet and a stale price are turned away without
+            // asking sky, which would have said "Invalid Bet ID"
+            post(servicePort, "/bets", Buffer.buffer(bet(1000, 2.0).encode()), (unknown, b) -> {
+                context.assertEquals(404, unknown.statusCode());
+                context.assertEquals(error(404, "Not Found"), new JsonObject(b.toString("UTF-8")));
+                post(servicePort, "/bets", Buffer.buffer(bet(3, odds(3) + 1).encode()), (stale, c) -> {
+                    context.assertEquals(418, stale.statusCode());
+                    context.assertEquals(error(418, "Incorrect Odds").put("currentOdds", odds(3)),
+                            new JsonObject(c.toString("UTF-8")));
+                    other.createHttpClient().getNow(servicePort, "localhost", "/metrics", m -> m.bodyHandler(text -> {
+                        context.assertTrue(text.toString("UTF-8").contains("skybet_bets_rejected_total 2\n"));
+                        context.assertTrue(text.toString("UTF-8").contains("skybet_upstream_requests_total 1\n"));
+                        async.complete();
+                    }));
+                });
+            });
+        }));
+    }
+
+    @Test
+    public void checkValidateBetsStaleSnapshot(TestContext context) {
+        int servicePort = freePort();
+        Vertx other = validating(context, servicePort, 1);
+        Async async = context.async();
+        other.createHttpClient().getNow(servicePort, "localhost", "/available", r -> r.bodyHandler(events -> {
+            // once the events are older than validateMaxAge the bet is left
+            // for sky to decide
+            other.setTimer(20, id -> post(servicePort, "/bets", Buffer.buffer(bet(1000, 2.0).encode()), (unknown, b) -> {
+                context.assertEquals(404, unknown.statusCode());
+                context.assertEquals("Invalid Bet ID", new JsonObject(b.toString("UTF-8")).getString("error"));
+                other.createHttpClient().getNow(servicePort, "localhost", "/metrics", m -> m.bodyHandler(text -> {
+                    context.assertTrue(text.toString("UTF-8").contains("skybet_bets_rejected_total 0\n"));
+                    async.complete();
+                }));
+            }));
+        }));
+    }
+
+    @Test
+    public void checkStreamServerSentEvents(TestContext context) {
+        int servicePort = freePort();
+        Vertx other = streaming(context, freePort(), servicePort);
+        Async async = context.async();
+        other.createHttpClient().getNow(servicePort, "localhost", "/available/stream", r -> {
+            context.assertEquals(200, r.statusCode());
+            context.assertEquals("text/event-stream; charset=utf-8", r.headers().get("content-type"));
+            StringBuilder received = new StringBuilder();
+            boolean[] done = {false};
+            r.handler(chunk -> {
+                received.append(chunk.toString("UTF-8"));
+                String text = received.toString();
+                if (!done[0] && text.contains("event: delta\ndata: {\"updated\":[{")) {
+                    done[0] = true;
+                    context.assertTrue(text.startsWith("event: snapshot\ndata: [{"));
+                    context.assertTrue(text.indexOf("event: snapshot") < text.indexOf("event: delta"));
+                    // the open stream is already timed, to its first event
+                    other.createHttpClient().getNow(servicePort, "localhost", "/metrics", m -> m.bodyHandler(metrics -> {
+                        context.assertTrue(metrics.toString("UTF-8").contains(
+                                "skybet_request_duration_seconds_count{route=\"/available/stream\"} 1\n"));
+                        async.complete();
+                    }));
+                }
+            });
+        });
+    }
+
+    @Test
+    public void checkStreamWebSocket(TestContext context) {
+        int servicePort = freePort();
+        Vertx other = streaming(context, freePort(), servicePort);
+        Async async = context.async();
+        other.createHttpClient().websocket(servicePort, "localhost", "/available/ws", ws -> {
+            int[] messages = {0};
+            ws.handler(frame -> {
+                JsonObject message = new JsonObject(frame.toString("UTF-8"));
+                messages[0]++;
+                if (messages[0] == 1) {
+                    context.assertEquals("snapshot", message.getString("type"));
+                    context.assertEquals(MockSkyApi.DEFAULT_EVENTS, message.getJsonArray("data").size());
+                } else if (messages[0] == 2) {
+                    context.assertEquals("delta", message.getString("type"));
+                    context.assertFalse(message.getJsonObject("data").getJsonArray("updated").isEmpty());
+                    async.complete();
+                }
+            });
+        });
+    }
+
+    /**
+     *
+     * This method deploys a verticle and waits for it to start.
+     */
+    private static void deploy(TestContext context, Vertx vertx, Verticle verticle, JsonObject config) {
+        Async deployed = context.async();
+        vertx.deployVerticle(verticle, new DeploymentOptions().setConfig(config),
+                context.asyncAssertSuccess(id -> deployed.complete()));
+        deployed.awaitSuccess();
+    }
+
+    /**
+     *
+     * This method starts a mock sky api whose odds keep changing, and a
+     * service refreshing from it every 50ms, in a vertx of their own.
+     */
+    private Vertx streaming(TestContext context, int mockPort, int port) {
+        Vertx other = other();
+        deploy(context, other, new MockSkyApi(), new JsonObject()
+                .put("port", mockPort)
+                .put("oddsDriftInterval", 20));
+        deploy(context, other, new BetsRestService(), new JsonObject()
+                .put("port", port)
+                .put("availableCacheTtl", 50)
+                .put("upstream", new JsonObject()
+                        .put("host", "localhost")
+                        .put("port", mockPort)));
+        return other;
+    }
+
+    /**
+     *
+     * This method starts a service validating bets against events loaded
+     * within validateMaxAge, in a vertx of its own so its events and counters
+     * are not shared.
+     */
+    private Vertx validating(TestContext context, int port, long validateMaxAge) {
+        Vertx other = other();
+        deploy(context, other, new BetsRestService(), new JsonObject()
+                .put("port", port)
+                .put("validateBets", true)
+                .put("validateMaxAge", validateMaxAge)
+                .put("upstream", new JsonObject()
+                        .put("host", "localhost")
+                        .put("port", mockPort)));
+        return other;
+    }
+
+    /**
+     *
+     * This method starts a vertx of the test's own, closed after the test.
+     */
+    private Vertx other() {
+        Vertx other = Vertx.vertx();
+        others.add(other);
+        return other;
+    }
+
+    /**
+     *
+     * This method picks a port nothing is listening on.
+     */
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Buffer inflate(String coding, Buffer body) {
+        try (InputStream in = "gzip".equals(coding)
+                ? new GZIPInputStream(new ByteArrayInputStream(body.getBytes()))
+                : new InflaterInputStream(new ByteArrayInputStream(body.getBytes()))) {
+            Buffer inflated = Buffer.buffer();
+            byte[] chunk = new byte[8192];
+            for (int n = in.read(chunk); n >= 0; n = in.read(chunk)) {
+                inflated.appendBytes(chunk, 0, n);
+            }
+            return inflated;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static JsonNode readCbor(Buffer body) {
+        try {
+            return new ObjectMapper(new CBORFactory()).readTree(body.getBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static double odds(long betId) {
+        return OddsConversionUtils.convertFractionToDecimalBet(MockSkyApi.odds(betId));
+    }
+
+    private static JsonObject bet(long betId, double odds) {
+        return new JsonObject().put("bet_id", betId).put("odds", odds).put("stake", 10);
+    }
+
+    private static JsonObject error(int errorCode, String errorMessage) {
+        return new JsonObject().put("errorCode", errorCode).put("errorMessage", errorMessage);
+    }
+
+    private void get(int port, String uri, UpstreamClient.ResponseHandler handler) {
+        vertx.createHttpClient().getNow(port, "localhost", uri, r -> r.bodyHandler(b -> handler.handle(r, b)));
+    }
+
+    private void post(int port, String uri, Buffer body, UpstreamClient.ResponseHandler handler) {
+        post(vertx, port, uri, null, body, handler);
+    }
+
+    private static void post(Vertx vertx, int port, String uri, String key, Buffer body,
+            UpstreamClient.ResponseHandler handler) {
+        HttpClientRequest request = vertx.createHttpClient()
+                .post(port, "localhost", uri, r -> r.bodyHandler(b -> handler.handle(r, b)))
+                .putHeader("content-type", "application/json; charset=utf-8");
+        if (key != null) {
+            request.putHeader("idempotency-key", key);
+        }
+        request.end(body);
+    }
 }
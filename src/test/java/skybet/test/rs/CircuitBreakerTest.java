@@ -0,0 +1,59 @@
+package skybet.test.rs;
+
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class CircuitBreakerTest {
+
+    @Test
+    public void opensAfterFailuresInARowTest(TestContext context) {
+        CircuitBreaker breaker = new CircuitBreaker(3, 60000);
+        breaker.failure(CircuitBreaker.Permit.REQUEST);
+        breaker.failure(CircuitBreaker.Permit.REQUEST);
+        breaker.success();
+        breaker.failure(CircuitBreaker.Permit.REQUEST);
+        breaker.failure(CircuitBreaker.Permit.REQUEST);
+        context.assertTrue(breaker.allowRequest().allowed());
+        breaker.failure(CircuitBreaker.Permit.REQUEST);
+        context.assertTrue(breaker.isOpen());
+        context.assertFalse(breaker.allowRequest().allowed());
+    }
+
+    @Test
+    public void singleTrialAfterResetTimeoutTest(TestContext context) {
+        CircuitBreaker breaker = new CircuitBreaker(1, 0);
+        breaker.failure(CircuitBreaker.Permit.REQUEST);
+        CircuitBreaker.Permit trial = breaker.allowRequest();
+        context.assertEquals(CircuitBreaker.Permit.TRIAL, trial);
+        context.assertFalse(breaker.allowRequest().allowed());
+
+        breaker.failure(trial);
+        context.assertTrue(breaker.isOpen());
+        context.assertEquals(CircuitBreaker.Permit.TRIAL, breaker.allowRequest());
+
+        breaker.success();
+        context.assertFalse(breaker.isOpen());
+        context.assertEquals(CircuitBreaker.Permit.REQUEST, breaker.allowRequest());
+        context.assertEquals(CircuitBreaker.Permit.REQUEST, breaker.allowRequest());
+    }
+
+    @Test
+    public void lateFailureKeepsTrialTest(TestContext context) {
+        CircuitBreaker breaker = new CircuitBreaker(1, 0);
+        CircuitBreaker.Permit late = breaker.allowRequest();
+        breaker.failure(CircuitBreaker.Permit.REQUEST);
+        CircuitBreaker.Permit trial = breaker.allowRequest();
+        context.assertEquals(CircuitBreaker.Permit.TRIAL, trial);
+
+        // a request sent before the breaker opened failing while the trial
+        // is out does not end the trial, so no second trial is let through
+        breaker.failure(late);
+        context.assertFalse(breaker.allowRequest().allowed());
+
+        breaker.failure(trial);
+        context.assertEquals(CircuitBreaker.Permit.TRIAL, breaker.allowRequest());
+    }
+}
@@ -0,0 +1,104 @@
+package skybet.test.rs;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class OddsStreamHubTest {
+
+    private static final AvailableSnapshot FIRST = AvailableSnapshot.fromFractional(Buffer.buffer(
+            "[{\"bet_id\":1,\"event\":\"World Cup 2018\",\"name\":\"England\","
+            + "\"odds\":{\"numerator\":10,\"denominator\":1}}]"));
+    private static final AvailableSnapshot LATEST = AvailableSnapshot.fromFractional(Buffer.buffer(
+            "[{\"bet_id\":1,\"event\":\"World Cup 2018\",\"name\":\"England\","
+            + "\"odds\":{\"numerator\":12,\"denominator\":1}}]"));
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void slowSubscriberResyncedTest(TestContext context) {
+        Async async = context.async();
+        Context ctx = vertx.getOrCreateContext();
+        ctx.runOnContext(v -> {
+            OddsStreamHub hub = new OddsStreamHub(vertx, () -> LATEST, p -> {
+            }, 60000);
+            FakeSubscriber fast = new FakeSubscriber();
+            FakeSubscriber slow = new FakeSubscriber();
+            hub.subscribe(fast, FIRST);
+            hub.subscribe(slow, FIRST);
+            context.assertEquals(2, hub.subscribers());
+
+            slow.full = true;
+            vertx.eventBus().publish(OddsStreamHub.DELTA_ADDRESS, "{\"n\":1}");
+            vertx.eventBus().publish(OddsStreamHub.DELTA_ADDRESS, "{\"n\":2}");
+            // the deliveries are queued on this context ahead of the check
+            ctx.runOnContext(w -> {
+                context.assertEquals(3, fast.messages.size());
+                context.assertEquals("delta {\"n\":2}", fast.messages.get(2));
+                // the slow subscriber missed both deltas and is sent the
+                // latest snapshot once it drains
+                context.assertEquals(1, slow.messages.size());
+                context.assertTrue(slow.isStale());
+                slow.full = false;
+                slow.drain.handle(null);
+                context.assertFalse(slow.isStale());
+                context.assertEquals(2, slow.messages.size());
+                context.assertEquals("snapshot " + LATEST.compactJson(), slow.messages.get(1));
+
+                slow.close.handle(null);
+                context.assertEquals(1, hub.subscribers());
+                hub.close();
+                async.complete();
+            });
+        });
+    }
+
+    private static class FakeSubscriber extends OddsSubscriber {
+
+        private final List<String> messages = new ArrayList<>();
+        private boolean full;
+        private Handler<Void> drain;
+        private Handler<Void> close;
+
+        @Override
+        void write(String type, String json) {
+            messages.add(type + " " + json);
+        }
+
+        @Override
+        boolean writeQueueFull() {
+            return full;
+        }
+
+        @Override
+        void drainHandler(Handler<Void> handler) {
+            drain = handler;
+        }
+
+        @Override
+        void closeHandler(Handler<Void> handler) {
+            close = handler;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package skybet.test.rs;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class UpstreamBalancerTest {
+
+    private static UpstreamBalancer balancer(int backends, int ejectFailures) {
+        JsonArray list = new JsonArray();
+        for (int i = 0; i < backends; i++) {
+            list.add(new JsonObject().put("host", "sky-" + i).put("port", 80));
+        }
+        return new UpstreamBalancer(new JsonObject()
+                .put("backends", list)
+                .put("ejectFailures", ejectFailures)
+                .put("ejectTime", 60000));
+    }
+
+    @Test
+    public void singleHostTest(TestContext context) {
+        UpstreamBalancer balancer = new UpstreamBalancer(new JsonObject().put("host", "localhost").put("port", 8090));
+        context.assertEquals(1, balancer.size());
+        context.assertEquals("localhost:8090", balancer.backend(0).name());
+        context.assertEquals(0, balancer.choose(0));
+    }
+
+    @Test
+    public void prefersLessLoadedTest(TestContext context) {
+        UpstreamBalancer balancer = balancer(2, 5);
+        balancer.backend(0).started();
+        for (int i = 0; i < 100; i++) {
+            context.assertEquals(1, balancer.choose(-1));
+        }
+    }
+
+    @Test
+    public void excludeTest(TestContext context) {
+        UpstreamBalancer balancer = balancer(3, 5);
+        for (int i = 0; i < 100; i++) {
+            context.assertNotEquals(1, balancer.choose(1));
+        }
+    }
+
+    @Test
+    public void ejectedBackendSkippedTest(TestContext context) {
+        UpstreamBalancer balancer = balancer(3, 2);
+        UpstreamBackend backend = balancer.backend(2);
+        backend.started();
+        backend.failed(System.nanoTime());
+        context.assertFalse(backend.ejected(System.currentTimeMillis()));
+        backend.started();
+        backend.failed(System.nanoTime());
+        context.assertTrue(backend.ejected(System.currentTimeMillis()));
+        context.assertEquals(1L, backend.ejections());
+        context.assertEquals(0, backend.outstanding());
+        for (int i = 0; i < 100; i++) {
+            context.assertNotEquals(2, balancer.choose(-1));
+        }
+    }
+
+    @Test
+    public void allEjectedStillChoosesTest(TestContext context) {
+        UpstreamBalancer balancer = balancer(2, 1);
+        for (int i = 0; i < 2; i++) {
+            balancer.backend(i).started();
+            balancer.backend(i).failed(System.nanoTime());
+        }
+        context.assertTrue(balancer.backend(0).ejected(System.currentTimeMillis()));
+        context.assertTrue(balancer.backend(1).ejected(System.currentTimeMillis()));
+        int chosen = balancer.choose(-1);
+        context.assertTrue(chosen == 0 || chosen == 1);
+        context.assertEquals(1, balancer.choose(0));
+    }
+}
@@ -0,0 +1,195 @@
+package skybet.test.rs;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class UpstreamClientTest {
+
+    private Vertx vertx;
+    private int port;
+    private final AtomicInteger received = new AtomicInteger();
+    private final Set<String> clients = ConcurrentHashMap.newKeySet();
+
+    @Before
+    public void setUp(TestContext context) throws IOException {
+        vertx = Vertx.vertx();
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        // a request for /stalled is never answered, as if sky had stalled,
+        // and the first request for /slow is answered after 300ms
+        vertx.createHttpServer().requestHandler(request -> {
+            int n = received.incrementAndGet();
+            clients.add(request.remoteAddress().toString());
+            if (request.path().equals("/slow") && n == 1) {
+                vertx.setTimer(300, id -> request.response().end("slow"));
+            } else if (!request.path().equals("/stalled")) {
+                request.response().end("ok");
+            }
+        }).listen(port, context.asyncAssertSuccess());
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void keepAliveReusesConnectionTest(TestContext context) {
+        Async async = context.async();
+        JsonObject config = new JsonObject()
+                .put("host", "localhost")
+                .put("port", port)
+                .put("maxPoolSize", 1);
+        vertx.runOnContext(v -> {
+            UpstreamClient client = client(config);
+            // requests sent one after the other all go over the one pooled
+            // keep-alive connection rather than a connection each
+            client.get("/1", (r1, b1) -> client.get("/2", (r2, b2) -> client.get("/3", (r3, b3) -> {
+                context.assertEquals(3, received.get());
+                context.assertEquals(1, clients.size());
+                context.assertEquals(3L, client.stats().getLong("requests"));
+                context.assertEquals(1, client.stats().getInteger("peakInFlight"));
+                async.complete();
+            }, context::fail), context::fail), context::fail);
+        });
+    }
+
+    @Test
+    public void stalledConnectionReleasedTest(TestContext context) {
+        Async async = context.async();
+        JsonObject config = new JsonObject()
+                .put("host", "localhost")
+                .put("port", port)
+                .put("maxPoolSize", 1)
+                .put("idleTimeout", 1)
+                .put("requestTimeout", 1000);
+        vertx.runOnContext(v -> {
+            UpstreamClient client = client(config);
+            client.get("/stalled", (r, body) -> context.fail("stalled request answered"), t -> {
+                context.assertTrue(t instanceof TimeoutException);
+                // the idle timeout closes the stalled connection, so the only
+                // pool slot is free again for the next request to be answered
+                // within its own deadline
+                vertx.setTimer(1500, id -> client.get("/next", (r, body) -> {
+                    context.assertEquals(200, r.statusCode());
+                    context.assertEquals(2, received.get());
+                    async.complete();
+                }, context::fail));
+            });
+        });
+    }
+
+    @Test
+    public void hedgedFirstResponseWinsTest(TestContext context) {
+        Async async = context.async();
+        JsonObject config = new JsonObject()
+                .put("host", "localhost")
+                .put("port", port);
+        vertx.runOnContext(v -> {
+            UpstreamClient client = client(config);
+            int[] hedged = {0};
+            int[] answers = {0};
+            client.getHedged("/slow", null, 50, () -> hedged[0]++, (r, body) -> {
+                // the hedge is answered at once, long before the first request
+                answers[0]++;
+                context.assertEquals(1, hedged[0]);
+                context.assertEquals("ok", body.toString("UTF-8"));
+                // the first request's late answer is dropped
+                vertx.setTimer(400, id -> {
+                    context.assertEquals(1, answers[0]);
+                    context.assertEquals(2, received.get());
+                    async.complete();
+                });
+            }, context::fail);
+        });
+    }
+
+    @Test
+    public void hedgedBothFailTest(TestContext context) {
+        Async async = context.async();
+        JsonObject config = new JsonObject()
+                .put("host", "localhost")
+                .put("port", port)
+                .put("requestTimeout", 200);
+        vertx.runOnContext(v -> {
+            UpstreamClient client = client(config);
+            int[] hedged = {0};
+            int[] failures = {0};
+            client.getHedged("/stalled", null, 50, () -> hedged[0]++, (r, body) -> context.fail("answered"), t -> {
+                // called once, when the hedge has failed too
+                failures[0]++;
+                context.assertTrue(t instanceof TimeoutException);
+                context.assertEquals(1, hedged[0]);
+                context.assertEquals(2L, client.stats().getLong("failures"));
+                vertx.setTimer(100, id -> {
+                    context.assertEquals(1, failures[0]);
+                    async.complete();
+                });
+            });
+        });
+    }
+
+    @Test
+    public void hedgeRefusedByBreakerTest(TestContext context) {
+        Async async = context.async();
+        JsonObject config = new JsonObject()
+                .put("host", "localhost")
+                .put("port", port);
+        CircuitBreaker breaker = new CircuitBreaker(1, CircuitBreaker.DEFAULT_RESET_TIMEOUT);
+        vertx.runOnContext(v -> {
+            UpstreamClient client = new UpstreamClient(vertx, config, new UpstreamStats(), breaker,
+                    new UpstreamBalancer(config));
+            int[] hedged = {0};
+            client.getHedged("/slow", null, 50, () -> hedged[0]++, (r, body) -> {
+                // the breaker opened before the hedge delay, so no hedge was
+                // sent and the first request's answer is used
+                context.assertEquals(0, hedged[0]);
+                context.assertEquals("slow", body.toString("UTF-8"));
+                context.assertEquals(1, received.get());
+                async.complete();
+            }, context::fail);
+            breaker.failure(CircuitBreaker.Permit.REQUEST);
+        });
+    }
+
+    @Test
+    public void refusedByBreakerTest(TestContext context) {
+        Async async = context.async();
+        JsonObject config = new JsonObject()
+                .put("host", "localhost")
+                .put("port", port);
+        CircuitBreaker breaker = new CircuitBreaker(1, CircuitBreaker.DEFAULT_RESET_TIMEOUT);
+        breaker.failure(CircuitBreaker.Permit.REQUEST);
+        vertx.runOnContext(v -> {
+            UpstreamClient client = new UpstreamClient(vertx, config, new UpstreamStats(), breaker,
+                    new UpstreamBalancer(config));
+            client.getHedged("/slow", null, 50, () -> context.fail("hedged"), (r, body) -> context.fail("sent"),
+                    t -> {
+                        context.assertTrue(t instanceof CircuitOpenException);
+                        context.assertEquals(0, received.get());
+                        async.complete();
+                    });
+        });
+    }
+
+    private UpstreamClient client(JsonObject config) {
+        return new UpstreamClient(vertx, config, new UpstreamStats(),
+                new CircuitBreaker(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD, CircuitBreaker.DEFAULT_RESET_TIMEOUT),
+                new UpstreamBalancer(config));
+    }
+}
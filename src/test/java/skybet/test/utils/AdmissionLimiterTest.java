@@ -0,0 +1,73 @@
+package skybet.test.utils;
+
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class AdmissionLimiterTest {
+
+    @Test
+    public void queuedUntilReleasedTest(TestContext context) {
+        AdmissionLimiter limiter = new AdmissionLimiter(1, 1);
+        List<String> admitted = new ArrayList<>();
+
+        context.assertNotNull(limiter.admit(v -> admitted.add("first")));
+        context.assertNotNull(limiter.admit(v -> admitted.add("second")));
+        context.assertNull(limiter.admit(v -> admitted.add("third")));
+        context.assertEquals(1, admitted.size());
+        context.assertEquals(1, limiter.queued());
+
+        limiter.release();
+        context.assertEquals(2, admitted.size());
+        context.assertEquals("second", admitted.get(1));
+        context.assertEquals(1, limiter.inFlight());
+        context.assertEquals(0, limiter.queued());
+    }
+
+    @Test
+    public void cancelledTicketIsSkippedTest(TestContext context) {
+        AdmissionLimiter limiter = new AdmissionLimiter(1, 2);
+        List<String> admitted = new ArrayList<>();
+
+        AdmissionLimiter.Ticket first = limiter.admit(v -> admitted.add("first"));
+        AdmissionLimiter.Ticket second = limiter.admit(v -> admitted.add("second"));
+        limiter.admit(v -> admitted.add("third"));
+        context.assertFalse(first.cancel());
+        context.assertTrue(second.cancel());
+        context.assertEquals(1, limiter.queued());
+
+        limiter.release();
+        context.assertEquals(2, admitted.size());
+        context.assertEquals("third", admitted.get(1));
+        limiter.release();
+        context.assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    public void cancelledTicketsLeaveTheQueueTest(TestContext context) {
+        AdmissionLimiter limiter = new AdmissionLimiter(1, 2);
+        limiter.admit(v -> {
+        });
+
+        // with no slot freed the queue is never drained, so only cancel can
+        // take the tickets out of it
+        for (int i = 0; i < 100; i++) {
+            AdmissionLimiter.Ticket ticket = limiter.admit(v -> context.fail("cancelled ticket admitted"));
+            context.assertNotNull(ticket);
+            context.assertTrue(ticket.cancel());
+            context.assertEquals(0, limiter.waiting());
+        }
+        context.assertEquals(0, limiter.queued());
+
+        List<String> admitted = new ArrayList<>();
+        limiter.admit(v -> admitted.add("next"));
+        context.assertEquals(1, limiter.waiting());
+        limiter.release();
+        context.assertEquals(1, admitted.size());
+        context.assertEquals(0, limiter.waiting());
+    }
+}
@@ -0,0 +1,82 @@
+package skybet.test.utils;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import skybet.test.pojo.DecimalEvent;
+
+@RunWith(VertxUnitRunner.class)
+public class AvailableTransformerTest {
+
+    private static final String AVAILABLE = "[{\"bet_id\":1,\"event\":\"World Cup 2018\",\"name\":\"England\","
+            + "\"odds\":{\"numerator\":10,\"denominator\":1}},"
+            + "{\"bet_id\":2,\"event\":\"World Cup 2018\",\"name\":\"Brazil\","
+            + "\"odds\":{\"numerator\":1,\"denominator\":4}}]";
+
+    @Test
+    public void toDecimalMatchesDecimalEventTest(TestContext context) {
+        String expected = Json.encodePrettily(Arrays.asList(
+                DecimalEvent.builder().betId(1l).event("World Cup 2018").name("England").odds(11.0).build(),
+                DecimalEvent.builder().betId(2l).event("World Cup 2018").name("Brazil").odds(1.25).build()));
+
+        Buffer result = AvailableTransformer.toDecimal(Buffer.buffer(AVAILABLE), true);
+
+        context.assertEquals(new JsonArray(expected), new JsonArray(result.toString("UTF-8")));
+    }
+
+    @Test
+    public void toDecimalParallelMatchesToDecimalTest(TestContext context) {
+        // names with the characters the split has to step over inside strings
+        StringBuilder available = new StringBuilder(" [ ");
+        for (int i = 1; i <= 100; i++) {
+            available.append(i > 1 ? " ,\n" : "")
+                    .append("{\"bet_id\":").append(i)
+                    .append(",\"event\":\"Event, [").append(i / 10).append("]\"")
+                    .append(",\"name\":\"Selection {\\\"").append(i).append("\\\"},\"")
+                    .append(",\"odds\":{\"numerator\":").append(i).append(",\"denominator\":2}}");
+        }
+        available.append(" ] ");
+        Buffer fractional = Buffer.buffer(available.toString());
+        context.assertEquals(8, AvailableTransformer.split(fractional, 8).length - 1);
+
+        long[] seen = new long[101];
+        AvailableTransformer.EventListener[] listeners = new AvailableTransformer.EventListener[8];
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i] = (betId, event, name, odds) -> seen[(int) betId]++;
+        }
+        Buffer parallel = AvailableTransformer.toDecimalParallel(fractional, listeners);
+
+        context.assertEquals(AvailableTransformer.toDecimal(fractional, false), parallel);
+        for (int i = 1; i <= 100; i++) {
+            context.assertEquals(1L, seen[i]);
+        }
+    }
+
+    @Test
+    public void splitRejectsNonArrayTest(TestContext context) {
+        context.assertNull(AvailableTransformer.split(Buffer.buffer("{\"error\":\"down\"}"), 4));
+        context.assertNull(AvailableTransformer.split(Buffer.buffer("[{},{}"), 4));
+        context.assertNull(AvailableTransformer.split(Buffer.buffer("[{},{}] x"), 4));
+    }
+
+    @Test(expected = DecodeException.class)
+    public void toDecimalParallelRejectsEmptyElementTest() {
+        AvailableTransformer.toDecimalParallel(Buffer.buffer("[" + AVAILABLE.substring(1, AVAILABLE.length() - 1)
+                + ",," + AVAILABLE.substring(1)), new AvailableTransformer.EventListener[]{
+                    (betId, event, name, odds) -> {
+                    }, (betId, event, name, odds) -> {
+                    }, (betId, event, name, odds) -> {
+                    }});
+    }
+
+    @Test(expected = DecodeException.class)
+    public void toDecimalRejectsNonArrayTest() {
+        AvailableTransformer.toDecimal(Buffer.buffer("{\"error\":\"down\"}"), true);
+    }
+}
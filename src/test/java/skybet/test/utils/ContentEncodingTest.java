@@ -0,0 +1,47 @@
+package skybet.test.utils;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class ContentEncodingTest {
+
+    @Test
+    public void negotiateTest(TestContext context) {
+        context.assertEquals(ContentEncoding.IDENTITY, ContentEncoding.negotiate(null));
+        context.assertEquals(ContentEncoding.IDENTITY, ContentEncoding.negotiate("br, identity"));
+        context.assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("gzip, deflate, br"));
+        context.assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("deflate, gzip"));
+        context.assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0.5, deflate"));
+        context.assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0, deflate;q=0.1"));
+        context.assertEquals(ContentEncoding.IDENTITY, ContentEncoding.negotiate("gzip;q=0"));
+    }
+
+    @Test
+    public void encodeRoundTripTest(TestContext context) throws IOException {
+        Buffer body = Buffer.buffer("[{\"bet_id\":1,\"event\":\"World Cup 2018\",\"name\":\"England\",\"odds\":11.0}]");
+        context.assertEquals(body, ContentEncoding.IDENTITY.encode(body));
+        context.assertEquals(body.toString(), inflate(new GZIPInputStream(
+                new ByteArrayInputStream(ContentEncoding.GZIP.encode(body).getBytes()))));
+        context.assertEquals(body.toString(), inflate(new InflaterInputStream(
+                new ByteArrayInputStream(ContentEncoding.DEFLATE.encode(body).getBytes()))));
+    }
+
+    private static String inflate(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[256];
+        for (int n; (n = in.read(chunk)) > 0;) {
+            out.write(chunk, 0, n);
+        }
+        return out.toString("UTF-8");
+    }
+}
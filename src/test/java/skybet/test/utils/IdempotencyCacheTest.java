@@ -0,0 +1,135 @@
+package skybet.test.utils;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class IdempotencyCacheTest {
+
+    @Test
+    public void retriesShareOneAttemptTest(TestContext context) {
+        List<Handler<AsyncResult<String>>> attempts = new ArrayList<>();
+        IdempotencyCache<String> cache = new IdempotencyCache<>(10, 60000, t -> false);
+        List<String> results = new ArrayList<>();
+
+        context.assertTrue(cache.execute("a", "bet", attempts::add, ar -> results.add(ar.result())));
+        context.assertFalse(cache.execute("a", "bet", attempts::add, ar -> results.add(ar.result())));
+        context.assertEquals(1, attempts.size());
+        context.assertTrue(results.isEmpty());
+
+        attempts.get(0).handle(Future.succeededFuture("receipt"));
+        context.assertEquals(2, results.size());
+        context.assertEquals("receipt", results.get(1));
+
+        context.assertFalse(cache.execute("a", "bet", attempts::add, ar -> results.add(ar.result())));
+        context.assertEquals(1, attempts.size());
+        context.assertEquals("receipt", results.get(2));
+    }
+
+    @Test
+    public void differentRequestWithSameKeyConflictsTest(TestContext context) {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(10, 60000, t -> false);
+        cache.execute("a", "bet", h -> h.handle(Future.succeededFuture("receipt")), ar -> {
+        });
+        List<Throwable> failures = new ArrayList<>();
+        cache.execute("a", "other bet", h -> context.fail("action run"), ar -> failures.add(ar.cause()));
+        context.assertTrue(failures.get(0) instanceof IdempotencyConflictException);
+    }
+
+    @Test
+    public void onlyRetainedFailuresAreCachedTest(TestContext context) {
+        List<Handler<AsyncResult<String>>> attempts = new ArrayList<>();
+        IdempotencyCache<String> cache = new IdempotencyCache<>(10, 60000,
+                t -> t instanceof IllegalStateException);
+
+        cache.execute("a", "bet", attempts::add, ar -> {
+        });
+        attempts.get(0).handle(Future.failedFuture("timeout"));
+        context.assertTrue(cache.execute("a", "bet", attempts::add, ar -> {
+        }));
+
+        attempts.get(1).handle(Future.failedFuture(new IllegalStateException("rejected")));
+        context.assertFalse(cache.execute("a", "bet", attempts::add, ar -> {
+        }));
+        context.assertEquals(2, attempts.size());
+    }
+
+    @Test
+    public void oldestKeysAreEvictedTest(TestContext context) {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(2, 60000, t -> false);
+        for (String key : new String[]{"a", "b", "c"}) {
+            cache.execute(key, "bet", h -> h.handle(Future.succeededFuture(key)), ar -> {
+            });
+        }
+        context.assertEquals(2, cache.size());
+        context.assertTrue(cache.execute("a", "bet", h -> h.handle(Future.succeededFuture("again")), ar -> {
+        }));
+
+        IdempotencyCache<String> expiring = new IdempotencyCache<>(10, 0, t -> false);
+        expiring.execute("a", "bet", h -> h.handle(Future.succeededFuture("first")), ar -> {
+        });
+        context.assertTrue(expiring.execute("a", "bet", h -> h.handle(Future.succeededFuture("second")), ar -> {
+        }));
+    }
+
+    @Test
+    public void failedKeysAreEvictedTest(TestContext context) {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(2, 60000, t -> false);
+        cache.execute("a", "bet", h -> h.handle(Future.succeededFuture("receipt")), ar -> {
+        });
+        // keys dropped behind a live one must not pile up in the queue
+        for (int i = 0; i < 100; i++) {
+            cache.execute("key" + i, "bet", h -> h.handle(Future.failedFuture("timeout")), ar -> {
+            });
+        }
+        context.assertTrue(cache.queued() <= 2);
+        context.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void inFlightKeysAreNotEvictedTest(TestContext context) {
+        List<Handler<AsyncResult<String>>> attempts = new ArrayList<>();
+        IdempotencyCache<String> cache = new IdempotencyCache<>(2, 60000, t -> false);
+        List<AsyncResult<String>> results = new ArrayList<>();
+        cache.execute("a", "bet", attempts::add, results::add);
+        cache.execute("b", "bet", attempts::add, results::add);
+
+        context.assertFalse(cache.execute("c", "bet", attempts::add, results::add));
+        context.assertEquals(2, attempts.size());
+        context.assertTrue(results.get(0).cause() instanceof IdempotencyCacheFullException);
+        context.assertEquals(2, cache.size());
+        context.assertEquals(2, cache.queued());
+
+        // a retry still joins the attempt in flight
+        context.assertFalse(cache.execute("a", "bet", attempts::add, results::add));
+        attempts.get(0).handle(Future.succeededFuture("receipt"));
+        context.assertEquals(3, results.size());
+        context.assertEquals("receipt", results.get(2).result());
+
+        // once an attempt is done its key can make room
+        context.assertTrue(cache.execute("c", "bet", attempts::add, results::add));
+        context.assertEquals(2, cache.size());
+        context.assertFalse(cache.execute("b", "bet", attempts::add, results::add));
+        context.assertEquals(3, attempts.size());
+    }
+
+    @Test
+    public void inFlightKeysDoNotExpireTest(TestContext context) {
+        List<Handler<AsyncResult<String>>> attempts = new ArrayList<>();
+        IdempotencyCache<String> cache = new IdempotencyCache<>(10, 0, t -> false);
+        List<String> results = new ArrayList<>();
+        cache.execute("a", "bet", attempts::add, ar -> results.add(ar.result()));
+
+        context.assertFalse(cache.execute("a", "bet", attempts::add, ar -> results.add(ar.result())));
+        context.assertEquals(1, attempts.size());
+        attempts.get(0).handle(Future.succeededFuture("receipt"));
+        context.assertEquals(2, results.size());
+    }
+}
@@ -0,0 +1,71 @@
+package skybet.test.utils;
+
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsAreCumulativeTest(TestContext context) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10_000L);
+        histogram.record(1_000_000L);
+        histogram.record(3_000_000L);
+        histogram.record(60_000_000_000L);
+        context.assertEquals(4L, histogram.count());
+
+        StringBuilder out = new StringBuilder();
+        histogram.writePrometheus(out, "test_seconds", "route=\"/bets\"");
+        String text = out.toString();
+        context.assertTrue(text.contains("test_seconds_bucket{route=\"/bets\",le=\"5.0E-5\"} 1\n"));
+        context.assertTrue(text.contains("test_seconds_bucket{route=\"/bets\",le=\"0.001\"} 2\n"));
+        context.assertTrue(text.contains("test_seconds_bucket{route=\"/bets\",le=\"0.005\"} 3\n"));
+        context.assertTrue(text.contains("test_seconds_bucket{route=\"/bets\",le=\"10.0\"} 3\n"));
+        context.assertTrue(text.contains("test_seconds_bucket{route=\"/bets\",le=\"+Inf\"} 4\n"));
+        context.assertTrue(text.contains("test_seconds_count{route=\"/bets\"} 4\n"));
+    }
+
+    @Test
+    public void noLabelsTest(TestContext context) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(2_000_000_000L);
+        StringBuilder out = new StringBuilder();
+        histogram.writePrometheus(out, "test_seconds", "");
+        String text = out.toString();
+        context.assertTrue(text.contains("test_seconds_bucket{le=\"2.5\"} 1\n"));
+        context.assertTrue(text.contains("test_seconds_sum 2.0\n"));
+        context.assertTrue(text.contains("test_seconds_count 1\n"));
+    }
+
+    @Test
+    public void percentileErrorIsBoundedTest(TestContext context) {
+        for (long nanos = 1; nanos < 10_000_000_000L; nanos += 1 + nanos / 7) {
+            long percentile = percentileOf(nanos);
+            context.assertTrue(percentile >= nanos && percentile <= nanos + nanos / 16, nanos + " " + percentile);
+        }
+    }
+
+    @Test
+    public void percentileTest(TestContext context) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long ms = 1; ms <= 100; ms++) {
+            histogram.record(ms * 1_000_000L);
+        }
+        // the fixed buckets would have answered 100ms for both
+        long p50 = histogram.percentile(0.5);
+        long p95 = histogram.percentile(0.95);
+        context.assertTrue(p50 >= 50_000_000L && p50 <= 53_125_000L);
+        context.assertTrue(p95 >= 95_000_000L && p95 <= 100_937_500L);
+        context.assertEquals(Long.MAX_VALUE, percentileOf(60_000_000_000L));
+        context.assertEquals(0L, new LatencyHistogram().percentile(0.5));
+    }
+
+    private static long percentileOf(long nanos) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(nanos);
+        return histogram.percentile(0.5);
+    }
+}
@@ -0,0 +1,41 @@
+package skybet.test.utils;
+
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class LongIntMapTest {
+
+    @Test
+    public void putGetTest(TestContext context) {
+        LongIntMap map = new LongIntMap(4);
+        context.assertEquals(-1, map.get(1));
+        context.assertEquals(-1, map.put(1, 10));
+        context.assertEquals(-1, map.put(-5, 20));
+        context.assertEquals(-1, map.put(Long.MAX_VALUE, 30));
+        context.assertEquals(10, map.get(1));
+        context.assertEquals(20, map.get(-5));
+        context.assertEquals(30, map.get(Long.MAX_VALUE));
+        context.assertEquals(-1, map.get(2));
+
+        context.assertEquals(10, map.put(1, 11));
+        context.assertEquals(11, map.get(1));
+        context.assertEquals(3, map.size());
+    }
+
+    @Test
+    public void resizeTest(TestContext context) {
+        LongIntMap map = new LongIntMap(1);
+        // keys a power of two apart land in the same slot before mixing
+        for (int i = 0; i < 10_000; i++) {
+            map.put((long) i << 32, i);
+        }
+        context.assertEquals(10_000, map.size());
+        for (int i = 0; i < 10_000; i++) {
+            context.assertEquals(i, map.get((long) i << 32));
+        }
+        context.assertEquals(-1, map.get(10_000L << 32));
+    }
+}
@@ -30,4 +30,70 @@ public class OddsConverstionUtilsTest {
         context.assertEquals(expected, fo);
     }
 
+    @Test
+    public void convertLadderDecimalToFractionTest(TestContext context) {
+        FractionalOdds expected = FractionalOdds.builder()
+                .numerator(10)
+                .denominator(3).build();
+        long hits = OddsLadder.hits();
+        FractionalOdds fo = OddsConversionUtils.convertDecimalBetToFraction(
+                OddsConversionUtils.convertFractionToDecimalBet(expected));
+
+        context.assertEquals(expected, fo);
+        context.assertTrue(OddsLadder.hits() > hits);
+    }
+
+    @Test
+    public void convertOffLadderDecimalToFractionTest(TestContext context) {
+        FractionalOdds expected = FractionalOdds.builder()
+                .numerator(37)
+                .denominator(100).build();
+        FractionalOdds fo = OddsConversionUtils.convertDecimalBetToFraction(1.37);
+
+        context.assertEquals(expected, fo);
+    }
+
+    @Test
+    public void ladderIsReducedAndIndexedTest(TestContext context) {
+        for (int i = 0; i < OddsLadder.size(); i++) {
+            Rational r = new Rational(OddsLadder.numerator(i), OddsLadder.denominator(i));
+            context.assertEquals(OddsLadder.numerator(i), r.numerator());
+            context.assertEquals(OddsLadder.denominator(i), r.denominator());
+            context.assertEquals(i, OddsLadder.indexOf(OddsLadder.decimal(i)));
+            context.assertEquals(i, OddsLadder.indexOf(r.numerator(), r.denominator()));
+        }
+    }
+
+    @Test
+    public void convertRecurringDecimalToFractionTest(TestContext context) {
+        FractionalOdds expected = FractionalOdds.builder()
+                .numerator(5)
+                .denominator(7).build();
+        FractionalOdds fo = OddsConversionUtils.convertDecimalBetToFraction(1.7142857142857144);
+
+        context.assertEquals(expected, fo);
+    }
+
+    @Test
+    public void convertDecimalToFractionRoundTripTest(TestContext context) {
+        for (int d = 1; d <= 200; d++) {
+            for (int n = 1; n <= 200; n++) {
+                long expected = PackedRational.of(n, d);
+                double odds = OddsConversionUtils.convertFractionToDecimalBet(n, d);
+                context.assertEquals(expected, OddsConversionUtils.convertDecimalBetToPackedFraction(odds),
+                        n + "/" + d);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void convertDecimalToFractionOverflowTest() {
+        OddsConversionUtils.convertDecimalBetToFraction(1e12);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void convertNaNToFractionTest() {
+        OddsConversionUtils.convertDecimalBetToFraction(Double.NaN);
+    }
+
 }
@@ -0,0 +1,46 @@
+package skybet.test.utils;
+
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class PackedRationalTest {
+
+    @Test
+    public void ofReducesAndNormalisesSignTest(TestContext context) {
+        long r = PackedRational.of(6, -4);
+        context.assertEquals(-3, PackedRational.numerator(r));
+        context.assertEquals(2, PackedRational.denominator(r));
+        context.assertEquals(PackedRational.ZERO, PackedRational.of(0, 7));
+    }
+
+    @Test
+    public void arithmeticMatchesRationalTest(TestContext context) {
+        Rational a = new Rational(3, 8);
+        Rational b = new Rational(5, 12);
+        long pa = PackedRational.of(3, 8);
+        long pb = PackedRational.of(5, 12);
+
+        context.assertEquals(PackedRational.of(a.plus(b).numerator(), a.plus(b).denominator()),
+                PackedRational.plus(pa, pb));
+        context.assertEquals(PackedRational.of(a.times(b).numerator(), a.times(b).denominator()),
+                PackedRational.times(pa, pb));
+        context.assertEquals(PackedRational.of(a.divides(b).numerator(), a.divides(b).denominator()),
+                PackedRational.divides(pa, pb));
+        context.assertEquals(-1, PackedRational.compare(pa, pb));
+    }
+
+    @Test
+    public void gcdTest(TestContext context) {
+        context.assertEquals(6L, PackedRational.gcd(48, -18));
+        context.assertEquals(7L, PackedRational.gcd(0, 7));
+        context.assertEquals(1L, PackedRational.gcd(17, 5));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void overflowIsDetectedTest() {
+        PackedRational.times(PackedRational.of(Integer.MAX_VALUE, 1), PackedRational.of(3, 1));
+    }
+}
@@ -0,0 +1,59 @@
+package skybet.test.utils;
+
+import io.vertx.core.Future;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class SnapshotCacheTest {
+
+    @Test
+    public void concurrentMissesShareOneLoadTest(TestContext context) {
+        List<Future<String>> loads = new ArrayList<>();
+        SnapshotCache<String> cache = new SnapshotCache<>(1000);
+        List<String> results = new ArrayList<>();
+
+        cache.get(loads::add, ar -> results.add(ar.result()));
+        cache.get(loads::add, ar -> results.add(ar.result()));
+        context.assertEquals(1, loads.size());
+        context.assertTrue(results.isEmpty());
+
+        loads.get(0).complete("snapshot");
+        context.assertEquals(2, results.size());
+        context.assertEquals("snapshot", results.get(1));
+    }
+
+    @Test
+    public void staleValueServedWhileRefreshingTest(TestContext context) {
+        List<Future<String>> loads = new ArrayList<>();
+        SnapshotCache<String> cache = new SnapshotCache<>(0);
+        cache.get(loads::add, ar -> {
+        });
+        loads.get(0).complete("first");
+
+        List<String> results = new ArrayList<>();
+        cache.get(loads::add, ar -> results.add(ar.result()));
+        cache.get(loads::add, ar -> results.add(ar.result()));
+        context.assertEquals(2, loads.size());
+        context.assertEquals("first", results.get(0));
+        context.assertEquals("first", results.get(1));
+
+        loads.get(1).complete("second");
+        context.assertEquals("second", cache.peek());
+    }
+
+    @Test
+    public void failedLoadIsPassedToWaitersTest(TestContext context) {
+        List<Future<String>> loads = new ArrayList<>();
+        SnapshotCache<String> cache = new SnapshotCache<>(1000);
+        List<Boolean> results = new ArrayList<>();
+        cache.get(loads::add, ar -> results.add(ar.failed()));
+        loads.get(0).fail("upstream down");
+        context.assertTrue(results.get(0));
+        context.assertNull(cache.peek());
+    }
+}
@@ -0,0 +1,46 @@
+package skybet.test.utils;
+
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class WindowedHistogramTest {
+
+    @Test
+    public void followsSlowdownTest(TestContext context) throws InterruptedException {
+        WindowedHistogram histogram = new WindowedHistogram(100, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 1000; i++) {
+            histogram.record(1_000_000L);
+        }
+        context.assertTrue(close(1_000_000L, histogram.percentile(0.95)));
+
+        // a slowdown after a long healthy run is seen once the healthy
+        // window has passed
+        Thread.sleep(150);
+        for (int i = 0; i < 20; i++) {
+            histogram.record(500_000_000L);
+        }
+        Thread.sleep(150);
+        histogram.record(500_000_000L);
+        context.assertTrue(close(500_000_000L, histogram.percentile(0.95)));
+        context.assertEquals(21L, histogram.count());
+    }
+
+    @Test
+    public void emptiesWhenIdleTest(TestContext context) throws InterruptedException {
+        WindowedHistogram histogram = new WindowedHistogram(50, TimeUnit.MILLISECONDS);
+        histogram.record(1_000_000L);
+        context.assertEquals(1L, histogram.count());
+        Thread.sleep(120);
+        context.assertEquals(0L, histogram.count());
+        context.assertEquals(0L, histogram.percentile(0.95));
+    }
+
+    // a percentile is at most 1/16 above the latency it stands for
+    private static boolean close(long nanos, long percentile) {
+        return percentile >= nanos && percentile <= nanos + nanos / 16;
+    }
+}